@@ -19,7 +19,7 @@ public class SQLDocument extends DefaultStyledDocument {
             "update", "set", "index",
             "insert", "into", "values",
             "delete", "from", "on", "use", "as", "between",
-            "inner", "join", "alter", "add", "having", "constraint",
+            "inner", "join", "alter", "add", "having", "constraint", "vacuum", "with", "dictionary",
             "foreign", "primary", "key", "unique", "references",
             "CREATE", "DROP", "DATABASE", "TABLE",
             "SELECT", "FROM", "WHERE", "GROUP", "ORDER", "BY",
@@ -27,12 +27,12 @@ public class SQLDocument extends DefaultStyledDocument {
             "INSERT", "INTO", "VALUES", "AS", "BETWEEN",
             "DELETE", "FROM", "ON", "USE", "HAVING", "CONSTRAINT",
             "FOREIGN", "PRIMARY", "KEY", "UNIQUE", "REFERENCES",
-            "INNER", "JOIN", "ALTER", "ADD"
+            "INNER", "JOIN", "ALTER", "ADD", "VACUUM", "WITH", "DICTIONARY"
     };
 
     private final String[] ATTRIBUTE_TYPES = {
-            "int", "float", "bit", "date", "datetime", "char",
-            "INT", "FLOAT", "BIT", "DATE", "DATETIME", "CHAR"
+            "int", "float", "bit", "date", "datetime", "char", "varchar",
+            "INT", "FLOAT", "BIT", "DATE", "DATETIME", "CHAR", "VARCHAR"
     };
 
     private final String[] OPERATORS = {
@@ -1,33 +1,157 @@
 package backend.Indexing;
 
+import backend.config.Config;
 import backend.exceptions.recordHandlingExceptions.KeyAlreadyInTreeException;
 import backend.exceptions.recordHandlingExceptions.KeyNotFoundException;
 import backend.exceptions.recordHandlingExceptions.RecordNotFoundException;
+import backend.recordHandling.RecordCodec;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Objects;
 import java.util.Stack;
+import java.util.function.Consumer;
 
 @Slf4j
 public class BPlusTree {
     private final IndexFileHandler io;
-    private final ArrayList<String> keyStructure;
 
     public BPlusTree(ArrayList<String> keyStructure, String fileLocation) throws IOException {
         io = new IndexFileHandler(keyStructure, fileLocation);
-        this.keyStructure = keyStructure;
     }
 
     public void createEmptyTree() throws IOException {
-        TreeNode root = new TreeNode(true, keyStructure);
+        TreeNode root = new TreeNode(true, io.getCodec(), io.getD());
         io.writeNode(root, 0);
         io.setRootPointer(0);
         io.setDeletedNodePointer(Constants.nullPointer);
     }
 
+    // builds the tree of an empty index from the sorted keys, of equal keys (unique) only the first one is kept
+    //      the leaves are filled to -Ddb.indexFillFactor in key order and written one after the other, then every level
+    //      of inner nodes is built from the smallest keys of the level below until a single root is left
+    //      no node is read or split, the last two nodes of a level share their keys if the last one would be too small
+    // an index file of an older version doesn't store its keys in the byte order of the sorter, its keys are inserted
+    public void bulkLoad(KeySorter keys, boolean unique) throws IOException {
+        keys.finish();
+        RecordCodec codec = io.getCodec();
+        if (!codec.isOrdered()) {
+            byte[] entry;
+            while ((entry = keys.next()) != null) {
+                try {
+                    insert(keys.toKey(entry), keys.toPointer(entry));
+                } catch (KeyAlreadyInTreeException ignored) {}
+            }
+            return;
+        }
+
+        int d = io.getD(), keySize = keys.getKeySize();
+        int leafKeys = filled(2 * d - 1, d);
+        // the nodes are written one after the other, level by level, the leaves from line 0 on
+        int nextLine = 0;
+        // the smallest key and the line of every node of the level that was written last
+        ArrayList<byte[]> smallestKeys = new ArrayList<>();
+        ArrayList<Integer> lines = new ArrayList<>();
+
+        // a leaf is written once the next one is full, so the last two can still be evened out
+        TreeNode previous = null, current = new TreeNode(true, codec, d);
+        byte[] entry, lastEntry = null;
+        while ((entry = keys.next()) != null) {
+            if (unique && lastEntry != null && Arrays.equals(entry, 0, keySize, lastEntry, 0, keySize)) {
+                continue;
+            }
+            lastEntry = entry;
+            if (current.keyCount() == leafKeys) {
+                if (previous != null) {
+                    writeLeaf(previous, nextLine++, true, smallestKeys, lines);
+                }
+                previous = current;
+                current = new TreeNode(true, codec, d);
+            }
+            current.appendInLeaf(entry, keys.toPointer(entry));
+        }
+        if (previous != null && current.keyCount() < d) {
+            if (previous.keyCount() + current.keyCount() <= 2 * d - 1) {
+                previous.joinLeaves(current);
+                current = null;
+            } else {
+                while (current.keyCount() < d) {
+                    int last = previous.keyCount() - 1;
+                    Key key = previous.getKey(last);
+                    int pointer = previous.getPointer(last);
+                    previous.removeEntry(last, last);
+                    current.insertInLeaf(key, pointer);
+                }
+            }
+        }
+        if (previous != null) {
+            writeLeaf(previous, nextLine++, current != null, smallestKeys, lines);
+        }
+        if (current != null) {
+            writeLeaf(current, nextLine++, false, smallestKeys, lines);
+        }
+
+        while (lines.size() > 1) {
+            ArrayList<byte[]> childKeys = smallestKeys;
+            ArrayList<Integer> children = lines;
+            smallestKeys = new ArrayList<>();
+            lines = new ArrayList<>();
+
+            int first = 0;
+            for (int childCount : levelSizes(children.size(), filled(2 * d + 1, d + 1), d + 1, 2 * d + 1)) {
+                TreeNode node = new TreeNode(false, codec, d);
+                node.setLastPointer(children.get(first));
+                for (int i = first + 1; i < first + childCount; i++) {
+                    node.appendInNode(childKeys.get(i), children.get(i));
+                }
+                io.writeNode(node, nextLine);
+                // the smallest key of the subtree goes up, it is not a key of the node
+                smallestKeys.add(childKeys.get(first));
+                lines.add(nextLine++);
+                first += childCount;
+            }
+        }
+        io.setRootPointer(lines.get(0));
+        io.setDeletedNodePointer(Constants.nullPointer);
+        log.info("Bulk load: " + nextLine + " node(s)");
+    }
+
+    // a leaf is linked to the line after it (the next leaf) or is the last one
+    private void writeLeaf(TreeNode leaf, int line, boolean linked, ArrayList<byte[]> smallestKeys, ArrayList<Integer> lines) throws IOException {
+        leaf.setLastPointer(linked ? line + 1 : Constants.nullPointer);
+        io.writeNode(leaf, line);
+        smallestKeys.add(leaf.keyCount() == 0 ? null : leaf.getKeyBytes(0));
+        lines.add(line);
+    }
+
+    // entries (keys of a leaf, children of an inner node) per node at the fill factor, never less than min or more than max
+    private static int filled(int max, int min) {
+        return Integer.max(min, Integer.min(max, (int) Math.round(max * Config.getIndexFillFactor())));
+    }
+
+    // the count of entries of every node of a level, the last node shares with the one before it if it would be too small
+    // (more than max together -> both get at least half of max + 1, which is at least min)
+    private static ArrayList<Integer> levelSizes(int count, int perNode, int min, int max) {
+        ArrayList<Integer> sizes = new ArrayList<>();
+        for (int left = count; left > 0; left -= perNode) {
+            sizes.add(Integer.min(perNode, left));
+        }
+        int last = sizes.size() - 1;
+        if (last > 0 && sizes.get(last) < min) {
+            int total = sizes.get(last - 1) + sizes.remove(last);
+            if (total <= max) {
+                sizes.set(last - 1, total);
+            } else {
+                sizes.set(last - 1, total - total / 2);
+                sizes.add(total / 2);
+            }
+        }
+        return sizes;
+    }
+
     public int find(Key key) throws IOException, KeyNotFoundException {
         TreeNode node = io.readRoot();
         while(!node.isLeaf()){
@@ -44,22 +168,18 @@ public class BPlusTree {
         }
         boolean cond = true;
         while (cond){
-            ArrayList<Key> keys = node.getKeys();
-            for(int i = 0; i < keys.size() && cond; i++){
-                Key key = keys.get(i);
-                if(lowerBound.compareTo(key) < lowerCompareValue){
-                    if(key.compareTo(upperBound) >= upperCompareValue){
+            // the keys are compared in the node, only the first field of the ones in range is decoded
+            for(int i = 0; i < node.keyCount() && cond; i++){
+                if(node.compare(lowerBound, i) < lowerCompareValue){
+                    if(-node.compare(upperBound, i) >= upperCompareValue){
                         cond = false;
                     }else{
-                        try{
-                            result.put(node.getValueOfKey(key), key.getKey().get(0));
-                        }catch (KeyNotFoundException ignored) {}
+                        result.put(node.getPointer(i), node.getKeyField(i, 0));
                     }
                 }
             }
 
-            //yes this does remove the last pointer from the node, however the node is only in the memory and is not rewritten to disk, therefore it should not cause a problem
-            Integer pointer = node.popBackPointerFromNode();
+            int pointer = node.getLastPointer();
             if(nullPointer(pointer)){
                 cond = false;
             }else{
@@ -70,6 +190,24 @@ public class BPlusTree {
         return result;
     }
 
+    // every key of the tree in order, leaf by leaf
+    public void forEachKey(Consumer<Key> action) throws IOException {
+        TreeNode node = io.readRoot();
+        while(!node.isLeaf()){
+            node = io.readTreeNode(node.getFirstPointer());
+        }
+        while (true) {
+            for (int i = 0; i < node.keyCount(); i++) {
+                action.accept(node.getKey(i));
+            }
+            int pointer = node.getLastPointer();
+            if(nullPointer(pointer)){
+                return;
+            }
+            node = io.readTreeNode(pointer);
+        }
+    }
+
     public void insert(Key key, int pointer) throws IOException, KeyAlreadyInTreeException {
         Stack<Integer> parents = new Stack<>();
         parents.add(io.getRootPointer());
@@ -81,7 +219,7 @@ public class BPlusTree {
             parents.add(nodePointer);
         }
 
-        if(node.getKeys().contains(key)){
+        if(node.contains(key)){
             throw new KeyAlreadyInTreeException();
         }
 
@@ -111,7 +249,7 @@ public class BPlusTree {
             ArrayList<Integer> pointers = new ArrayList<>();
             pointers.add(leftNodePointer);
             pointers.add(rightNodePointer);
-            TreeNode rootNode = new TreeNode(false, keys, pointers, keyStructure);
+            TreeNode rootNode = new TreeNode(false, keys, pointers, io.getCodec(), io.getD());
 
             int newRootPointer = io.popEmptyNodePointer();
             io.writeNode(rootNode, newRootPointer);
@@ -197,7 +335,7 @@ public class BPlusTree {
             TreeNode siblingNode = io.readTreeNode(siblingPointer);
             Key siblingSeparatorKey = parentNode.getKeyBetween(nodePointer, siblingPointer);
 
-            if(siblingNode.keyCount() + node.keyCount() < Constants.D * 2){ //join Nodes
+            if(siblingNode.keyCount() + node.keyCount() < io.getD() * 2){ //join Nodes
                 if(isLeftSibling){
                     TreeNode temp = node;
                     node = siblingNode;
@@ -223,25 +361,27 @@ public class BPlusTree {
             } else{ //unable to join, must borrow
                 Key borrowedKey;
                 if(isLeftSibling) { //siblingNode is the left sibling of node
-                    borrowedKey = siblingNode.popBackKey();
+                    int last = siblingNode.keyCount() - 1;
+                    borrowedKey = siblingNode.getKey(last);
                     if(node.isLeaf()){
-                        Integer borrowedPointer = siblingNode.popSecondToLastPointer();
+                        Integer borrowedPointer = siblingNode.getPointer(last);
+                        siblingNode.removeEntry(last, last);
                         node.insertInLeaf(borrowedKey, borrowedPointer);
                     }else {
-                        Integer borrowedPointer = siblingNode.popBackPointerFromNode();
+                        Integer borrowedPointer = siblingNode.getLastPointer();
+                        siblingNode.removeEntry(last, last + 1);
                         //I know that this look stupid, but it is not an error
                         node.insertInLeaf(siblingSeparatorKey, borrowedPointer);
                     }
                     parentNode.replaceKey(siblingSeparatorKey, borrowedKey);
                 } else{ //siblingNode is the right sibling of node
-                    borrowedKey = siblingNode.popFrontKey();
+                    borrowedKey = siblingNode.getSmallestKey();
+                    Integer borrowedPointer = siblingNode.getFirstPointer();
+                    siblingNode.removeEntry(0, 0);
                     if(node.isLeaf()){
-                        Integer borrowedPointer = siblingNode.popFrontPointer();
                         node.insertInLeaf(borrowedKey, borrowedPointer);
                         parentNode.replaceKey(siblingSeparatorKey, siblingNode.getSmallestKey());
                     }else{
-                        Integer borrowedPointer = siblingNode.popFrontPointer();
-
                         node.insertInNode(siblingSeparatorKey, borrowedPointer);
                         parentNode.replaceKey(siblingSeparatorKey, borrowedKey);
                     }
@@ -271,6 +411,10 @@ public class BPlusTree {
         return pointer == Constants.nullPointer;
     }
 
+    public void flush() throws IOException {
+        io.flush();
+    }
+
     public void close() throws IOException {
         io.close();
     }
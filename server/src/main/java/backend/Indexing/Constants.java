@@ -1,7 +1,7 @@
 package backend.Indexing;
 
 public class Constants {
-    //B+tree node length
+    //B+tree node length of index files without a header (older versions), new files store theirs in the header
     public static final int D = 2;
     public static final int nullPointer = -1;
 }
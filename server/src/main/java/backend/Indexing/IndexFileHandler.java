@@ -1,99 +1,261 @@
 package backend.Indexing;
 
+import backend.config.Config;
+import backend.recordHandling.PageCache;
+import backend.recordHandling.RecordCodec;
+import backend.recordHandling.SharedFile;
 import backend.recordHandling.TypeConverter;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+// index file: [magic][version][d][page size][root pointer][deleted node pointer] padded to a page, then the nodes, every
+// node starts a page of its own (node line is page line + 1, unless d = Constants.D does not fit in a page), every node
+// has room for 2d keys
+// d is chosen when the file is created, the largest one whose nodes fit in a page of -Ddb.indexPageSize bytes, the page
+// size is kept in the file -> a node is always read / written as a single page of the page cache
+// version 1 / 2 files have no page size, their header is not padded and the nodes follow each other right after it
+// files of older versions have no magic / version / d: [root pointer][deleted node pointer], d = Constants.D
+// version 2 and later store the keys in the byte order of RecordCodec.ordered (compared as bytes), older files like the records
+// the decoded nodes are cached (written through), the root is pinned and the inner nodes are kept apart from the leaves,
+// so a walk over the leaves can't push the upper levels out -> a lookup mostly only reads its leaf
+// the header and the cache assume the handler is the only one writing the file (one manager per index, see HandlerRegistry)
+// the manager is shared by the readers of the index -> the node caches (access ordered) are only used under the handler's
+// lock, the page cache underneath has a lock of its own
+// the file is read and written through a page cache like the records, its writes are logged there and only reach the
+// file once the write-ahead log holds them (on eviction / flush)
 @Slf4j
 public class IndexFileHandler {
-    private final RandomAccessFile io;
-    private ArrayList<String> keyStructure;
-    private int nodeSize, headerSize;
+    private static final int MAGIC = 0x42505452;
+    private static final int VERSION = 3;
 
-    private final static long deletePointerOffset = Integer.BYTES;
-    public IndexFileHandler(ArrayList<String> keyStructure, String fileLocation) throws IOException {
-        this.headerSize = 2 * Integer.BYTES;
+    private final PageCache io;
+    private final String fileLocation;
+    // the keys in the nodes of the file
+    @Getter
+    private final RecordCodec codec;
+    private final int nodeSize, imageSize;
+    // position of node 0 and distance between two nodes (a page from version 3 on)
+    private final int firstNodeOffset, nodeStride;
+    @Getter
+    private final int d;
+
+    private final long rootPointerOffset, deletePointerOffset;
+    // null -> not read yet
+    private Integer rootPointer, deletedNodePointer;
 
-        this.keyStructure = keyStructure;
+    private TreeNode root;
+    private final LinkedHashMap<Integer, TreeNode> innerNodes, leaves;
+    private long hits, misses;
 
+    public IndexFileHandler(ArrayList<String> keyStructure, String fileLocation) throws IOException {
         int keySize = (int) TypeConverter.sizeofStructure(keyStructure);
-        nodeSize = 1 + Integer.BYTES + (2 * Constants.D) * keySize + (2 * Constants.D + 1) * Integer.BYTES;
 
-        io = new RandomAccessFile(fileLocation, "rw");
-        System.out.println("Open: IndexFileHandler");
-        if(io.length() == 0){
-            io.writeInt(0);
+        this.fileLocation = fileLocation;
+        // the header is read before the page cache exists, the cache's pages must be the file's pages
+        SharedFile file = SharedFile.open(fileLocation);
+        boolean created = file.size() == 0;
+        int version, pageSize = Config.getIndexPageSize();
+        if (created) {
+            version = VERSION;
+            d = fanout(pageSize, keySize);
+        } else if (file.size() >= 3 * Integer.BYTES && file.readInt(0) == MAGIC) {
+            version = file.readInt(Integer.BYTES);
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unknown version of index file " + fileLocation);
+            }
+            d = file.readInt(2 * Integer.BYTES);
+            if (version == VERSION) {
+                pageSize = file.readInt(3 * Integer.BYTES);
+            }
+        } else {
+            version = 0;
+            d = Constants.D;
+        }
+        io = new PageCache(file, fileLocation, pageSize, Config.getIndexNodeCacheCapacity());
+        log.debug("Open: IndexFileHandler " + fileLocation);
+
+        codec = version >= 2 ? RecordCodec.ordered(keyStructure) : RecordCodec.of(keyStructure);
+        int headerSize = version == 0 ? 2 * Integer.BYTES : version < VERSION ? 5 * Integer.BYTES : 6 * Integer.BYTES;
+        rootPointerOffset = headerSize - 2 * Integer.BYTES;
+        deletePointerOffset = headerSize - Integer.BYTES;
+        nodeSize = TreeNode.nodeSize(d, keySize);
+        imageSize = TreeNode.imageSize(d, keySize);
+        firstNodeOffset = version == VERSION ? pages(headerSize, pageSize) : headerSize;
+        nodeStride = version == VERSION ? pages(nodeSize, pageSize) : nodeSize;
+        if (created) {
+            write(0, ByteBuffer.allocate(firstNodeOffset).putInt(MAGIC).putInt(VERSION).putInt(d).putInt(pageSize).putInt(0).putInt(Constants.nullPointer).array());
+        }
+        innerNodes = lruCache(Config.getIndexNodeCacheCapacity());
+        leaves = lruCache(Config.getIndexNodeCacheCapacity());
+    }
+
+    // access ordered, the least recently used node is dropped once the capacity is exceeded
+    private static LinkedHashMap<Integer, TreeNode> lruCache(int capacity) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, TreeNode> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    // bytes of the whole pages the size takes
+    private static int pages(int size, int pageSize) {
+        return (size + pageSize - 1) / pageSize * pageSize;
+    }
+
+    // the largest d whose nodes fit in the page, at least Constants.D
+    private static int fanout(int pageSize, int keySize) {
+        int d = (pageSize - 1 - 2 * Integer.BYTES) / (2 * (keySize + Integer.BYTES));
+        return Integer.max(Constants.D, d);
+    }
+
+    public synchronized void writeNode(TreeNode node, int line) throws IOException {
+        byte[] bytes = node.toBytes();
+        long offset = getOffset(line);
+        // a node at the end of the file still takes its whole page / size, the node count is read from the file size
+        if (offset + nodeStride > io.length()) {
+            bytes = Arrays.copyOf(bytes, nodeStride);
+        }
+        write(offset, bytes);
+        remember(line, node.copy());
+    }
+
+    private void write(long offset, byte[] bytes) throws IOException {
+        io.write(offset, bytes);
+    }
+
+    private int readInt(long offset) throws IOException {
+        byte[] bytes = new byte[Integer.BYTES];
+        io.read(offset, bytes);
+        return ByteBuffer.wrap(bytes).getInt();
+    }
+
+    // the caller gets a copy it may change, the cached node only changes by writeNode
+    public synchronized TreeNode readTreeNode(int line) throws IOException {
+        TreeNode node = line == getRootPointer() ? root : innerNodes.get(line);
+        if (node == null) {
+            node = leaves.get(line);
+        }
+        if (node != null) {
+            hits++;
+            return node.copy();
+        }
+        misses++;
+
+        // read straight into the image of the node
+        byte[] bytes = new byte[imageSize];
+        if (getOffset(line) + nodeSize > io.length()) {
+            throw new EOFException(fileLocation);
         }
+        io.read(getOffset(line), bytes, 0, nodeSize);
+        node = new TreeNode(bytes, codec, d);
+        remember(line, node.copy());
+        return node;
     }
 
-    public void writeNode(TreeNode node, int line) throws IOException {
-        int offset = getOffset(line);
-        io.seek(offset);
-        io.write(node.toBytes());
+    private void remember(int line, TreeNode node) throws IOException {
+        if (line == getRootPointer()) {
+            root = node;
+        } else if (node.isLeaf()) {
+            innerNodes.remove(line);
+            leaves.put(line, node);
+        } else {
+            leaves.remove(line);
+            innerNodes.put(line, node);
+        }
     }
 
-    public TreeNode readTreeNode(int line) throws IOException {
-        int offset = getOffset(line);
-        io.seek(offset);
-        byte[] bytes = new byte[nodeSize];
-        io.readFully(bytes);
-        return new TreeNode(bytes, keyStructure);
+    // deleted nodes are not kept
+    private void forget(int line) {
+        if (rootPointer != null && line == rootPointer) {
+            root = null;
+        }
+        innerNodes.remove(line);
+        leaves.remove(line);
     }
 
-    public TreeNode readRoot() throws IOException {
+    public synchronized TreeNode readRoot() throws IOException {
         return readTreeNode(getRootPointer());
     }
 
-    public void setRootPointer(int rootPointer) throws IOException {
-        io.seek(0);
-        io.writeInt(rootPointer);
+    // the old root becomes an ordinary cached node, the new one is pinned
+    public synchronized void setRootPointer(int rootPointer) throws IOException {
+        write(rootPointerOffset, ByteBuffer.allocate(Integer.BYTES).putInt(rootPointer).array());
+        int oldRootPointer = getRootPointer();
+        TreeNode oldRoot = root;
+        this.rootPointer = rootPointer;
+        root = innerNodes.remove(rootPointer);
+        if (root == null) {
+            root = leaves.remove(rootPointer);
+        }
+        if (oldRoot != null && oldRootPointer != rootPointer) {
+            remember(oldRootPointer, oldRoot);
+        }
     }
 
-    public int getRootPointer() throws IOException {
-        io.seek(0);
-        return io.readInt();
+    public synchronized int getRootPointer() throws IOException {
+        if (rootPointer == null) {
+            rootPointer = readInt(rootPointerOffset);
+        }
+        return rootPointer;
     }
 
-    public void setDeletedNodePointer(int pointer) throws IOException {
-        io.seek(Integer.BYTES);
-        io.writeInt(pointer);
+    public synchronized void setDeletedNodePointer(int pointer) throws IOException {
+        write(deletePointerOffset, ByteBuffer.allocate(Integer.BYTES).putInt(pointer).array());
+        deletedNodePointer = pointer;
     }
 
-    public int getDeletedNodePointer() throws IOException {
-        io.seek(deletePointerOffset);
-        return io.readInt();
+    public synchronized int getDeletedNodePointer() throws IOException {
+        if (deletedNodePointer == null) {
+            deletedNodePointer = readInt(deletePointerOffset);
+        }
+        return deletedNodePointer;
     }
 
-    public void addEmptyNode(int line) throws IOException {
-        TreeNode emptyNode = TreeNode.createDeletedNode(getDeletedNodePointer(), keyStructure);
+    public synchronized void addEmptyNode(int line) throws IOException {
+        TreeNode emptyNode = TreeNode.createDeletedNode(getDeletedNodePointer(), codec, d);
         setDeletedNodePointer(line);
         writeNode(emptyNode, line);
+        forget(line);
     }
 
-    public int popEmptyNodePointer() throws IOException {
+    public synchronized int popEmptyNodePointer() throws IOException {
         int pointer = getDeletedNodePointer();
         if(pointer != Constants.nullPointer){
             TreeNode node = readTreeNode(pointer);
+            forget(pointer);
             setDeletedNodePointer(node.getFirstPointer());
             return pointer;
         }
         //end of file
-        return (int) ((io.length() - headerSize) / nodeSize);
+        return (int) ((io.length() - firstNodeOffset) / nodeStride);
+    }
+
+    public synchronized int getSize() throws IOException {
+        return (int) ((io.length() - firstNodeOffset) / nodeStride);
     }
 
-    public int getSize() throws IOException {
-        return (int) ((io.length() - headerSize) / nodeSize);
+    private long getOffset(int line){
+        return firstNodeOffset + (long) nodeStride * line;
     }
 
-    private int getOffset(int line){
-        return headerSize + nodeSize * line;
+    public synchronized void flush() throws IOException {
+        io.flush();
     }
 
-    public void close() throws IOException {
-        System.out.println("Close: IndexFileHandler");
-        io.close();
+    public synchronized void close() throws IOException {
+        // the file stays open for the next statement, see SharedFile
+        io.flush();
+        log.debug("Close: IndexFileHandler " + fileLocation);
+        log.info("Index node cache of " + fileLocation + ": " + hits + " hit(s), " + misses + " miss(es)");
     }
 }
@@ -1,8 +1,9 @@
 package backend.Indexing;
 
-import backend.recordHandling.TypeConverter;
+import backend.recordHandling.RecordCodec;
 import lombok.Getter;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 public class Key implements Comparable<Key> {
@@ -13,34 +14,48 @@ public class Key implements Comparable<Key> {
     @Getter
     private ArrayList<String> keyStructure;
 
+    private final RecordCodec codec;
+    // the key written by an ordered codec, a search compares the same key with the keys of every node on its way
+    private byte[] orderedBytes;
 
     public Key(byte[] bytes, ArrayList<String> keyStructure){
-        this.keyStructure = keyStructure;
-        key = TypeConverter.toObjectList(keyStructure, bytes);
+        this(RecordCodec.of(keyStructure).read(ByteBuffer.wrap(bytes), 0), keyStructure);
     }
 
     public Key(ArrayList<Object> key, ArrayList<String> keyStructure) {
+        this(key, keyStructure, RecordCodec.of(keyStructure));
+    }
+
+    // the codec of the key structure is already known (keys read from a node)
+    public Key(ArrayList<Object> key, ArrayList<String> keyStructure, RecordCodec codec) {
         this.key = key;
         this.keyStructure = keyStructure;
+        this.codec = codec;
     }
 
     public byte[] toBytes(){
-        return TypeConverter.toBytes(keyStructure, key);
+        ByteBuffer buffer = ByteBuffer.allocate(codec.size());
+        codec.write(buffer, 0, key);
+        return buffer.array();
     }
 
-    @Override
-    public int compareTo(Key o) {
-        ArrayList<Object> key = o.getKey();
-        for (int i = 0; i < key.size(); i++) {
-            int rel = TypeConverter.compare(keyStructure.get(i), this.key.get(i), key.get(i));
-            if (rel < 0) {
-                return -1;
-            } else if (rel > 0) {
-                return 1;
-            }
+    public void writeTo(ByteBuffer buffer, int position){
+        codec.write(buffer, position, key);
+    }
 
+    // null -> the key has a null value, which has no bytes
+    public byte[] getOrderedBytes(RecordCodec orderedCodec){
+        if(orderedBytes == null && !key.contains(null)){
+            ByteBuffer buffer = ByteBuffer.allocate(orderedCodec.size());
+            orderedCodec.write(buffer, 0, key);
+            orderedBytes = buffer.array();
         }
-        return 0;
+        return orderedBytes;
+    }
+
+    @Override
+    public int compareTo(Key o) {
+        return Integer.signum(codec.compare(key, o.getKey()));
     }
 
     @Override
@@ -0,0 +1,190 @@
+package backend.Indexing;
+
+import backend.config.Config;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+
+// counting Bloom filter over the keys of a unique index, a miss means the key is certainly not in the tree
+//      file: [int key count][int counter count][int hash count][counters, 4 bits each]
+// the counters let deleted keys be taken out again, a counter that reached 15 is never lowered (its true count is unknown)
+// every manager of an index shares one filter (a validator has to see the keys an updater of the same statement inserted),
+// the filter is written back when the last of them is closed, a missing or outdated file is rebuilt from the tree
+@Slf4j
+public class KeyFilter {
+    private static final HashMap<String, KeyFilter> OPEN_FILTERS = new HashMap<>();
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+    private static final int MAX_COUNT = 15;
+    // smallest number of keys a filter is sized for
+    private static final int MIN_CAPACITY = 1024;
+
+    private final String fileLocation;
+    private final int countersPerKey, hashCount;
+    private int references;
+
+    private byte[] counters;
+    private int counterCount, keyCount;
+    private boolean dirty;
+
+    // null if the filters are turned off (-Ddb.indexFilterCountersPerKey=0)
+    static synchronized KeyFilter open(String fileLocation, BPlusTree tree) throws IOException {
+        if (Config.getIndexFilterCountersPerKey() <= 0) {
+            return null;
+        }
+        KeyFilter filter = OPEN_FILTERS.get(fileLocation);
+        if (filter == null) {
+            filter = new KeyFilter(fileLocation, Config.getIndexFilterCountersPerKey());
+            if (!filter.load()) {
+                filter.rebuild(tree, 0);
+            }
+            OPEN_FILTERS.put(fileLocation, filter);
+        }
+        filter.references++;
+        return filter;
+    }
+
+    // the tree was (re)built from the table: the filter is built from it as well, an open instance is reset in place
+    static synchronized void create(String fileLocation, BPlusTree tree) throws IOException {
+        if (Config.getIndexFilterCountersPerKey() <= 0) {
+            return;
+        }
+        KeyFilter filter = OPEN_FILTERS.get(fileLocation);
+        if (filter == null) {
+            filter = new KeyFilter(fileLocation, Config.getIndexFilterCountersPerKey());
+        }
+        filter.rebuild(tree, 0);
+        filter.flush();
+    }
+
+    private KeyFilter(String fileLocation, int countersPerKey) {
+        this.fileLocation = fileLocation;
+        this.countersPerKey = countersPerKey;
+        this.hashCount = Integer.max(1, (int) Math.round(countersPerKey * Math.log(2)));
+    }
+
+    // false if there is no usable file
+    private boolean load() throws IOException {
+        if (!new File(fileLocation).exists()) {
+            return false;
+        }
+        try (RandomAccessFile io = new RandomAccessFile(fileLocation, "r")) {
+            if (io.length() < HEADER_SIZE) {
+                return false;
+            }
+            int keys = io.readInt(), count = io.readInt(), hashes = io.readInt();
+            if (hashes != hashCount || count <= 0 || io.length() != HEADER_SIZE + (count + 1) / 2) {
+                return false;
+            }
+            keyCount = keys;
+            counterCount = count;
+            counters = new byte[(count + 1) / 2];
+            io.readFully(counters);
+        }
+        return true;
+    }
+
+    // sizes the filter for at least the given number of keys and adds every key of the tree
+    private void rebuild(BPlusTree tree, int minKeys) throws IOException {
+        keyCount = 0;
+        tree.forEachKey(key -> keyCount++);
+        int capacity = Integer.max(MIN_CAPACITY, 2 * Integer.max(keyCount, minKeys));
+        counterCount = capacity * countersPerKey;
+        counters = new byte[(counterCount + 1) / 2];
+        tree.forEachKey(key -> change(key, 1));
+        dirty = true;
+        log.info("Key filter of " + fileLocation + " built for " + keyCount + " key(s)");
+    }
+
+    public synchronized boolean mightContain(Key key) {
+        long hash = hash(key.toBytes());
+        int h1 = (int) hash, h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            if (get(Integer.remainderUnsigned(h1 + i * h2, counterCount)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the key was just inserted into the tree (the tree is used to resize the filter when it gets too full)
+    public synchronized void add(Key key, BPlusTree tree) throws IOException {
+        if ((long) (keyCount + 1) * countersPerKey > counterCount) {
+            rebuild(tree, 2 * (keyCount + 1));
+            return;
+        }
+        keyCount++;
+        change(key, 1);
+        dirty = true;
+    }
+
+    // the key was just deleted from the tree
+    public synchronized void remove(Key key) {
+        keyCount = Integer.max(0, keyCount - 1);
+        change(key, -1);
+        dirty = true;
+    }
+
+    private void change(Key key, int delta) {
+        long hash = hash(key.toBytes());
+        int h1 = (int) hash, h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int counter = Integer.remainderUnsigned(h1 + i * h2, counterCount);
+            int count = get(counter);
+            if (count == MAX_COUNT || (delta < 0 && count == 0)) {
+                continue;
+            }
+            set(counter, count + delta);
+        }
+    }
+
+    private int get(int counter) {
+        return (counters[counter >>> 1] >>> ((counter & 1) << 2)) & 0xF;
+    }
+
+    private void set(int counter, int count) {
+        int shift = (counter & 1) << 2;
+        counters[counter >>> 1] = (byte) ((counters[counter >>> 1] & ~(0xF << shift)) | (count << shift));
+    }
+
+    // 64 bit FNV-1a of the key bytes, mixed so that both halves are usable as hashes
+    private static long hash(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    synchronized void flush() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        try (RandomAccessFile io = new RandomAccessFile(fileLocation, "rw")) {
+            io.setLength(0);
+            io.writeInt(keyCount);
+            io.writeInt(counterCount);
+            io.writeInt(hashCount);
+            io.write(counters);
+        }
+        dirty = false;
+    }
+
+    public void close() throws IOException {
+        synchronized (KeyFilter.class) {
+            if (--references > 0) {
+                return;
+            }
+            OPEN_FILTERS.remove(fileLocation);
+            flush();
+        }
+    }
+}
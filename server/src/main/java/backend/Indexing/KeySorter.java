@@ -0,0 +1,171 @@
+package backend.Indexing;
+
+import backend.config.Config;
+import backend.recordHandling.RecordCodec;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// (key, pointer) pairs of an index sorted by key, then pointer (CREATE INDEX)
+//      KeySorter sorter = new KeySorter(keyStructure, directory); sorter.add(key, pointer) ... sorter.finish();
+//      while ((entry = sorter.next()) != null) { ... } sorter.close();
+// an entry is [key in the byte order of RecordCodec.ordered][pointer], entries are compared as unsigned bytes
+// (the pointers are record lines, never negative)
+// the entries are kept in memory up to -Ddb.indexBuildMemory bytes, a full run is sorted and written to a temporary
+// file in the directory, finish merges the runs
+@Slf4j
+public class KeySorter {
+    private static final int BUFFER_SIZE = 1 << 16;
+    // the array header and reference of an entry kept in memory
+    private static final int ENTRY_OVERHEAD = 24;
+
+    private final ArrayList<String> keyStructure;
+    private final RecordCodec codec;
+    private final int keySize, entrySize;
+    private final File directory;
+
+    private ArrayList<byte[]> run = new ArrayList<>();
+    private long runBytes;
+    private final ArrayList<File> runFiles = new ArrayList<>();
+
+    // after finish: the sorted run in memory or the readers of the runs on disk
+    private int position;
+    private PriorityQueue<RunReader> readers;
+
+    public KeySorter(ArrayList<String> keyStructure, String directory) {
+        this.keyStructure = keyStructure;
+        this.directory = new File(directory);
+        codec = RecordCodec.ordered(keyStructure);
+        keySize = codec.size();
+        entrySize = keySize + Integer.BYTES;
+    }
+
+    public int getKeySize() {
+        return keySize;
+    }
+
+    // the key has no null values
+    public void add(List<Object> key, int pointer) throws IOException {
+        byte[] entry = new byte[entrySize];
+        ByteBuffer buffer = ByteBuffer.wrap(entry);
+        codec.write(buffer, 0, key);
+        buffer.putInt(keySize, pointer);
+        run.add(entry);
+        runBytes += entrySize + ENTRY_OVERHEAD;
+        if (runBytes >= Config.getIndexBuildMemory()) {
+            spill();
+        }
+    }
+
+    private void spill() throws IOException {
+        run.sort(Arrays::compareUnsigned);
+        File file = File.createTempFile("index", ".run", directory);
+        runFiles.add(file);
+        try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE)) {
+            for (byte[] entry : run) {
+                out.write(entry);
+            }
+        }
+        log.info("Index build: run " + runFiles.size() + " of " + run.size() + " key(s) written to " + file.getName());
+        run = new ArrayList<>();
+        runBytes = 0;
+    }
+
+    // no more entries are added, next returns them in order
+    public void finish() throws IOException {
+        if (runFiles.isEmpty()) {
+            run.sort(Arrays::compareUnsigned);
+            return;
+        }
+        if (!run.isEmpty()) {
+            spill();
+        }
+        readers = new PriorityQueue<>((reader1, reader2) -> Arrays.compareUnsigned(reader1.entry, reader2.entry));
+        for (File file : runFiles) {
+            RunReader reader = new RunReader(file);
+            if (reader.advance()) {
+                readers.add(reader);
+            } else {
+                reader.close();
+            }
+        }
+    }
+
+    // null -> no entries are left
+    public byte[] next() throws IOException {
+        if (readers == null) {
+            return position < run.size() ? run.get(position++) : null;
+        }
+        RunReader reader = readers.poll();
+        if (reader == null) {
+            return null;
+        }
+        byte[] entry = Arrays.copyOf(reader.entry, entrySize);
+        if (reader.advance()) {
+            readers.add(reader);
+        } else {
+            reader.close();
+        }
+        return entry;
+    }
+
+    public Key toKey(byte[] entry) {
+        return new Key(codec.read(ByteBuffer.wrap(entry), 0), keyStructure);
+    }
+
+    public int toPointer(byte[] entry) {
+        return ByteBuffer.wrap(entry).getInt(keySize);
+    }
+
+    // the temporary files are deleted
+    public void close() throws IOException {
+        if (readers != null) {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+            readers = null;
+        }
+        for (File file : runFiles) {
+            if (!file.delete()) {
+                log.error("Could not delete " + file);
+            }
+        }
+        runFiles.clear();
+        run = new ArrayList<>();
+    }
+
+    private class RunReader {
+        private final DataInputStream in;
+        private final byte[] entry = new byte[entrySize];
+
+        RunReader(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+        }
+
+        // false at the end of the run
+        boolean advance() throws IOException {
+            try {
+                in.readFully(entry);
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package backend.Indexing;
 
 import backend.databaseModels.IndexFileModel;
+import backend.exceptions.recordHandlingExceptions.KeyAlreadyInTreeException;
+import backend.recordHandling.HandlerRegistry;
 import backend.service.CatalogManager;
 
 import java.io.IOException;
@@ -28,7 +30,7 @@ public class MultipleIndexUpdater {
         uniqueIndexFieldNames = uniqueIndexes.stream().map(IndexFileModel::getIndexFields).collect(Collectors.toCollection(ArrayList::new));
         uniqueIndexManagers = new ArrayList<>();
         for (final String indexName : uniqueIndexNames) {
-            this.uniqueIndexManagers.add(new UniqueIndexManager(databaseName, tableName, indexName));
+            this.uniqueIndexManagers.add(HandlerRegistry.uniqueIndexManager(databaseName, tableName, indexName));
         }
 
         // All non-unique indexes
@@ -37,7 +39,7 @@ public class MultipleIndexUpdater {
         nonUniqueIndexFieldNames = nonUniqueIndexes.stream().map(IndexFileModel::getIndexFields).collect(Collectors.toCollection(ArrayList::new));
         nonUniqueIndexManagers = new ArrayList<>();
         for (final String indexName : nonUniqueIndexNames) {
-            this.nonUniqueIndexManagers.add(new NonUniqueIndexManager(databaseName, tableName, indexName));
+            this.nonUniqueIndexManagers.add(HandlerRegistry.nonUniqueIndexManager(databaseName, tableName, indexName));
         }
     }
 
@@ -73,6 +75,32 @@ public class MultipleIndexUpdater {
         }
     }
 
+    // same as calling insert for every row, but every index receives all of its keys at once
+    public void insertBatch(List<ArrayList<String>> rows, List<Integer> pointers) throws IOException, KeyAlreadyInTreeException {
+        for (int i = 0; i < uniqueIndexManagers.size(); i++) {
+            ArrayList<ArrayList<String>> uniqueValues = new ArrayList<>();
+            for (var row : rows) {
+                uniqueValues.add(project(row, uniqueIndexFieldNames.get(i)));
+            }
+            uniqueIndexManagers.get(i).insertBatch(uniqueValues, pointers);
+        }
+        for (int i = 0; i < nonUniqueIndexManagers.size(); i++) {
+            ArrayList<ArrayList<String>> nonUniqueValues = new ArrayList<>();
+            for (var row : rows) {
+                nonUniqueValues.add(project(row, nonUniqueIndexFieldNames.get(i)));
+            }
+            nonUniqueIndexManagers.get(i).insertBatch(nonUniqueValues, pointers);
+        }
+    }
+
+    private ArrayList<String> project(ArrayList<String> row, List<String> fieldNames) {
+        ArrayList<String> values = new ArrayList<>();
+        for (var fieldName : fieldNames) {
+            values.add(row.get(tableFieldNames.indexOf(fieldName)));
+        }
+        return values;
+    }
+
     public void delete(ArrayList<String> row, Integer pointer){
         ArrayList<ArrayList<String>> uniqueValues = new ArrayList<>();
         for (var uniqueFieldNames : uniqueIndexFieldNames) {
@@ -105,12 +133,18 @@ public class MultipleIndexUpdater {
         }
     }
 
+    // the row was moved from oldPointer to newPointer, every index is updated to point to the new line
+    public void move(ArrayList<String> row, Integer oldPointer, Integer newPointer) {
+        delete(row, oldPointer);
+        insert(row, newPointer);
+    }
+
     public void close() throws IOException {
         for(var manager : uniqueIndexManagers){
-            manager.close();
+            HandlerRegistry.release(manager);
         }
         for(var manager : nonUniqueIndexManagers){
-            manager.close();
+            HandlerRegistry.release(manager);
         }
     }
 }
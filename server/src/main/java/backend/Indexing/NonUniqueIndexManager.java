@@ -3,15 +3,19 @@ package backend.Indexing;
 import backend.exceptions.recordHandlingExceptions.KeyAlreadyInTreeException;
 import backend.exceptions.recordHandlingExceptions.KeyNotFoundException;
 import backend.exceptions.recordHandlingExceptions.UndefinedQueryException;
-import backend.recordHandling.RecordReader;
+import backend.recordHandling.HandlerRegistry;
+import backend.recordHandling.RecordCursor;
 import backend.recordHandling.TypeConverter;
+import backend.recovery.WriteAheadLog;
 import backend.service.CatalogManager;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @Slf4j
@@ -38,6 +42,9 @@ public class NonUniqueIndexManager implements Queryable{
     }
 
     public boolean isPresent(ArrayList<String> values, Integer pointer){
+        if (TypeConverter.containsNull(values)) {
+            return false;
+        }
         values.add(pointer.toString());
         Key key = TypeConverter.toKey(keyStructure, values);
         try{
@@ -130,13 +137,38 @@ public class NonUniqueIndexManager implements Queryable{
         return bPlusTree.rangeQuery(lowerKey, lowerKey, lowerCompareValue, 2);
     }
 
+    // keys with a null value are not indexed
     public void insert(ArrayList<String> values, Integer pointer) throws IOException, KeyAlreadyInTreeException {
+        if (TypeConverter.containsNull(values)) {
+            return;
+        }
         values.add(pointer.toString());
         Key key = TypeConverter.toKey(keyStructure, values);
         bPlusTree.insert(key, pointer);
     }
 
+    // keys are inserted in sorted order, consecutive inserts then walk down the same path of the tree
+    public void insertBatch(List<ArrayList<String>> values, List<Integer> pointers) throws IOException, KeyAlreadyInTreeException {
+        ArrayList<Map.Entry<Key, Integer>> entries = new ArrayList<>();
+        for (int i = 0; i < values.size(); i++) {
+            if (TypeConverter.containsNull(values.get(i))) {
+                continue;
+            }
+            ArrayList<String> value = new ArrayList<>(values.get(i));
+            value.add(pointers.get(i).toString());
+            entries.add(Map.entry(TypeConverter.toKey(keyStructure, value), pointers.get(i)));
+        }
+        entries.sort(Map.Entry.comparingByKey());
+
+        for (var entry : entries) {
+            bPlusTree.insert(entry.getKey(), entry.getValue());
+        }
+    }
+
     public void delete(ArrayList<String> values, Integer pointer) throws IOException {
+        if (TypeConverter.containsNull(values)) {
+            return;
+        }
         values.add(pointer.toString());
         Key key = TypeConverter.toKey(keyStructure, values);
         try {
@@ -144,6 +176,11 @@ public class NonUniqueIndexManager implements Queryable{
         }catch (KeyNotFoundException ignored){}
     }
 
+    @Override
+    public void flush() throws IOException {
+        bPlusTree.flush();
+    }
+
     @Override
     public void close() throws IOException {
         bPlusTree.close();
@@ -154,6 +191,8 @@ public class NonUniqueIndexManager implements Queryable{
         keyStruct.add("int");
         String filename = CatalogManager.getTableIndexFilePath(databaseName, tableName, indexName);
 
+        HandlerRegistry.closeIndex(databaseName, tableName, indexName);
+        WriteAheadLog.logCreate(filename);
         BPlusTree emptyTree = new BPlusTree((ArrayList<String>) keyStruct, filename);
         emptyTree.createEmptyTree();
         emptyTree.close();
@@ -166,22 +205,33 @@ public class NonUniqueIndexManager implements Queryable{
 
         String filename = CatalogManager.getTableIndexFilePath(databaseName, tableName, indexName);
 
+        HandlerRegistry.closeIndex(databaseName, tableName, indexName);
+        WriteAheadLog.logCreate(filename);
         BPlusTree tree = new BPlusTree(keyStruct, filename);
         tree.createEmptyTree();
 
-        RecordReader reader = new RecordReader(databaseName, tableName);
-
-        ArrayList<ArrayList<Object>> table = reader.scan(keyColumnNames);
-        ArrayList<Integer> pointers = new ArrayList<>(reader.getAllPointers());
-        for(int i = 0; i < table.size(); i++){
-            try{
-                ArrayList<Object> key = table.get(i);
-                key.add(pointers.get(i));
-                tree.insert(new Key(key, keyStruct), pointers.get(i));
-            }catch (KeyAlreadyInTreeException ignored){}
+        // stream the table into the sorter, only the key columns of the current record are decoded
+        KeySorter sorter = new KeySorter(keyStruct, new File(filename).getParent());
+        try {
+            RecordCursor cursor = new RecordCursor(databaseName, tableName, keyColumnNames, true);
+            try {
+                cursor.open();
+                ArrayList<Object> record;
+                while ((record = cursor.next()) != null) {
+                    if (record.contains(null)) {
+                        continue;
+                    }
+                    ArrayList<Object> key = new ArrayList<>(record);
+                    key.add(cursor.getPointer());
+                    sorter.add(key, cursor.getPointer());
+                }
+            } finally {
+                cursor.close();
+            }
+            tree.bulkLoad(sorter, false);
+        } finally {
+            sorter.close();
         }
-
-        reader.close();
         tree.close();
     }
 }
@@ -1,15 +1,15 @@
 package backend.Indexing;
 
 import backend.exceptions.recordHandlingExceptions.UndefinedQueryException;
+import backend.recordHandling.SharedHandler;
 
 import java.io.IOException;
 import java.util.HashMap;
 
-public interface Queryable {
+// an index, kept open between statements by the HandlerRegistry
+public interface Queryable extends SharedHandler {
     HashMap<Integer, Object> equalityQuery(Object key) throws UndefinedQueryException, IOException;
     HashMap<Integer, Object> rangeQuery(Object lowerBound, Object upperBound, boolean allowEqualityLower, boolean allowEqualityUpper) throws UndefinedQueryException, IOException;
     HashMap<Integer, Object> lesserQuery(Object upperBound, boolean allowEquality) throws UndefinedQueryException, IOException;
     HashMap<Integer, Object> greaterQuery(Object lowerBound, boolean allowEquality) throws UndefinedQueryException, IOException;
-
-    void close() throws IOException;
 }
@@ -1,306 +1,381 @@
 package backend.Indexing;
 
 import backend.exceptions.recordHandlingExceptions.KeyNotFoundException;
-import backend.exceptions.recordHandlingExceptions.RecordNotFoundException;
-import backend.recordHandling.TypeConverter;
+import backend.recordHandling.RecordCodec;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-
+import java.util.Arrays;
+import java.util.Objects;
+
+// a node is kept as the image of its bytes on disk: [leaf byte][key count][pointer, key]...[last pointer]
+//      keys are fixed width -> key i is found by its offset, searched by binary search and compared in place,
+//      only keys a caller asks for are decoded
+//      inserts and removes shift the bytes behind the entry, the image has room for one key more than a full node
+//      (an inner node holds 2d + 1 keys until it is split)
+// the keys of an ordered codec (RecordCodec.ordered) are compared as unsigned bytes, without reading their fields
+// in a leaf pointer i belongs to key i and the last pointer is the next leaf,
+// in an inner node the keys of the subtree of pointer i are < key i <= the keys of the subtree of pointer i + 1
 @Slf4j
 public class TreeNode {
+    private static final int HEADER_SIZE = 1 + Integer.BYTES;
+
+    private final byte[] image;
+    private final ByteBuffer buffer;
     @Getter
-    private boolean isLeaf;
-    @Getter
-    private ArrayList<Key> keys;
+    private final ArrayList<String> keyStructure;
+    // the bytes of the keys in the node, the keys handed out use the plain codec of the structure
     @Getter
-    private ArrayList<Integer> pointers;
+    private final RecordCodec codec;
+    private final RecordCodec keyCodec;
+    private final int keySize, entrySize;
+    // a node holds up to 2d keys, every node but the root at least d
     @Getter
-    private final ArrayList<String> keyStructure;
-    private final int keySize;
-    private final int nodeSize;
+    private final int d;
 
     public int keyCount(){
-        return keys.size();
+        return buffer.getInt(1);
+    }
+
+    private void setKeyCount(int keyCount){
+        buffer.putInt(1, keyCount);
+    }
+
+    public boolean isLeaf(){
+        return image[0] == 1;
     }
 
     //empty node
-    public TreeNode(boolean isLeaf, ArrayList<String> keyStructure){
-        this.isLeaf = isLeaf;
-        this.keyStructure = keyStructure;
+    public TreeNode(boolean isLeaf, RecordCodec codec, int d){
+        this((byte[]) null, codec, d);
+        image[0] = (byte) (isLeaf ? 1 : 0);
+        setKeyCount(0);
+        buffer.putInt(HEADER_SIZE, Constants.nullPointer);
+    }
 
-        keySize = (int) TypeConverter.sizeofStructure(keyStructure);
+    public TreeNode(boolean isLeaf, ArrayList<Key> keys, ArrayList<Integer> pointers, RecordCodec codec, int d) {
+        this(isLeaf, codec, d);
+        setKeyCount(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            buffer.putInt(pointerOffset(i), pointers.get(i));
+            writeKey(keys.get(i), i);
+        }
+        buffer.putInt(pointerOffset(keys.size()), pointers.get(keys.size()));
+    }
 
-        nodeSize = 1 + Integer.BYTES + (2 * Constants.D) * keySize + (2 * Constants.D + 1) * Integer.BYTES;
-        keys = new ArrayList<>();
-        pointers = new ArrayList<>();
-        pointers.add(Constants.nullPointer);
+    // the bytes are used as the image if they have room for it (no copy), null -> a new image
+    public TreeNode(byte[] bytes, RecordCodec codec, int d){
+        this.codec = codec;
+        this.d = d;
+        keyCodec = codec.plain();
+        keyStructure = codec.getTypes();
+        keySize = codec.size();
+        entrySize = Integer.BYTES + keySize;
+
+        int imageSize = imageSize(d, keySize);
+        if (bytes == null) {
+            image = new byte[imageSize];
+        } else {
+            image = bytes.length >= imageSize ? bytes : Arrays.copyOf(bytes, imageSize);
+        }
+        buffer = ByteBuffer.wrap(image);
     }
 
-    public TreeNode(boolean isLeaf, ArrayList<Key> keys, ArrayList<Integer> pointers, ArrayList<String> keyStructure) {
-        this.isLeaf = isLeaf;
-        this.keys = keys;
-        this.pointers = pointers;
-        this.keyStructure = keyStructure;
+    public TreeNode copy() {
+        return new TreeNode(Arrays.copyOf(image, image.length), codec, d);
+    }
 
-        keySize = (int) TypeConverter.sizeofStructure(keyStructure);
-        nodeSize = 1 + Integer.BYTES + (2 * Constants.D) * keySize + (2 * Constants.D + 1) * Integer.BYTES;
+    // bytes of a node on disk: [leaf byte][key count][pointer, key]...[last pointer], room for 2d keys
+    public static int nodeSize(int d, int keySize) {
+        return HEADER_SIZE + (2 * d) * (Integer.BYTES + keySize) + Integer.BYTES;
     }
 
-    public TreeNode(byte[] bytes, ArrayList<String> keyStructure){
-        keys = new ArrayList<>();
-        pointers = new ArrayList<>();
-        this.keyStructure = keyStructure;
-        keySize = (int) TypeConverter.sizeofStructure(keyStructure);
-        nodeSize = 1 + Integer.BYTES + (2 * Constants.D) * keySize + (2 * Constants.D + 1) * Integer.BYTES;
+    // bytes of a node in memory, one key more than on disk
+    public static int imageSize(int d, int keySize) {
+        return nodeSize(d, keySize) + Integer.BYTES + keySize;
+    }
 
-        ByteBuffer buffer = ByteBuffer.wrap(bytes);
-        isLeaf = buffer.get() == 1;
-        int keyCount = buffer.getInt();
-        pointers.add(buffer.getInt());
+    public static TreeNode createDeletedNode(int pointer, RecordCodec codec, int d){
+        TreeNode node = new TreeNode(false, codec, d);
+        node.buffer.putInt(HEADER_SIZE, pointer);
+        return node;
+    }
 
-        for (int i = 0; i < keyCount; i++){
-            byte[] keyBytes = new byte[keySize];
-            buffer.get(keyBytes);
-            keys.add(new Key(keyBytes, keyStructure));
-            pointers.add(buffer.getInt());
-        }
+    private int pointerOffset(int i){
+        return HEADER_SIZE + i * entrySize;
+    }
 
+    private int keyOffset(int i){
+        return pointerOffset(i) + Integer.BYTES;
     }
 
-    public static TreeNode createDeletedNode(int pointer, ArrayList<String> keyStructure){
-        ArrayList<Key> emptyKeys = new ArrayList<>();
-        ArrayList<Integer> pointerToNextDeletedNode = new ArrayList<>();
-        pointerToNextDeletedNode.add(pointer);
-        return new TreeNode(false, emptyKeys, pointerToNextDeletedNode, keyStructure);
+    // the end of the last pointer
+    private int usedSize(){
+        return pointerOffset(keyCount()) + Integer.BYTES;
     }
 
+    // only the used part of the node, the rest of its space on disk is never read
     public byte[] toBytes(){
-        ByteBuffer buffer = ByteBuffer.allocate(nodeSize);
+        return Arrays.copyOf(image, usedSize());
+    }
 
-        if(isLeaf){
-            buffer.put((byte) 1);
-        }else{
-            buffer.put((byte) 0);
-        }
+    public Key getKey(int i){
+        Objects.checkIndex(i, keyCount());
+        return new Key(codec.read(buffer, keyOffset(i)), keyStructure, keyCodec);
+    }
 
-        buffer.putInt(keyCount());
-        for(int i = 0; i < keyCount(); i++){
-            buffer.putInt(pointers.get(i));
-            buffer.put(keys.get(i).toBytes());
-        }
+    // the bytes of key i as written by the node's codec
+    byte[] getKeyBytes(int i){
+        Objects.checkIndex(i, keyCount());
+        return Arrays.copyOfRange(image, keyOffset(i), keyOffset(i) + keySize);
+    }
+
+    private void writeKey(Key key, int i){
+        codec.write(buffer, keyOffset(i), key.getKey());
+    }
 
-        buffer.putInt(pointers.get(keyCount()));
+    // a single field of key i, the rest of the key is not decoded
+    public Object getKeyField(int i, int field){
+        Objects.checkIndex(i, keyCount());
+        return codec.getCodec(field).read(buffer, keyOffset(i) + codec.getOffset(field));
+    }
 
-        return buffer.array();
+    public int getPointer(int i){
+        Objects.checkIndex(i, keyCount() + 1);
+        return buffer.getInt(pointerOffset(i));
     }
 
-    public int findNextNode(Key key){
-        for(int i = 0; i < keyCount(); i++){
-            if(key.compareTo(keys.get(i)) < 0){
-                return pointers.get(i);
-            }
+    public Integer getFirstPointer(){
+        return buffer.getInt(HEADER_SIZE);
+    }
+
+    // the next leaf of a leaf
+    public int getLastPointer(){
+        return buffer.getInt(pointerOffset(keyCount()));
+    }
+
+    void setLastPointer(int pointer){
+        buffer.putInt(pointerOffset(keyCount()), pointer);
+    }
+
+    // same as key.compareTo(getKey(i))
+    public int compare(Key key, int i){
+        byte[] bytes = codec.isOrdered() ? key.getOrderedBytes(codec) : null;
+        if (bytes != null) {
+            int offset = keyOffset(i);
+            return Integer.signum(Arrays.compareUnsigned(bytes, 0, keySize, image, offset, offset + keySize));
         }
-        return pointers.get(keyCount());
+        return Integer.signum(codec.compare(key.getKey(), buffer, keyOffset(i)));
     }
 
-    public void insertInLeaf(Key key, int pointer){
-        ArrayList<Key> newKeys = new ArrayList<>();
-        ArrayList<Integer> newPointers = new ArrayList<>();
-
-        int i = 0;
-        while(i < keyCount() && key.compareTo(keys.get(i)) > 0){
-            newKeys.add(keys.get(i));
-            newPointers.add(pointers.get(i));
-            i++;
+    // the first key >= key (after -> > key), keyCount() if there is none
+    private int search(Key key, boolean after){
+        int low = 0, high = keyCount();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int rel = compare(key, middle);
+            if (rel > 0 || (after && rel == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
         }
-        newKeys.add(key);
-        newPointers.add(pointer);
-        while(i < keyCount()){
-            newKeys.add(keys.get(i));
-            newPointers.add(pointers.get(i));
-            i++;
+        return low;
+    }
+
+    private int indexOf(Key key){
+        int i = search(key, false);
+        return i < keyCount() && compare(key, i) == 0 ? i : -1;
+    }
+
+    private int indexOfPointer(int pointer){
+        for (int i = 0; i <= keyCount(); i++) {
+            if (buffer.getInt(pointerOffset(i)) == pointer) {
+                return i;
+            }
         }
-        newPointers.add(pointers.get(keyCount()));
+        return -1;
+    }
+
+    public boolean contains(Key key){
+        return indexOf(key) != -1;
+    }
+
+    public int findNextNode(Key key){
+        return buffer.getInt(pointerOffset(search(key, true)));
+    }
+
+    // moves the bytes from the offset to the end of the node by distance (negative -> towards the front)
+    private void shift(int offset, int distance){
+        System.arraycopy(image, offset, image, offset + distance, usedSize() - offset);
+    }
 
-        keys = newKeys;
-        pointers = newPointers;
+    // the pointer comes before the key
+    public void insertInLeaf(Key key, int pointer){
+        int i = search(key, false);
+        shift(pointerOffset(i), entrySize);
+        buffer.putInt(pointerOffset(i), pointer);
+        writeKey(key, i);
+        setKeyCount(keyCount() + 1);
     }
 
+    // the pointer comes after the key
     public void insertInNode(Key key, int pointer){
-        ArrayList<Key> newKeys = new ArrayList<>();
-        ArrayList<Integer> newPointers = new ArrayList<>();
-
-        int i = 0;
-        newPointers.add(pointers.get(0));
-        while(i < keyCount() && key.compareTo(keys.get(i)) > 0){
-            newKeys.add(keys.get(i));
-            i++;
-            newPointers.add(pointers.get(i));
-        }
-        newKeys.add(key);
-        newPointers.add(pointer);
-        while(i < keyCount()){
-            newKeys.add(keys.get(i));
-            i++;
-            newPointers.add(pointers.get(i));
-        }
-        //newPointers.add(pointers.get(keyCount()));
+        int i = search(key, false);
+        shift(keyOffset(i), entrySize);
+        writeKey(key, i);
+        buffer.putInt(pointerOffset(i + 1), pointer);
+        setKeyCount(keyCount() + 1);
+    }
 
-        keys = newKeys;
-        pointers = newPointers;
+    // bulk loading: the key (bytes of the node's codec, from the start of the array) comes after every key of the node,
+    // in a leaf the last pointer stays the last one
+    void appendInLeaf(byte[] key, int pointer){
+        int keyCount = keyCount();
+        int lastPointer = getLastPointer();
+        buffer.putInt(pointerOffset(keyCount), pointer);
+        System.arraycopy(key, 0, image, keyOffset(keyCount), keySize);
+        buffer.putInt(pointerOffset(keyCount + 1), lastPointer);
+        setKeyCount(keyCount + 1);
     }
 
-    public TreeNode splitLeaf(int splitLocation){
-        ArrayList<Key> leftKeys = new ArrayList<>(), rightKeys = new ArrayList<>();
-        ArrayList<Integer> leftPointers = new ArrayList<>(), rightPointers = new ArrayList<>();
-
-        for(int i = 0; i < Constants.D; i++){
-            leftKeys.add(keys.get(i));
-            leftPointers.add(pointers.get(i));
-            rightKeys.add(keys.get(Constants.D + i));
-            rightPointers.add(pointers.get(Constants.D + i));
-        }
-        leftPointers.add(splitLocation);
-        rightPointers.add(pointers.get(keyCount()));
+    void appendInNode(byte[] key, int pointer){
+        int keyCount = keyCount();
+        System.arraycopy(key, 0, image, keyOffset(keyCount), keySize);
+        buffer.putInt(pointerOffset(keyCount + 1), pointer);
+        setKeyCount(keyCount + 1);
+    }
 
+    // key i and pointer i (leaf) or pointer i + 1 (inner node)
+    public void removeEntry(int keyIndex, int pointerIndex){
+        int offset = pointerIndex == keyIndex ? pointerOffset(keyIndex) : keyOffset(keyIndex);
+        shift(offset + entrySize, -entrySize);
+        setKeyCount(keyCount() - 1);
+    }
 
-        TreeNode node = new TreeNode(isLeaf, rightKeys, rightPointers, keyStructure);
-        keys = leftKeys;
-        pointers = leftPointers;
+    // the upper half moves to the new node, the lower half is linked to it
+    public TreeNode splitLeaf(int splitLocation){
+        TreeNode node = new TreeNode(isLeaf(), codec, d);
+        int from = pointerOffset(d);
+        System.arraycopy(image, from, node.image, HEADER_SIZE, usedSize() - from);
+        node.setKeyCount(keyCount() - d);
+
+        setKeyCount(d);
+        buffer.putInt(pointerOffset(d), splitLocation);
         return node;
     }
 
+    // the middle key (getMiddleKey) moves up to the parent, it is in neither of the halves
     public TreeNode splitNode(){
-        ArrayList<Key> leftKeys = new ArrayList<>(), rightKeys = new ArrayList<>();
-        ArrayList<Integer> leftPointers = new ArrayList<>(), rightPointers = new ArrayList<>();
-
-        for(int i = 0; i < Constants.D; i++){
-            leftKeys.add(keys.get(i));
-            leftPointers.add(pointers.get(i));
-            rightKeys.add(keys.get(Constants.D + i + 1));
-            rightPointers.add(pointers.get(Constants.D + i + 1));
-        }
-        leftPointers.add(pointers.get(Constants.D));
-        rightPointers.add(pointers.get(keyCount()));
-
+        TreeNode node = new TreeNode(isLeaf(), codec, d);
+        int from = pointerOffset(d + 1);
+        System.arraycopy(image, from, node.image, HEADER_SIZE, usedSize() - from);
+        node.setKeyCount(keyCount() - d - 1);
 
-        TreeNode node = new TreeNode(isLeaf, rightKeys, rightPointers, keyStructure);
-        keys = leftKeys;
-        pointers = leftPointers;
+        setKeyCount(d);
         return node;
     }
 
     public boolean isAlmostFull(){
-        return keyCount() == Constants.D * 2 - 1;
+        return keyCount() == d * 2 - 1;
     }
 
     public boolean isFull() {
-        return keyCount() == Constants.D * 2;
+        return keyCount() == d * 2;
     }
 
     public boolean isTooSmall(){
-        return keyCount() < Constants.D;
+        return keyCount() < d;
     }
 
     public void removeKeyAndPointer(Key key, Integer pointer) throws KeyNotFoundException {
-        if(!keys.contains(key) || !pointers.contains(pointer)){
+        int i = indexOf(key);
+        int pointerIndex = isLeaf() ? i : i + 1;
+        if(i == -1 || buffer.getInt(pointerOffset(pointerIndex)) != pointer){
             throw new KeyNotFoundException();
         }
-        keys.remove(key);
-        pointers.remove(pointer);
+        removeEntry(i, pointerIndex);
     }
 
     public void replaceKey(Key oldKey, Key newKey){
-        keys.set(keys.indexOf(oldKey), newKey);
+        int i = indexOf(oldKey);
+        Objects.checkIndex(i, keyCount());
+        writeKey(newKey, i);
     }
 
     public Integer getValueOfKey(Key key) throws KeyNotFoundException {
-        int i = keys.indexOf(key);
+        int i = indexOf(key);
         if(i == -1){
             throw new KeyNotFoundException();
         }
-        return pointers.get(i);
+        return buffer.getInt(pointerOffset(i));
     }
+
     public Key getKeyBetween(int pointer1, int pointer2){
-        int i1 = pointers.indexOf(pointer1), i2 = pointers.indexOf(pointer2);
-        return keys.get(Integer.min(i1, i2));
+        int i1 = indexOfPointer(pointer1), i2 = indexOfPointer(pointer2);
+        return getKey(Integer.min(i1, i2));
     }
 
     public Key getSmallestKey(){
-        return keys.get(0);
+        return getKey(0);
     }
 
-    public Key getMiddleKey() {return keys.get(Constants.D);}
+    public Key getMiddleKey() {return getKey(d);}
 
     public Integer getLeftSiblingPointer(int childPointer){
-        if(isLeaf){
+        if(isLeaf()){
             return null;
         }
-        int i = pointers.indexOf(childPointer);
+        int i = indexOfPointer(childPointer);
         if(i <= 0){
             return null;
         }
-        return pointers.get(i - 1);
+        return getPointer(i - 1);
     }
 
     public Integer getRightSiblingPointer(int childPointer){
-        if(isLeaf){
+        if(isLeaf()){
             return null;
         }
-        int i = pointers.indexOf(childPointer);
+        int i = indexOfPointer(childPointer);
         if(i == keyCount()){
             return null;
         }
-        return pointers.get(i + 1);
+        return getPointer(i + 1);
     }
 
+    // the entries of the sibling replace the last pointer, the sibling's last pointer becomes the last one
     public void joinLeaves(TreeNode sibling){
-        if(!isLeaf || !sibling.isLeaf()){
+        if(!isLeaf() || !sibling.isLeaf()){
             log.warn("Invalid join method called");
             return;
         }
-        pointers.remove(keyCount());
-        pointers.addAll(sibling.getPointers());
-        keys.addAll(sibling.getKeys());
-
+        int keyCount = keyCount();
+        System.arraycopy(sibling.image, HEADER_SIZE, image, pointerOffset(keyCount), sibling.usedSize() - HEADER_SIZE);
+        setKeyCount(keyCount + sibling.keyCount());
     }
 
+    // the separator key comes between the last pointer of the node and the first of the sibling
     public void join(TreeNode sibling, Key key){
-        keys.add(key);
-        keys.addAll(sibling.getKeys());
-        pointers.addAll(sibling.getPointers());
-
-    }
-
-    public Integer getFirstPointer(){
-        return pointers.get(0);
-    }
-
-    public Key popBackKey(){
-        return keys.remove(keyCount() - 1);
-    }
-
-    public Key popFrontKey() {
-        return keys.remove(0);
-    }
-
-    public Integer popFrontPointer(){
-        return pointers.remove(0);
-    }
-
-    public Integer popBackPointerFromNode() {return  pointers.remove(pointers.size() - 1);}
-
-    public Integer popSecondToLastPointer(){
-        return pointers.remove(pointers.size() - 2);
+        int keyCount = keyCount();
+        writeKey(key, keyCount);
+        System.arraycopy(sibling.image, HEADER_SIZE, image, pointerOffset(keyCount + 1), sibling.usedSize() - HEADER_SIZE);
+        setKeyCount(keyCount + 1 + sibling.keyCount());
     }
 
     @Override
     public String toString() {
+        ArrayList<Key> keys = new ArrayList<>();
+        ArrayList<Integer> pointers = new ArrayList<>();
+        for (int i = 0; i < keyCount(); i++) {
+            keys.add(getKey(i));
+            pointers.add(getPointer(i));
+        }
+        pointers.add(getLastPointer());
         return "TreeNode{" +
-                "isLeaf=" + isLeaf +
+                "isLeaf=" + isLeaf() +
                 ", keyCount=" + keyCount() +
                 ", keys=" + keys +
                 ", pointers=" + pointers +
@@ -3,11 +3,14 @@ package backend.Indexing;
 import backend.exceptions.recordHandlingExceptions.KeyAlreadyInTreeException;
 import backend.exceptions.recordHandlingExceptions.KeyNotFoundException;
 import backend.exceptions.recordHandlingExceptions.UndefinedQueryException;
-import backend.recordHandling.RecordReader;
+import backend.recordHandling.HandlerRegistry;
+import backend.recordHandling.RecordCursor;
 import backend.recordHandling.TypeConverter;
+import backend.recovery.WriteAheadLog;
 import backend.service.CatalogManager;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 
@@ -18,6 +21,11 @@ public class UniqueIndexManager implements Queryable{
 
     private final String databaseName, tableName;
 
+    // Bloom filter of the keys, opened on the first lookup / change (range queries don't need it)
+    private final String filterLocation;
+    private KeyFilter filter;
+    private boolean filterOpened;
+
     public UniqueIndexManager(String databaseName, String tableName, String indexName) {
         this.databaseName = databaseName;
         this.tableName = tableName;
@@ -25,6 +33,7 @@ public class UniqueIndexManager implements Queryable{
         // Index field types and file name
         keyStructure = (ArrayList<String>) CatalogManager.getIndexFieldTypes(databaseName, tableName, indexName);
         String filename = CatalogManager.getTableIndexFilePath(databaseName, tableName, indexName);
+        filterLocation = CatalogManager.getTableIndexFilterPath(databaseName, tableName, indexName);
 
         try {
             bPlusTree = new BPlusTree(keyStructure, filename);
@@ -34,9 +43,25 @@ public class UniqueIndexManager implements Queryable{
         }
     }
 
+    // null if the filters are turned off
+    private KeyFilter filter() throws IOException {
+        if (!filterOpened) {
+            filter = KeyFilter.open(filterLocation, bPlusTree);
+            filterOpened = true;
+        }
+        return filter;
+    }
+
     public boolean isPresent(ArrayList<String> values){
+        if (TypeConverter.containsNull(values)) {
+            return false;
+        }
         Key key = TypeConverter.toKey(keyStructure, values);
         try{
+            // most checked keys are new, a filter miss saves the walk down the tree
+            if (filter() != null && !filter().mightContain(key)) {
+                return false;
+            }
             bPlusTree.find(key);
             return true;
         } catch (KeyNotFoundException | IOException e) {
@@ -46,6 +71,9 @@ public class UniqueIndexManager implements Queryable{
 
     public Integer findLocation(ArrayList<String> values) throws IOException, KeyNotFoundException {
         Key key = TypeConverter.toKey(keyStructure, values);
+        if (filter() != null && !filter().mightContain(key)) {
+            throw new KeyNotFoundException();
+        }
         return bPlusTree.find(key);
     }
 
@@ -117,20 +145,63 @@ public class UniqueIndexManager implements Queryable{
         return bPlusTree.rangeQuery(lowerKey, lowerKey, lowerCompareValue, 2);
     }
 
+    // keys with a null value are not indexed
     public void insert(ArrayList<String> values, Integer pointer) throws IOException, KeyAlreadyInTreeException {
+        if (TypeConverter.containsNull(values)) {
+            return;
+        }
         Key key = TypeConverter.toKey(keyStructure, values);
         bPlusTree.insert(key, pointer);
+        if (filter() != null) {
+            filter().add(key, bPlusTree);
+        }
+    }
+
+    // keys are inserted in sorted order, consecutive inserts then walk down the same path of the tree
+    public void insertBatch(List<ArrayList<String>> values, List<Integer> pointers) throws IOException, KeyAlreadyInTreeException {
+        ArrayList<Map.Entry<Key, Integer>> entries = new ArrayList<>();
+        for (int i = 0; i < values.size(); i++) {
+            if (TypeConverter.containsNull(values.get(i))) {
+                continue;
+            }
+            entries.add(Map.entry(TypeConverter.toKey(keyStructure, values.get(i)), pointers.get(i)));
+        }
+        entries.sort(Map.Entry.comparingByKey());
+
+        for (var entry : entries) {
+            bPlusTree.insert(entry.getKey(), entry.getValue());
+            if (filter() != null) {
+                filter().add(entry.getKey(), bPlusTree);
+            }
+        }
     }
 
     public void delete(ArrayList<String> values) throws IOException {
+        if (TypeConverter.containsNull(values)) {
+            return;
+        }
         Key key = TypeConverter.toKey(keyStructure, values);
         try {
             bPlusTree.delete(key);
+            if (filter() != null) {
+                filter().remove(key);
+            }
         }catch (KeyNotFoundException ignored){}
     }
 
+    @Override
+    public void flush() throws IOException {
+        bPlusTree.flush();
+        if (filter != null) {
+            filter.flush();
+        }
+    }
+
     @Override
     public void close() throws IOException {
+        if (filter != null) {
+            filter.close();
+        }
         bPlusTree.close();
     }
 
@@ -138,8 +209,12 @@ public class UniqueIndexManager implements Queryable{
          List<String> keyStruct = CatalogManager.getIndexFieldTypes(databaseName, tableName, indexName);
          String filename = CatalogManager.getTableIndexFilePath(databaseName, tableName, indexName);
 
+         HandlerRegistry.closeIndex(databaseName, tableName, indexName);
+         WriteAheadLog.logCreate(filename);
          BPlusTree emptyTree = new BPlusTree((ArrayList<String>) keyStruct, filename);
          emptyTree.createEmptyTree();
+         KeyFilter.create(CatalogManager.getTableIndexFilterPath(databaseName, tableName, indexName), emptyTree);
+         emptyTree.close();
     }
 
     public static void createIndex(String databaseName, String tableName, String indexName) throws IOException {
@@ -148,20 +223,34 @@ public class UniqueIndexManager implements Queryable{
 
         String filename = CatalogManager.getTableIndexFilePath(databaseName, tableName, indexName);
 
+        HandlerRegistry.closeIndex(databaseName, tableName, indexName);
+        WriteAheadLog.logCreate(filename);
         BPlusTree tree = new BPlusTree(keyStruct, filename);
         tree.createEmptyTree();
 
-        RecordReader reader = new RecordReader(databaseName, tableName);
-
-        ArrayList<ArrayList<Object>> table = reader.scan(keyColumnNames);
-        ArrayList<Integer> pointers = new ArrayList<>(reader.getAllPointers());
-        for(int i = 0; i < table.size(); i++){
-            try{
-                tree.insert(new Key(table.get(i), keyStruct), pointers.get(i));
-            }catch (KeyAlreadyInTreeException ignored){}
+        // stream the table into the sorter, only the key columns of the current record are decoded
+        // the tree is built from the sorted keys, a key that is already there keeps its first record
+        KeySorter sorter = new KeySorter(keyStruct, new File(filename).getParent());
+        try {
+            RecordCursor cursor = new RecordCursor(databaseName, tableName, keyColumnNames, true);
+            try {
+                cursor.open();
+                ArrayList<Object> record;
+                while ((record = cursor.next()) != null) {
+                    if (record.contains(null)) {
+                        continue;
+                    }
+                    sorter.add(record, cursor.getPointer());
+                }
+            } finally {
+                cursor.close();
+            }
+            tree.bulkLoad(sorter, true);
+        } finally {
+            sorter.close();
         }
 
-        reader.close();
+        KeyFilter.create(CatalogManager.getTableIndexFilterPath(databaseName, tableName, indexName), tree);
         tree.close();
     }
 
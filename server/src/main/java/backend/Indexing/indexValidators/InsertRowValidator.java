@@ -5,6 +5,8 @@ import backend.databaseModels.ForeignKeyModel;
 import backend.exceptions.validatorExceptions.ForeignKeyValueNotFoundInParentTable;
 import backend.exceptions.validatorExceptions.PrimaryKeyValueAlreadyInTable;
 import backend.exceptions.validatorExceptions.UniqueValueAlreadyInTable;
+import backend.recordHandling.HandlerRegistry;
+import backend.recordHandling.TypeConverter;
 import backend.service.CatalogManager;
 
 import java.io.IOException;
@@ -35,6 +37,11 @@ public class InsertRowValidator {
     }
 
     private void validateForeignKey(int foreignKeyInd, String foreignKeyValue) throws ForeignKeyValueNotFoundInParentTable {
+        // a null foreign key does not reference anything
+        if (TypeConverter.isNull(foreignKeyValue)) {
+            return;
+        }
+
         //TODO -> Only works for one field
         ArrayList<String> valueList = new ArrayList<>() {{
             add(foreignKeyValue);
@@ -56,13 +63,13 @@ public class InsertRowValidator {
 
         // Create index for primary key
         String pKIndexName = CatalogManager.getPrimaryKeyIndexName(databaseName, tableName);
-        this.primaryKeyIndexManager = new UniqueIndexManager(databaseName, tableName, pKIndexName);
+        this.primaryKeyIndexManager = HandlerRegistry.uniqueIndexManager(databaseName, tableName, pKIndexName);
 
         // All the unique key index names
         List<String> uniqueIndexNames = CatalogManager.getUniqueFieldIndexNames(databaseName, tableName);
         this.uniqueIndexManagers = new ArrayList<>(this.uniqueFieldNames.size());
         for (final String indexName : uniqueIndexNames) {
-            this.uniqueIndexManagers.add(new UniqueIndexManager(databaseName, tableName, indexName));
+            this.uniqueIndexManagers.add(HandlerRegistry.uniqueIndexManager(databaseName, tableName, indexName));
         }
 
         // All the foreign key index names
@@ -74,7 +81,7 @@ public class InsertRowValidator {
             String referencedTableName = foreignKey.getReferencedTable();
             String indexName = foreignKeyIndexNames.get(ind++);
 
-            this.foreignKeyIndexManagers.add(new UniqueIndexManager(databaseName, referencedTableName, indexName));
+            this.foreignKeyIndexManagers.add(HandlerRegistry.uniqueIndexManager(databaseName, referencedTableName, indexName));
         }
     }
 
@@ -112,9 +119,12 @@ public class InsertRowValidator {
     }
 
     public void close() throws IOException {
-        primaryKeyIndexManager.close();
+        HandlerRegistry.release(primaryKeyIndexManager);
         for (var manager : uniqueIndexManagers) {
-            manager.close();
+            HandlerRegistry.release(manager);
+        }
+        for (var manager : foreignKeyIndexManagers) {
+            HandlerRegistry.release(manager);
         }
     }
 }
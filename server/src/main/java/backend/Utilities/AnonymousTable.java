@@ -14,16 +14,22 @@ public class AnonymousTable implements Table {
     private ArrayList<String> columnNames, columnTypes;
 
     @Getter
-    private ArrayList<ArrayList<Object>> tableContent;
+    private RowBatch batch;
 
     public AnonymousTable(ArrayList<String> columnNames, ArrayList<String> columnTypes) {
         this.columnNames = columnNames;
         this.columnTypes = columnTypes;
-        tableContent = new ArrayList<>();
+        batch = new RowBatch(columnTypes);
     }
 
-    public void addNewRecord(ArrayList<Object> record) {
-        tableContent.add(record);
+    // the given columns of a row of the grouped table
+    public void addNewRecord(RowBatch source, int row, ArrayList<Integer> sourceColumns) {
+        batch.addFrom(source, row, sourceColumns);
+    }
+
+    @Override
+    public ArrayList<ArrayList<Object>> getTableContent() {
+        return batch.toRows();
     }
 
     @Override
@@ -34,7 +40,6 @@ public class AnonymousTable implements Table {
     @Override
     public void aggregation(ArrayList<Aggregator> aggregators) {
         ArrayList<String> newTypes = new ArrayList<>();
-        ArrayList<ArrayList<Object>> newTable = new ArrayList<>();
         ArrayList<Object> newRow = new ArrayList<>();
         for(var aggregator : aggregators) {
             String fieldName = aggregator.getFieldName();
@@ -43,13 +48,10 @@ public class AnonymousTable implements Table {
             AggregatorSymbol aggregatorSymbol = aggregator.getAggr();
             newTypes.add(TypeConverter.mapAggregatorType(fieldType, aggregatorSymbol));
 
-            ArrayList<Object> column = tableContent.stream().map((elem) -> elem.get(fieldIndex)).collect(Collectors.toCollection(ArrayList::new));
-
-            newRow.add(Aggregator.resolve(aggregatorSymbol, column, fieldType));
+            newRow.add(batch.getColumn(fieldIndex).aggregate(aggregatorSymbol));
         }
-        newTable.add(newRow);
+        batch = RowBatch.ofRow(newRow);
 
-        tableContent = newTable;
         columnNames = aggregators.stream().map(Aggregator::getAlias).collect(Collectors.toCollection(ArrayList::new));
         columnTypes = newTypes;
     }
@@ -1,15 +1,22 @@
 package backend.Utilities;
 
-import backend.Indexing.NonUniqueIndexManager;
 import backend.Indexing.Queryable;
 import backend.Indexing.UniqueIndexManager;
+import backend.config.Config;
+import backend.databaseModels.ColumnStatisticsModel;
+import backend.databaseModels.TableStatisticsModel;
 import backend.databaseModels.aggregations.Aggregator;
 import backend.databaseModels.aggregations.AggregatorSymbol;
 import backend.databaseModels.conditions.Condition;
 import backend.databaseModels.conditions.Equation;
+import backend.databaseModels.conditions.Function;
 import backend.databaseModels.conditions.FunctionCall;
+import backend.databaseModels.conditions.Operator;
 import backend.exceptions.NoIndexException;
 import backend.exceptions.recordHandlingExceptions.UndefinedQueryException;
+import backend.recordHandling.HandlerRegistry;
+import backend.recordHandling.ParallelScan;
+import backend.recordHandling.RecordCursor;
 import backend.recordHandling.RecordDeleter;
 import backend.recordHandling.RecordReader;
 import backend.recordHandling.TypeConverter;
@@ -18,8 +25,9 @@ import lombok.Getter;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.function.Predicate;
+import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class BaseTable implements Table {
     @Getter
@@ -31,25 +39,56 @@ public class BaseTable implements Table {
     private final HashMap<Integer, Integer> pointerMapper;
 
     @Getter
-    private ArrayList<ArrayList<Object>> tableContent;
+    private RowBatch batch;
 
     public BaseTable(String databaseName, String tableName) throws IOException {
         this(databaseName, tableName, new ArrayList<>());
     }
     public BaseTable(String databaseName, String tableName, ArrayList<Condition> conditions) throws IOException {
-        this.columnTypes = (ArrayList<String>) CatalogManager.getFieldTypes(databaseName, tableName);
-        this.columnNames = (ArrayList<String>) CatalogManager.getFieldNames(databaseName, tableName);
-        this.columnNames = columnNames.stream().map((elem) -> tableName + "." + elem).collect(Collectors.toCollection(ArrayList::new));
+        this(databaseName, tableName, conditions, null);
+    }
+
+    // wantedColumns: the columns ("table.field") the query touches, only these are read, null -> every column
+    public BaseTable(String databaseName, String tableName, ArrayList<Condition> conditions, List<String> wantedColumns) throws IOException {
+        ArrayList<String> fieldTypes = (ArrayList<String>) CatalogManager.getFieldTypes(databaseName, tableName);
+        ArrayList<String> fieldNames = (ArrayList<String>) CatalogManager.getFieldNames(databaseName, tableName);
+        // the read columns keep the order of the table
+        ArrayList<String> readFieldNames = new ArrayList<>();
+        this.columnTypes = new ArrayList<>();
+        this.columnNames = new ArrayList<>();
+        for (int i = 0; i < fieldNames.size(); i++) {
+            String columnName = tableName + "." + fieldNames.get(i);
+            if (wantedColumns == null || wantedColumns.contains(columnName)) {
+                readFieldNames.add(fieldNames.get(i));
+                columnNames.add(columnName);
+                columnTypes.add(fieldTypes.get(i));
+            }
+        }
+        List<String> projection = wantedColumns == null ? null : readFieldNames;
         this.databaseName = databaseName;
         this.tableName = tableName;
         pointerMapper = new HashMap<>();
 
-        //use the indexes where able
-        RecordReader io = new RecordReader(databaseName, tableName);
-        HashSet<Integer> wantedRecordPointers = io.getAllPointers();
+        //use the indexes where able, null -> no index was used yet, every record is wanted
+        HashSet<Integer> wantedRecordPointers = null;
+
+        // with statistics the most selective conditions use their index first, and an index is left out when its
+        // condition keeps too much of the table (the scan is cheaper than reading most of the lines one by one)
+        TableStatisticsModel statistics = CatalogManager.getTableStatistics(databaseName, tableName);
+        ArrayList<Condition> indexOrder = new ArrayList<>(conditions);
+        if (statistics != null) {
+            indexOrder.sort(Comparator.comparingDouble(condition -> estimateSelectivity(statistics, condition)));
+        }
 
         ArrayList<Condition> usedConditions = new ArrayList<>();
-        for (var condition : conditions){
+        for (var condition : indexOrder){
+            // no record is left, the other conditions don't need their index
+            if (wantedRecordPointers != null && wantedRecordPointers.isEmpty()) {
+                break;
+            }
+            if (statistics != null && estimateSelectivity(statistics, condition) > Config.getIndexMaxSelectivity()) {
+                continue;
+            }
             HashSet<Integer> pointers = new HashSet<>();
             if (condition instanceof Equation){
                 String fieldName = ((Equation) condition).getLFieldName();
@@ -70,24 +109,29 @@ public class BaseTable implements Table {
 
                 Queryable index;
                 if(CatalogManager.isFieldUnique(databaseName, tableName,trueFieldName)){
-                    index = new UniqueIndexManager(databaseName, tableName, indexName);
+                    index = HandlerRegistry.uniqueIndexManager(databaseName, tableName, indexName);
                 } else {
-                    index = new NonUniqueIndexManager(databaseName, tableName, indexName);
+                    index = HandlerRegistry.nonUniqueIndexManager(databaseName, tableName, indexName);
                 }
 
                 HashMap<Integer, Object> queryResult = new HashMap<>();
                 try {
-                    switch (((Equation) condition).getOp()){
-                        case EQUALS -> queryResult = index.equalityQuery(compareValue);
-                        case LESS_THAN -> queryResult = index.lesserQuery(compareValue, false);
-                        case LESS_THAN_OR_EQUAL_TO -> queryResult = index.lesserQuery(compareValue, true);
-                        case GREATER_THAN -> queryResult = index.greaterQuery(compareValue, false);
-                        case GREATER_THAN_OR_EQUAL_TO -> queryResult = index.greaterQuery(compareValue, true);
+                    // comparisons with null are never true, null values are not in the index anyway
+                    if (compareValue != null) {
+                        switch (((Equation) condition).getOp()){
+                            case EQUALS -> queryResult = index.equalityQuery(compareValue);
+                            case LESS_THAN -> queryResult = index.lesserQuery(compareValue, false);
+                            case LESS_THAN_OR_EQUAL_TO -> queryResult = index.lesserQuery(compareValue, true);
+                            case GREATER_THAN -> queryResult = index.greaterQuery(compareValue, false);
+                            case GREATER_THAN_OR_EQUAL_TO -> queryResult = index.greaterQuery(compareValue, true);
+                        }
                     }
                     pointers = new HashSet<>(queryResult.keySet());
 
-                } catch (UndefinedQueryException ignored){}
-                index.close();
+                } catch (UndefinedQueryException ignored){
+                } finally {
+                    HandlerRegistry.release(index);
+                }
 
 
             } else if ( condition instanceof FunctionCall) {
@@ -110,95 +154,195 @@ public class BaseTable implements Table {
 
                 Queryable index;
                 if(CatalogManager.isFieldUnique(databaseName, tableName, trueFieldName)){
-                    index = new UniqueIndexManager(databaseName, tableName, indexName);
+                    index = HandlerRegistry.uniqueIndexManager(databaseName, tableName, indexName);
                 } else {
-                    index = new NonUniqueIndexManager(databaseName, tableName, indexName);
+                    index = HandlerRegistry.nonUniqueIndexManager(databaseName, tableName, indexName);
                 }
 
                 HashMap<Integer, Object> queryResult = new HashMap<>();
                 try {
-                    switch (((FunctionCall) condition).getFunction()){
-                        case BETWEEN -> queryResult = index.rangeQuery(lower, upper, true, true);
+                    if (lower != null && upper != null) {
+                        switch (((FunctionCall) condition).getFunction()){
+                            case BETWEEN -> queryResult = index.rangeQuery(lower, upper, true, true);
+                        }
                     }
                     pointers = new HashSet<>(queryResult.keySet());
 
-                } catch (UndefinedQueryException ignored){}
-
-                index.close();
+                } catch (UndefinedQueryException ignored){
+                } finally {
+                    HandlerRegistry.release(index);
+                }
             }
 
-            wantedRecordPointers.retainAll(pointers);
-        }
-
-        ArrayList<Integer> listOfWantedPointers =  new ArrayList<>(wantedRecordPointers);
-        tableContent = io.scanLines(listOfWantedPointers);
-
-        for (int i = 0; i < tableContent.size(); i++){
-            tableContent.get(i).add(listOfWantedPointers.get(i));
+            if (wantedRecordPointers == null) {
+                wantedRecordPointers = pointers;
+            } else {
+                wantedRecordPointers.retainAll(pointers);
+            }
         }
 
         conditions.removeAll(usedConditions);
-        for (var condition : conditions){
-            Predicate<ArrayList<Object>> lambda = (ArrayList<Object> elem) -> {
-                return true;
-            };
-            Integer fieldIndex;
-            if (condition instanceof Equation){
-                String fieldName = ((Equation) condition).getLFieldName();
-                fieldIndex = columnNames.indexOf(fieldName);
-
-                String fieldType = columnTypes.get(fieldIndex);
-                String compareValueString = ((Equation) condition).getRFieldName();
-                Object compareValue = TypeConverter.toObject(fieldType, compareValueString);
 
-                switch (((Equation) condition).getOp()){
-                    case EQUALS -> lambda = (ArrayList<Object> elem) -> {
-                        return TypeConverter.compare(fieldType, elem.get(fieldIndex), compareValue) == 0;
-                    };
-                    case LESS_THAN -> lambda = (ArrayList<Object> elem) -> {
-                        return TypeConverter.compare(fieldType, elem.get(fieldIndex), compareValue) < 0;
-                    };
-                    case LESS_THAN_OR_EQUAL_TO -> lambda = (ArrayList<Object> elem) -> {
-                        return TypeConverter.compare(fieldType, elem.get(fieldIndex), compareValue) <= 0;
-                    };
-                    case GREATER_THAN -> lambda = (ArrayList<Object> elem) -> {
-                        return TypeConverter.compare(fieldType, elem.get(fieldIndex), compareValue) > 0;
-                    };
-                    case GREATER_THAN_OR_EQUAL_TO -> lambda = (ArrayList<Object> elem) -> {
-                        return TypeConverter.compare(fieldType, elem.get(fieldIndex), compareValue) >= 0;
-                    };
+        // equalities on dictionary encoded columns are checked on the stored codes while the table is streamed
+        ArrayList<Equation> codeConditions = new ArrayList<>();
+        if (wantedRecordPointers == null) {
+            for (var condition : conditions) {
+                if (condition instanceof Equation equation && equation.getOp() == Operator.EQUALS) {
+                    String fieldName = equation.getLFieldName();
+                    if (CatalogManager.isDictionaryEncoded(databaseName, tableName, fieldName.substring(fieldName.indexOf('.') + 1))) {
+                        codeConditions.add(equation);
+                    }
                 }
+            }
+            conditions.removeAll(codeConditions);
+        }
 
-            } else if ( condition instanceof FunctionCall) {
-                String fieldName = ((FunctionCall) condition).getFieldName();
-                fieldIndex = columnNames.indexOf(fieldName);
-                String fieldType = columnTypes.get(fieldIndex);
-                ArrayList<String> args = ((FunctionCall) condition).getArgs();
-                Object lower = TypeConverter.toObject(fieldType, args.get(0));
-                Object upper = TypeConverter.toObject(fieldType, args.get(1));
+        // the rows are added to the batch and dropped again when they do not pass the filter
+        batch = new RowBatch(columnTypes);
+        java.util.function.Function<RowBatch, IntPredicate> filterOf = target -> {
+            IntPredicate predicate = row -> true;
+            for (var condition : conditions){
+                predicate = predicate.and(toPredicate(condition, columnNames, columnTypes, target));
+            }
+            return predicate;
+        };
+        IntPredicate filter = filterOf.apply(batch);
+
+        if (wantedRecordPointers == null && Config.getScanParallelism() > 1 && !Config.isMemoryMappedScan()) {
+            // no index narrowed the table -> its chunks are read and filtered by several workers, merged in line order
+            ParallelScan scan = new ParallelScan(databaseName, tableName, projection);
+            for (var equation : codeConditions) {
+                String fieldName = equation.getLFieldName();
+                scan.addEqualityFilter(fieldName.substring(fieldName.indexOf('.') + 1), equation.getRFieldName());
+            }
+            addRangeFilters(conditions, scan::addRangeFilter);
+            scan.setRowFilter(filterOf);
+            List<Integer> allColumns = IntStream.range(0, columnTypes.size()).boxed().toList();
+            scan.run(true, chunk -> {
+                RowBatch rows = chunk.getBatch();
+                for (int row = 0; row < rows.size(); row++) {
+                    pointerMapper.put(chunk.getPointers()[row], batch.size());
+                    batch.addFrom(rows, row, allColumns);
+                }
+            });
+        } else if (wantedRecordPointers == null) {
+            // no index narrowed the table -> stream it and only keep the records that pass the filter
+            RecordCursor cursor = new RecordCursor(databaseName, tableName, projection, true);
+            for (var equation : codeConditions) {
+                String fieldName = equation.getLFieldName();
+                cursor.addEqualityFilter(fieldName.substring(fieldName.indexOf('.') + 1), equation.getRFieldName());
+            }
+            addRangeFilters(conditions, cursor::addRangeFilter);
+            try {
+                cursor.open();
+                ArrayList<Object> record;
+                while ((record = cursor.next()) != null) {
+                    keepIfMatches(record, cursor.getPointer(), filter);
+                }
+            } finally {
+                cursor.close();
+            }
+        } else {
+            ArrayList<Integer> listOfWantedPointers = new ArrayList<>(wantedRecordPointers);
+            Collections.sort(listOfWantedPointers);
 
-                switch (((FunctionCall) condition).getFunction()){
-                    case BETWEEN -> lambda = (ArrayList<Object> elem) -> {
-                        return TypeConverter.compare(fieldType, elem.get(fieldIndex), lower) >= 0 && TypeConverter.compare(fieldType, elem.get(fieldIndex), upper) <= 0;
-                    };
+            RecordReader io = new RecordReader(databaseName, tableName);
+            try {
+                for (int pointer : listOfWantedPointers) {
+                    ArrayList<Object> record = projection == null ? io.readRecord(pointer) : io.readRecord(pointer, projection);
+                    if (record != null) {
+                        keepIfMatches(record, pointer, filter);
+                    }
                 }
+            } finally {
+                io.close();
             }
+        }
+    }
 
-            tableContent = tableContent.stream().filter(lambda).collect(Collectors.toCollection(ArrayList::new));
+    // the zone map lets a scan skip the blocks none of whose records can pass a condition
+    private void addRangeFilters(ArrayList<Condition> conditions, RangeFilterSink sink) {
+        for (var condition : conditions) {
+            if (condition instanceof Equation equation) {
+                String fieldName = equation.getLFieldName();
+                Object compareValue = TypeConverter.toObject(columnTypes.get(columnNames.indexOf(fieldName)), equation.getRFieldName());
+                sink.add(fieldName.substring(fieldName.indexOf('.') + 1), equation.getOp(), compareValue);
+            } else if (condition instanceof FunctionCall functionCall && functionCall.getFunction() == Function.BETWEEN) {
+                String fieldName = functionCall.getFieldName();
+                String fieldType = columnTypes.get(columnNames.indexOf(fieldName));
+                ArrayList<String> args = functionCall.getArgs();
+                sink.add(fieldName.substring(fieldName.indexOf('.') + 1), Operator.GREATER_THAN_OR_EQUAL_TO, TypeConverter.toObject(fieldType, args.get(0)));
+                sink.add(fieldName.substring(fieldName.indexOf('.') + 1), Operator.LESS_THAN_OR_EQUAL_TO, TypeConverter.toObject(fieldType, args.get(1)));
+            }
         }
+    }
+
+    private interface RangeFilterSink {
+        void add(String columnName, Operator op, Object value);
+    }
 
-        int last = columnNames.size();
-        for (int i = 0; i < tableContent.size(); i++){
-            Integer origin = (Integer) tableContent.get(i).remove(last);
-            pointerMapper.put(origin, i);
+    private void keepIfMatches(ArrayList<Object> record, int pointer, IntPredicate filter) {
+        int row = batch.size();
+        batch.add(record);
+        if (filter.test(row)) {
+            pointerMapper.put(pointer, row);
+        } else {
+            batch.removeLast();
         }
+    }
 
-        try {
-            io.close();
-        } catch (Exception e) {
-            System.out.println("Exception: " + e);
+    // estimated fraction of the table's rows that pass the condition, 1 if the statistics don't know the column
+    public static double estimateSelectivity(TableStatisticsModel statistics, Condition condition) {
+        if (condition instanceof Equation equation) {
+            String fieldName = equation.getLFieldName();
+            ColumnStatisticsModel column = statistics.findColumn(fieldName.substring(fieldName.indexOf('.') + 1));
+            if (column == null) {
+                return 1;
+            }
+            Object compareValue = TypeConverter.toObject(column.getFieldType(), equation.getRFieldName());
+            return column.estimateSelectivity(equation.getOp(), compareValue, statistics.getRowCount());
         }
+        if (condition instanceof FunctionCall functionCall && functionCall.getFunction() == Function.BETWEEN) {
+            String fieldName = functionCall.getFieldName();
+            ColumnStatisticsModel column = statistics.findColumn(fieldName.substring(fieldName.indexOf('.') + 1));
+            if (column == null) {
+                return 1;
+            }
+            ArrayList<String> args = functionCall.getArgs();
+            Object lower = TypeConverter.toObject(column.getFieldType(), args.get(0));
+            Object upper = TypeConverter.toObject(column.getFieldType(), args.get(1));
+            return column.estimateRangeSelectivity(lower, upper, statistics.getRowCount());
+        }
+        return 1;
+    }
+
+    // builds the row filter of a (non indexed) WHERE condition, it tests the rows of the batch on its typed columns
+    public static IntPredicate toPredicate(Condition condition, ArrayList<String> columnNames, ArrayList<String> columnTypes, RowBatch batch) {
+        IntPredicate predicate = row -> true;
+        if (condition instanceof Equation){
+            String fieldName = ((Equation) condition).getLFieldName();
+            int fieldIndex = columnNames.indexOf(fieldName);
 
+            String fieldType = columnTypes.get(fieldIndex);
+            Object compareValue = TypeConverter.toObject(fieldType, ((Equation) condition).getRFieldName());
+
+            // comparisons with null are never true
+            predicate = batch.getColumn(fieldIndex).filter(((Equation) condition).getOp(), compareValue);
+
+        } else if ( condition instanceof FunctionCall) {
+            String fieldName = ((FunctionCall) condition).getFieldName();
+            int fieldIndex = columnNames.indexOf(fieldName);
+            String fieldType = columnTypes.get(fieldIndex);
+            ArrayList<String> args = ((FunctionCall) condition).getArgs();
+            Object lower = TypeConverter.toObject(fieldType, args.get(0));
+            Object upper = TypeConverter.toObject(fieldType, args.get(1));
+
+            ColumnVector column = batch.getColumn(fieldIndex);
+            switch (((FunctionCall) condition).getFunction()){
+                case BETWEEN -> predicate = column.filter(Operator.GREATER_THAN_OR_EQUAL_TO, lower).and(column.filter(Operator.LESS_THAN_OR_EQUAL_TO, upper));
+            }
+        }
+        return predicate;
     }
 
     //-------------------------------------------------------------------------------------------------------------------------------//
@@ -212,26 +356,30 @@ public class BaseTable implements Table {
         columnTypes.addAll(CatalogManager.getFieldTypes(databaseName, tableName));
 
         String primaryKeyIndexName = CatalogManager.getPrimaryKeyIndexName(databaseName, tableName);
-        UniqueIndexManager indexManager = new UniqueIndexManager(databaseName, tableName, primaryKeyIndexName);
+        UniqueIndexManager indexManager = HandlerRegistry.uniqueIndexManager(databaseName, tableName, primaryKeyIndexName);
         ArrayList<Integer> pointers = new ArrayList<>();
-        for(var record : tableContent){
-            Object foreignKey = record.get(foreignKeyColumnIndex);
+        for(int row = 0; row < batch.size(); row++){
+            Object foreignKey = batch.getColumn(foreignKeyColumnIndex).get(row);
 
             try {
                 HashMap<Integer, Object> map = indexManager.equalityQuery(foreignKey);
                 pointers.addAll(map.keySet());
             } catch (Exception ignored) {}
         }
-        indexManager.close();
+        HandlerRegistry.release(indexManager);
 
         RecordReader recordReader = new RecordReader(databaseName, tableName);
 
         try{
             ArrayList<ArrayList<Object>> records = recordReader.scanLines(pointers);
 
-            for(int i = 0; i < tableContent.size(); i++){
-                tableContent.get(i).addAll(records.get(i));
+            RowBatch joined = new RowBatch(columnTypes);
+            for(int i = 0; i < batch.size(); i++){
+                ArrayList<Object> row = batch.getRow(i);
+                row.addAll(records.get(i));
+                joined.add(row);
             }
+            batch = joined;
         } catch (Exception ignored) {}
 
         recordReader.close();
@@ -245,20 +393,25 @@ public class BaseTable implements Table {
         System.out.println(columnNames);
         System.out.println(columnTypes);
         System.out.println(pointerMapper);
-        for(var record : tableContent) {
+        for(var record : getTableContent()) {
             System.out.println(record);
         }
     }
 
+    // the rows are only boxed here, when the result leaves the operators
+    @Override
+    public ArrayList<ArrayList<Object>> getTableContent() {
+        return batch.toRows();
+    }
+
     @Override
     public GroupedTable groupBy(ArrayList<String> groupingColumns) {
-        return new GroupedTable(columnNames, columnTypes, groupingColumns, tableContent);
+        return new GroupedTable(columnNames, columnTypes, groupingColumns, batch);
     }
 
     @Override
     public void aggregation(ArrayList<Aggregator> aggregators) {
         ArrayList<String> newTypes = new ArrayList<>();
-        ArrayList<ArrayList<Object>> newTable = new ArrayList<>();
         ArrayList<Object> newRow = new ArrayList<>();
         for(var aggregator : aggregators) {
             String fieldName = aggregator.getFieldName();
@@ -267,13 +420,10 @@ public class BaseTable implements Table {
             AggregatorSymbol aggregatorSymbol = aggregator.getAggr();
             newTypes.add(TypeConverter.mapAggregatorType(fieldType, aggregatorSymbol));
 
-            ArrayList<Object> column = tableContent.stream().map((elem) -> elem.get(fieldIndex)).collect(Collectors.toCollection(ArrayList::new));
-
-            newRow.add(Aggregator.resolve(aggregatorSymbol, column, fieldType));
+            newRow.add(batch.getColumn(fieldIndex).aggregate(aggregatorSymbol));
         }
-        newTable.add(newRow);
-        
-        tableContent = newTable;
+        batch = RowBatch.ofRow(newRow);
+
         columnNames = aggregators.stream().map(Aggregator::getAlias).collect(Collectors.toCollection(ArrayList::new));
         columnTypes = newTypes;
     }
@@ -289,13 +439,7 @@ public class BaseTable implements Table {
                 wantedColumnIndexes.add(i);
             }
         }
-        tableContent = tableContent.stream().map(elem -> {
-            ArrayList<Object> newElem = new ArrayList<>();
-            for(var i : wantedColumnIndexes){
-                newElem.add(elem.get(i));
-            }
-            return newElem;
-        }).collect(Collectors.toCollection(ArrayList::new));
+        batch = batch.project(wantedColumnIndexes);
 
         columnNames = wantedColumns;
         columnTypes = newColumnTypes;
@@ -303,8 +447,11 @@ public class BaseTable implements Table {
 
     public void delete() throws IOException {
         RecordDeleter io = new RecordDeleter(databaseName, tableName);
-        io.deleteRecords(new ArrayList<>(pointerMapper.keySet()));
-        io.close();
+        try {
+            io.deleteRecords(new ArrayList<>(pointerMapper.keySet()));
+        } finally {
+            io.close();
+        }
     }
 
 }
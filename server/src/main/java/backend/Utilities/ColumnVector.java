@@ -0,0 +1,332 @@
+package backend.Utilities;
+
+import backend.databaseModels.aggregations.Aggregator;
+import backend.databaseModels.aggregations.AggregatorSymbol;
+import backend.databaseModels.conditions.Operator;
+import backend.recordHandling.ColumnCodec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+// one column of a RowBatch, int / float / bit / char values are kept in primitive arrays, strings as references
+// values are only boxed when a row is handed out (get), filters, join keys and aggregates work on the arrays
+public abstract class ColumnVector {
+    private static final int INITIAL_CAPACITY = 16;
+    // type of a vector that holds values of any class
+    private static final String VALUES_TYPE = "object";
+
+    protected final String type;
+    protected int size;
+    // set bit -> the value of the row is null
+    protected final BitSet nulls;
+
+    public static ColumnVector forType(String type) {
+        return switch (type) {
+            case "int" -> new IntVector(type);
+            case "float" -> new FloatVector(type);
+            case "bit" -> new BitVector(type);
+            case "char" -> new CharVector(type);
+            default -> new ObjectVector(type);
+        };
+    }
+
+    // aggregate results do not always have the class of their type (SUM of an int column stays an int)
+    public static ColumnVector forValues() {
+        return new ObjectVector(VALUES_TYPE);
+    }
+
+    protected ColumnVector(String type) {
+        this.type = type;
+        this.nulls = new BitSet();
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isNull(int row) {
+        return nulls.get(row);
+    }
+
+    // unboxes the value once, when the row is added
+    public void add(Object value) {
+        ensureCapacity(size + 1);
+        if (value == null) {
+            nulls.set(size);
+        } else {
+            set(size, value);
+        }
+        size++;
+    }
+
+    // copies the value of the other vector's row (of the same type) without boxing it
+    public void addFrom(ColumnVector other, int row) {
+        ensureCapacity(size + 1);
+        if (other.isNull(row)) {
+            nulls.set(size);
+        } else {
+            copy(other, row, size);
+        }
+        size++;
+    }
+
+    // drops the rows after the first count
+    public void truncate(int count) {
+        nulls.clear(count, Integer.max(count, size));
+        size = count;
+    }
+
+    public Object get(int row) {
+        return isNull(row) ? null : box(row);
+    }
+
+    // rows of the vector for which "value op constant" holds, null values never match
+    public IntPredicate filter(Operator op, Object constant) {
+        if (constant == null) {
+            return row -> false;
+        }
+        IntPredicate relation = relation(op);
+        return row -> !isNull(row) && relation.test(compareAt(row, constant));
+    }
+
+    // the aggregate of the non null values, null if there are none
+    public Object aggregate(AggregatorSymbol aggregatorSymbol) {
+        ArrayList<Object> values = new ArrayList<>();
+        for (int row = 0; row < size; row++) {
+            if (!isNull(row)) {
+                values.add(box(row));
+            }
+        }
+        return Aggregator.resolve(aggregatorSymbol, values, type);
+    }
+
+    public abstract int hash(int row);
+
+    // same value in the other vector's row (the rows are not null)
+    public boolean equalsAt(int row, ColumnVector other, int otherRow) {
+        return Objects.equals(box(row), other.get(otherRow));
+    }
+
+    protected abstract void set(int row, Object value);
+
+    protected abstract void copy(ColumnVector other, int row, int to);
+
+    protected abstract Object box(int row);
+
+    protected abstract int compareAt(int row, Object constant);
+
+    protected abstract void ensureCapacity(int capacity);
+
+    protected static int grow(int length, int capacity) {
+        return Integer.max(Integer.max(INITIAL_CAPACITY, capacity), length * 2);
+    }
+
+    protected static IntPredicate relation(Operator op) {
+        return switch (op) {
+            case EQUALS -> rel -> rel == 0;
+            case LESS_THAN -> rel -> rel < 0;
+            case LESS_THAN_OR_EQUAL_TO -> rel -> rel <= 0;
+            case GREATER_THAN -> rel -> rel > 0;
+            case GREATER_THAN_OR_EQUAL_TO -> rel -> rel >= 0;
+            default -> rel -> true;
+        };
+    }
+
+    private static final class IntVector extends ColumnVector {
+        private int[] values = new int[0];
+
+        IntVector(String type) { super(type); }
+
+        protected void set(int row, Object value) { values[row] = (Integer) value; }
+        protected void copy(ColumnVector other, int row, int to) { values[to] = ((IntVector) other).values[row]; }
+        protected Object box(int row) { return values[row]; }
+        protected int compareAt(int row, Object constant) { return Integer.compare(values[row], (Integer) constant); }
+        public int hash(int row) { return Integer.hashCode(values[row]); }
+
+        protected void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, grow(values.length, capacity));
+            }
+        }
+
+        @Override
+        public IntPredicate filter(Operator op, Object constant) {
+            if (constant == null) {
+                return row -> false;
+            }
+            int value = (Integer) constant;
+            IntPredicate relation = relation(op);
+            return row -> !isNull(row) && relation.test(Integer.compare(values[row], value));
+        }
+
+        @Override
+        public boolean equalsAt(int row, ColumnVector other, int otherRow) {
+            if (other instanceof IntVector intVector) {
+                return values[row] == intVector.values[otherRow];
+            }
+            return super.equalsAt(row, other, otherRow);
+        }
+
+        @Override
+        public Object aggregate(AggregatorSymbol aggregatorSymbol) {
+            int count = 0, sum = 0, min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+            for (int row = 0; row < size; row++) {
+                if (!isNull(row)) {
+                    int value = values[row];
+                    count++;
+                    sum += value;
+                    min = Integer.min(min, value);
+                    max = Integer.max(max, value);
+                }
+            }
+            if (count == 0) {
+                return null;
+            }
+            return switch (aggregatorSymbol) {
+                case SUM -> sum;
+                case MIN -> min;
+                case MAX -> max;
+                case AVG -> (float) sum / count;
+                case COUNT -> count;
+            };
+        }
+    }
+
+    private static final class FloatVector extends ColumnVector {
+        private float[] values = new float[0];
+
+        FloatVector(String type) { super(type); }
+
+        protected void set(int row, Object value) { values[row] = (Float) value; }
+        protected void copy(ColumnVector other, int row, int to) { values[to] = ((FloatVector) other).values[row]; }
+        protected Object box(int row) { return values[row]; }
+        protected int compareAt(int row, Object constant) { return Float.compare(values[row], (Float) constant); }
+        public int hash(int row) { return Float.hashCode(values[row]); }
+
+        protected void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, grow(values.length, capacity));
+            }
+        }
+
+        @Override
+        public IntPredicate filter(Operator op, Object constant) {
+            if (constant == null) {
+                return row -> false;
+            }
+            float value = (Float) constant;
+            IntPredicate relation = relation(op);
+            return row -> !isNull(row) && relation.test(Float.compare(values[row], value));
+        }
+
+        @Override
+        public boolean equalsAt(int row, ColumnVector other, int otherRow) {
+            if (other instanceof FloatVector floatVector) {
+                return Float.compare(values[row], floatVector.values[otherRow]) == 0;
+            }
+            return super.equalsAt(row, other, otherRow);
+        }
+
+        @Override
+        public Object aggregate(AggregatorSymbol aggregatorSymbol) {
+            int count = 0;
+            float sum = 0, min = 0, max = 0;
+            for (int row = 0; row < size; row++) {
+                if (!isNull(row)) {
+                    float value = values[row];
+                    if (count == 0) {
+                        sum = min = max = value;
+                    } else {
+                        sum += value;
+                        min = Float.compare(value, min) < 0 ? value : min;
+                        max = Float.compare(value, max) > 0 ? value : max;
+                    }
+                    count++;
+                }
+            }
+            if (count == 0) {
+                return null;
+            }
+            return switch (aggregatorSymbol) {
+                case SUM -> sum;
+                case MIN -> min;
+                case MAX -> max;
+                case AVG -> sum / count;
+                case COUNT -> count;
+            };
+        }
+    }
+
+    private static final class BitVector extends ColumnVector {
+        private byte[] values = new byte[0];
+
+        BitVector(String type) { super(type); }
+
+        protected void set(int row, Object value) { values[row] = (Byte) value; }
+        protected void copy(ColumnVector other, int row, int to) { values[to] = ((BitVector) other).values[row]; }
+        protected Object box(int row) { return values[row]; }
+        protected int compareAt(int row, Object constant) { return values[row] - (Byte) constant; }
+        public int hash(int row) { return Byte.hashCode(values[row]); }
+
+        protected void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, grow(values.length, capacity));
+            }
+        }
+    }
+
+    private static final class CharVector extends ColumnVector {
+        private char[] values = new char[0];
+
+        CharVector(String type) { super(type); }
+
+        protected void set(int row, Object value) { values[row] = (Character) value; }
+        protected void copy(ColumnVector other, int row, int to) { values[to] = ((CharVector) other).values[row]; }
+        protected Object box(int row) { return values[row]; }
+        protected int compareAt(int row, Object constant) { return Character.compare(values[row], (Character) constant); }
+        public int hash(int row) { return Character.hashCode(values[row]); }
+
+        protected void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, grow(values.length, capacity));
+            }
+        }
+    }
+
+    // strings (char(n), varchar(n)) and any other type, compared through the type's codec
+    private static final class ObjectVector extends ColumnVector {
+        private final ColumnCodec codec;
+        private Object[] values = new Object[0];
+
+        ObjectVector(String type) {
+            super(type);
+            codec = ColumnCodec.of(type);
+        }
+
+        protected void set(int row, Object value) { values[row] = value; }
+        protected void copy(ColumnVector other, int row, int to) { values[to] = ((ObjectVector) other).values[row]; }
+        protected Object box(int row) { return values[row]; }
+        protected int compareAt(int row, Object constant) { return codec.compare(values[row], constant); }
+        public int hash(int row) { return values[row].hashCode(); }
+
+        protected void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, grow(values.length, capacity));
+            }
+        }
+
+        @Override
+        public void truncate(int count) {
+            // the dropped strings can be collected
+            Arrays.fill(values, count, Integer.max(count, size), null);
+            super.truncate(count);
+        }
+    }
+}
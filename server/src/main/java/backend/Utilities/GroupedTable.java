@@ -10,13 +10,13 @@ public class GroupedTable implements Table{
     private ArrayList<String> unGroupedColumnNames, unGroupedColumnTypes;
     private HashMap<ArrayList<Object>, AnonymousTable> tableMap;
 
-    public GroupedTable(ArrayList<String> columnNames, ArrayList<String> columnTypes, ArrayList<String> wantedColumns, ArrayList<ArrayList<Object>> tableContent) {
+    public GroupedTable(ArrayList<String> columnNames, ArrayList<String> columnTypes, ArrayList<String> wantedColumns, RowBatch batch) {
         groupedColumnNames = wantedColumns;
         groupedColumnTypes = new ArrayList<>();
         unGroupedColumnNames = new ArrayList<>();
         unGroupedColumnTypes = new ArrayList<>();
         tableMap = new HashMap<>();
-        ArrayList<Integer> wantedColumnIndexes = new ArrayList<>();
+        ArrayList<Integer> wantedColumnIndexes = new ArrayList<>(), unWantedColumnIndexes = new ArrayList<>();
 
         for (int i = 0; i < columnNames.size(); i++) {
             String columnName = columnNames.get(i), columnType = columnTypes.get(i);
@@ -27,26 +27,23 @@ public class GroupedTable implements Table{
             } else {
                 unGroupedColumnNames.add(columnName);
                 unGroupedColumnTypes.add(columnType);
+                unWantedColumnIndexes.add(i);
             }
         }
 
-        for (var row : tableContent) {
-            ArrayList<Object> key = new ArrayList<>(), value = new ArrayList<>();
-
-            for (int i = 0; i < row.size(); i++) {
-                if (wantedColumnIndexes.contains(i)) {
-                    key.add(row.get(i));
-                } else {
-                    value.add(row.get(i));
-                }
+        // only the grouping values are boxed (they are the keys), the rest is copied into the groups as it is
+        for (int row = 0; row < batch.size(); row++) {
+            ArrayList<Object> key = new ArrayList<>();
+            for (int i : wantedColumnIndexes) {
+                key.add(batch.getColumn(i).get(row));
             }
 
-            if (tableMap.containsKey(key)) {
-                tableMap.get(key).addNewRecord(value);
-            } else {
-                tableMap.put(key, new AnonymousTable(unGroupedColumnNames, unGroupedColumnTypes));
-                tableMap.get(key).addNewRecord(value);
+            AnonymousTable group = tableMap.get(key);
+            if (group == null) {
+                group = new AnonymousTable(unGroupedColumnNames, unGroupedColumnTypes);
+                tableMap.put(key, group);
             }
+            group.addNewRecord(batch, row, unWantedColumnIndexes);
         }
     }
 
@@ -67,7 +64,7 @@ public class GroupedTable implements Table{
         for(var key : tableMap.keySet()){
             anonymousTable = tableMap.get(key);
             anonymousTable.aggregation(aggregators);
-            key.addAll(anonymousTable.getTableContent().get(0));
+            key.addAll(anonymousTable.getBatch().getRow(0));
 
         }
 
@@ -117,6 +114,11 @@ public class GroupedTable implements Table{
         return new ArrayList<>(tableMap.keySet());
     }
 
+    @Override
+    public RowBatch getBatch() {
+        return RowBatch.ofRows(new ArrayList<>(tableMap.keySet()), groupedColumnNames.size());
+    }
+
     public void printState() {
         System.out.println(groupedColumnNames);
         System.out.println(groupedColumnTypes);
@@ -5,6 +5,7 @@ import backend.Indexing.UniqueIndexManager;
 import backend.databaseModels.JoinModel;
 import backend.databaseModels.aggregations.Aggregator;
 import backend.databaseModels.aggregations.AggregatorSymbol;
+import backend.recordHandling.HandlerRegistry;
 import backend.recordHandling.RecordReader;
 import backend.recordHandling.TypeConverter;
 import backend.service.CatalogManager;
@@ -12,6 +13,7 @@ import lombok.Getter;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.stream.Collectors;
 
@@ -19,12 +21,12 @@ public class JoinedTable implements Table{
     @Getter
     private ArrayList<String> columnTypes, columnNames;
     @Getter
-    private ArrayList<ArrayList<Object>> tableContent;
+    private RowBatch batch;
 
-    private JoinedTable(ArrayList<String> columnTypes, ArrayList<String> columnNames, ArrayList<ArrayList<Object>> tableContent) {
+    private JoinedTable(ArrayList<String> columnTypes, ArrayList<String> columnNames, RowBatch batch) {
         this.columnTypes = columnTypes;
         this.columnNames = columnNames;
-        this.tableContent = tableContent;
+        this.batch = batch;
     }
                                          // Multi Join \\
     //-----------------------------------------------------------------------------------------\\
@@ -54,9 +56,7 @@ public class JoinedTable implements Table{
         String parentTableName = join.getLeftTableName(), childTableName = join.getRightTableName();
         String parentKey = join.getLeftFieldName(), foreignKey = join.getRightFieldName();
 
-        ArrayList<ArrayList<Object>> parentTableContent = parentTable.getTableContent();
-        ArrayList<ArrayList<Object>> childTableContent = childTable.getTableContent();
-        ArrayList<ArrayList<Object>> tableContent = new ArrayList<>();
+        RowBatch parentBatch = parentTable.getBatch(), childBatch = childTable.getBatch();
 
         //---------Intro Over--------\\
 
@@ -64,29 +64,32 @@ public class JoinedTable implements Table{
         HashMap<Integer, Integer> pointerMap = parentTable.getPointerMapper();
         String primaryKeyIndexName = CatalogManager.getPrimaryKeyIndexName(databaseName, parentTableName);
 
-        UniqueIndexManager indexManager = new UniqueIndexManager(databaseName, parentTableName, primaryKeyIndexName);
-        ArrayList<Integer> pointers = new ArrayList<>();
+        UniqueIndexManager indexManager = HandlerRegistry.uniqueIndexManager(databaseName, parentTableName, primaryKeyIndexName);
+        // matching (child row, parent row) pairs
+        int[] childRows = new int[childBatch.size()], parentRows = new int[childBatch.size()];
+        int count = 0;
 
-        for(var record : childTableContent){
-            Object foreignKeyValue = record.get(foreignKeyColumnIndex);
+        ColumnVector foreignKeyColumn = childBatch.getColumn(foreignKeyColumnIndex);
+        for (int row = 0; row < childBatch.size(); row++) {
+            if (foreignKeyColumn.isNull(row)) {
+                continue;
+            }
             try {
-                HashMap<Integer, Object> map = indexManager.equalityQuery(foreignKeyValue);
-                pointers.addAll(map.keySet());
+                HashMap<Integer, Object> map = indexManager.equalityQuery(foreignKeyColumn.get(row));
+                for (int pointer : map.keySet()) {
+                    Integer parentRow = pointerMap.get(pointer);
+                    if (parentRow != null) {
+                        childRows[count] = row;
+                        parentRows[count] = parentRow;
+                        count++;
+                    }
+                }
             } catch (Exception ignored) {}
         }
-        indexManager.close();
-
-        pointers = pointers.stream().map(pointerMap::get).collect(Collectors.toCollection(ArrayList::new));
-        for(int i = 0; i < pointers.size(); i++) {
-            if (pointers.get(i) != null) {
-                ArrayList<Object> row = new ArrayList<>();
-                row.addAll(childTableContent.get(i));
-                row.addAll(parentTableContent.get(pointers.get(i)));
-                tableContent.add(row);
-            }
-        }
+        HandlerRegistry.release(indexManager);
 
-        return new JoinedTable(columnTypes, columnNames, tableContent);
+        RowBatch batch = RowBatch.concat(childBatch, childRows, parentBatch, parentRows, count);
+        return new JoinedTable(columnTypes, columnNames, batch);
     }
     //------------------------------------------------------------------------------------------\\
 
@@ -104,50 +107,55 @@ public class JoinedTable implements Table{
         //String parentTableName = join.getLeftTableName(), childTableName = join.getRightTableName();
         String leftKey = join.getLeftFieldName(), rightKey = join.getRightFieldName();
 
-        ArrayList<ArrayList<Object>> leftTableContent = joinedTable.getTableContent();
-        ArrayList<ArrayList<Object>> rightTableContent = baseTable.getTableContent();
-        ArrayList<ArrayList<Object>> tableContent = new ArrayList<>();
+        RowBatch leftBatch = joinedTable.getBatch(), rightBatch = baseTable.getBatch();
 
         int leftKeyIndex = leftColumnNames.indexOf(leftKey), rightKeyIndex = rightColumnNames.indexOf(rightKey);
-        HashMap<Object, ArrayList<Integer>> keyMap = new HashMap<>();
-
-        for (int i = 0; i < leftTableContent.size(); i++) {
-            Object leftKeyValue = leftTableContent.get(i).get(leftKeyIndex);
-            if (keyMap.containsKey(leftKeyValue)) {
-                keyMap.get(leftKeyValue).add(i);
-            } else {
-                keyMap.put(leftKeyValue, new ArrayList<>());
-                keyMap.get(leftKeyValue).add(i);
+        ColumnVector leftKeys = leftBatch.getColumn(leftKeyIndex), rightKeys = rightBatch.getColumn(rightKeyIndex);
+
+        // chained hash table over the left rows: heads[bucket] -> first row, next[row] -> following row of the bucket, -1 ends
+        // the rows are inserted backwards so every chain lists its rows in table order, null keys never match
+        int buckets = Integer.highestOneBit(Integer.max(1, leftBatch.size()) * 2 - 1) << 1;
+        int[] heads = new int[buckets], next = new int[leftBatch.size()];
+        Arrays.fill(heads, -1);
+        for (int row = leftBatch.size() - 1; row >= 0; row--) {
+            if (!leftKeys.isNull(row)) {
+                int bucket = leftKeys.hash(row) & (buckets - 1);
+                next[row] = heads[bucket];
+                heads[bucket] = row;
             }
         }
 
-        for (ArrayList<Object> rightRow : rightTableContent) {
-            Object rightKeyValue = rightRow.get(rightKeyIndex);
-            ArrayList<Integer> pointers = keyMap.get(rightKeyValue);
-
-            if (pointers != null) {
-                for (var pointer : pointers) {
-                    ArrayList<Object> row = new ArrayList<>();
-                    row.addAll(rightRow);
-                    row.addAll(leftTableContent.get(pointer));
-                    tableContent.add(row);
+        int[] rightRows = new int[Integer.max(16, rightBatch.size())], leftRows = new int[rightRows.length];
+        int count = 0;
+        for (int rightRow = 0; rightRow < rightBatch.size(); rightRow++) {
+            if (rightKeys.isNull(rightRow)) {
+                continue;
+            }
+            for (int leftRow = heads[rightKeys.hash(rightRow) & (buckets - 1)]; leftRow != -1; leftRow = next[leftRow]) {
+                if (rightKeys.equalsAt(rightRow, leftKeys, leftRow)) {
+                    if (count == rightRows.length) {
+                        rightRows = Arrays.copyOf(rightRows, count * 2);
+                        leftRows = Arrays.copyOf(leftRows, count * 2);
+                    }
+                    rightRows[count] = rightRow;
+                    leftRows[count] = leftRow;
+                    count++;
                 }
             }
         }
 
-        return new JoinedTable(columnTypes, columnNames, tableContent);
+        return new JoinedTable(columnTypes, columnNames, RowBatch.concat(rightBatch, rightRows, leftBatch, leftRows, count));
     }
     //-------------------------------------------------------------------------------------------\\
 
     @Override
     public GroupedTable groupBy(ArrayList<String> groupingColumns) {
-        return new GroupedTable(columnNames, columnTypes, groupingColumns, tableContent);
+        return new GroupedTable(columnNames, columnTypes, groupingColumns, batch);
     }
 
     @Override
     public void aggregation(ArrayList<Aggregator> aggregators) {
         ArrayList<String> newTypes = new ArrayList<>();
-        ArrayList<ArrayList<Object>> newTable = new ArrayList<>();
         ArrayList<Object> newRow = new ArrayList<>();
         for(var aggregator : aggregators) {
             String fieldName = aggregator.getFieldName();
@@ -156,13 +164,10 @@ public class JoinedTable implements Table{
             AggregatorSymbol aggregatorSymbol = aggregator.getAggr();
             newTypes.add(TypeConverter.mapAggregatorType(fieldType, aggregatorSymbol));
 
-            ArrayList<Object> column = tableContent.stream().map((elem) -> elem.get(fieldIndex)).collect(Collectors.toCollection(ArrayList::new));
-
-            newRow.add(Aggregator.resolve(aggregatorSymbol, column, fieldType));
+            newRow.add(batch.getColumn(fieldIndex).aggregate(aggregatorSymbol));
         }
-        newTable.add(newRow);
+        batch = RowBatch.ofRow(newRow);
 
-        tableContent = newTable;
         columnNames = aggregators.stream().map(Aggregator::getAlias).collect(Collectors.toCollection(ArrayList::new));
         columnTypes = newTypes;
     }
@@ -178,23 +183,22 @@ public class JoinedTable implements Table{
                 wantedColumnIndexes.add(i);
             }
         }
-        tableContent = tableContent.stream().map(elem -> {
-            ArrayList<Object> newElem = new ArrayList<>();
-            for(var i : wantedColumnIndexes){
-                newElem.add(elem.get(i));
-            }
-            return newElem;
-        }).collect(Collectors.toCollection(ArrayList::new));
+        batch = batch.project(wantedColumnIndexes);
 
         columnNames = wantedColumns;
         columnTypes = newColumnTypes;
     }
 
 
+    @Override
+    public ArrayList<ArrayList<Object>> getTableContent() {
+        return batch.toRows();
+    }
+
     public void printState(){
         System.out.println(columnNames);
         System.out.println(columnTypes);
-        for(var record : tableContent) {
+        for(var record : getTableContent()) {
             System.out.println(record);
         }
     }
@@ -0,0 +1,129 @@
+package backend.Utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// the rows of a table kept column by column in typed vectors (see ColumnVector), the operators work on the vectors
+// rows are only boxed into lists at the edges: when they are read from the records and when the result is sent
+public class RowBatch {
+    private final ArrayList<ColumnVector> columns;
+    private int size;
+
+    public RowBatch(List<String> columnTypes) {
+        columns = new ArrayList<>();
+        for (String type : columnTypes) {
+            columns.add(ColumnVector.forType(type));
+        }
+    }
+
+    private RowBatch(ArrayList<ColumnVector> columns, int size) {
+        this.columns = columns;
+        this.size = size;
+    }
+
+    // rows of values of any class (the result of an aggregation or a grouping)
+    public static RowBatch ofRows(List<? extends List<Object>> rows, int columnCount) {
+        ArrayList<ColumnVector> columns = new ArrayList<>();
+        for (int i = 0; i < columnCount; i++) {
+            ColumnVector column = ColumnVector.forValues();
+            for (List<Object> row : rows) {
+                column.add(row.get(i));
+            }
+            columns.add(column);
+        }
+        return new RowBatch(columns, rows.size());
+    }
+
+    public static RowBatch ofRow(List<Object> row) {
+        return ofRows(List.of(row), row.size());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    public ColumnVector getColumn(int column) {
+        return columns.get(column);
+    }
+
+    public void add(List<Object> row) {
+        for (int i = 0; i < columns.size(); i++) {
+            columns.get(i).add(row.get(i));
+        }
+        size++;
+    }
+
+    // the given columns of a row of the other batch, the values are copied without boxing
+    public void addFrom(RowBatch other, int row, List<Integer> otherColumns) {
+        for (int i = 0; i < columns.size(); i++) {
+            columns.get(i).addFrom(other.columns.get(otherColumns.get(i)), row);
+        }
+        size++;
+    }
+
+    // drops the last row again
+    public void removeLast() {
+        size--;
+        for (ColumnVector column : columns) {
+            column.truncate(size);
+        }
+    }
+
+    public ArrayList<Object> getRow(int row) {
+        ArrayList<Object> values = new ArrayList<>(columns.size());
+        for (ColumnVector column : columns) {
+            values.add(column.get(row));
+        }
+        return values;
+    }
+
+    public ArrayList<ArrayList<Object>> toRows() {
+        ArrayList<ArrayList<Object>> rows = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            rows.add(getRow(row));
+        }
+        return rows;
+    }
+
+    // the given columns in the given order, the vectors are shared and not copied
+    public RowBatch project(List<Integer> wantedColumns) {
+        ArrayList<ColumnVector> projected = new ArrayList<>();
+        for (int column : wantedColumns) {
+            projected.add(columns.get(column));
+        }
+        return new RowBatch(projected, size);
+    }
+
+    // the columns of the left row followed by the columns of the right row, for every pair of rows
+    public static RowBatch concat(RowBatch left, int[] leftRows, RowBatch right, int[] rightRows, int count) {
+        ArrayList<ColumnVector> concatenated = new ArrayList<>();
+        for (ColumnVector column : left.columns) {
+            concatenated.add(gather(column, leftRows, count));
+        }
+        for (ColumnVector column : right.columns) {
+            concatenated.add(gather(column, rightRows, count));
+        }
+        return new RowBatch(concatenated, count);
+    }
+
+    // the given rows of the given columns (in this order), values are copied without boxing
+    public RowBatch gather(List<Integer> wantedColumns, int[] rows, int count) {
+        ArrayList<ColumnVector> gathered = new ArrayList<>();
+        for (int column : wantedColumns) {
+            gathered.add(gather(columns.get(column), rows, count));
+        }
+        return new RowBatch(gathered, count);
+    }
+
+    private static ColumnVector gather(ColumnVector column, int[] rows, int count) {
+        ColumnVector gathered = ColumnVector.forType(column.getType());
+        for (int i = 0; i < count; i++) {
+            gathered.addFrom(column, rows[i]);
+        }
+        return gathered;
+    }
+}
@@ -14,4 +14,6 @@ public interface Table {
     ArrayList<String> getColumnTypes();
 
     ArrayList<ArrayList<Object>> getTableContent();
+
+    RowBatch getBatch();
 }
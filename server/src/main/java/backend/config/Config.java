@@ -9,10 +9,74 @@ public class Config {
     private static final String DB_CATALOG_PATH = System.getProperty("user.dir") + File.separator + "src" + File.separator + "main" + File.separator + "resources" + File.separator + "Catalog.json";
     private static final String DB_RECORDS_PATH = System.getProperty("user.dir") + File.separator + "src" + File.separator + "main" + File.separator + "resources" + File.separator + "records";
     private static final String DB_CATALOG_ROOT = "databases";
+    // Table and column statistics collected by ANALYZE, beside the catalog
+    private static final String DB_STATISTICS_PATH = System.getProperty("user.dir") + File.separator + "src" + File.separator + "main" + File.separator + "resources" + File.separator + "Statistics.json";
+
+    // Page cache of the table data files (page size in bytes, capacity in pages)
+    private static final int PAGE_SIZE = Integer.getInteger("db.pageSize", 8192);
+    private static final int PAGE_CACHE_CAPACITY = Integer.getInteger("db.pageCacheCapacity", 256);
+
+    // Record handlers and index managers kept open between statements, the unused ones are closed after the idle time
+    private static final int OPEN_HANDLER_CAPACITY = Integer.getInteger("db.openHandlerCapacity", 64);
+    private static final int HANDLER_IDLE_SECONDS = Integer.getInteger("db.handlerIdleSeconds", 300);
+
+    // Full table scans decode records straight from a memory mapping of the data file
+    private static final boolean MEMORY_MAPPED_SCAN = Boolean.getBoolean("db.mmapScan");
+
+    // Threads of a parallel table scan (chunks of lines are read and filtered by fork / join workers), 1 scans sequentially
+    private static final int SCAN_PARALLELISM = Integer.getInteger("db.scanParallelism", Runtime.getRuntime().availableProcessors());
+
+    // Number of record lines per zone map block (min / max of the block's values, lets scans skip blocks)
+    private static final int ZONE_MAP_BLOCK_SIZE = Integer.getInteger("db.zoneMapBlockSize", 1024);
+
+    // B+ tree nodes of new index files are sized to fit in a page of this many bytes (existing files keep their node size)
+    private static final int INDEX_PAGE_SIZE = Integer.getInteger("db.indexPageSize", 4096);
+    // Decoded index nodes cached per index, once for the inner nodes and once for the leaves (the root is always kept)
+    private static final int INDEX_NODE_CACHE_CAPACITY = Integer.getInteger("db.indexNodeCacheCapacity", 64);
+    // CREATE INDEX sorts the keys of the table in runs of this many bytes, the runs are merged from temporary files
+    private static final int INDEX_BUILD_MEMORY = Integer.getInteger("db.indexBuildMemory", 64 * 1024 * 1024);
+    // Share of a node CREATE INDEX fills, the rest is left for later inserts (at least half of a node is always filled)
+    private static final double INDEX_FILL_FACTOR = Double.parseDouble(System.getProperty("db.indexFillFactor", "0.9"));
+
+    // Counting Bloom filter of every unique index (4 bit counters per key), 0 turns the filters off
+    private static final int INDEX_FILTER_COUNTERS_PER_KEY = Integer.getInteger("db.indexFilterCountersPerKey", 10);
+
+    // Number of values per column ANALYZE samples for the histograms (the counts are exact, distinct counts estimated)
+    private static final int STATISTICS_SAMPLE_SIZE = Integer.getInteger("db.statisticsSampleSize", 30000);
+    // An index is only used for a condition that is estimated to keep at most this fraction of an analyzed table
+    private static final double INDEX_MAX_SELECTIVITY = Double.parseDouble(System.getProperty("db.indexMaxSelectivity", "0.2"));
+
+    // Write-ahead log of the data and index files
+    private static final String WAL_PATH = DB_RECORDS_PATH + File.separator + "wal.log";
+    private static final String WAL_FSYNC_POLICY = System.getProperty("db.walFsync", "group");
+    private static final int WAL_GROUP_COMMIT_MS = Integer.getInteger("db.walGroupCommitMs", 10);
+    private static final long WAL_CHECKPOINT_BYTES = Long.getLong("db.walCheckpointBytes", 64L * 1024 * 1024);
+    // Written at a clean shutdown, without it the free space maps, zone maps and index filters are rebuilt on startup
+    private static final String WAL_CLEAN_SHUTDOWN_PATH = DB_RECORDS_PATH + File.separator + "clean.shutdown";
 
     /* Getters */
     public static String getDbCatalogPath() { return DB_CATALOG_PATH; }
     public static String getDbRecordsPath() { return  DB_RECORDS_PATH; }
     public static String getDbCatalogRoot() { return DB_CATALOG_ROOT; }
     public static File getCatalogFile() { return new File(DB_CATALOG_PATH); }
+    public static File getStatisticsFile() { return new File(DB_STATISTICS_PATH); }
+    public static int getPageSize() { return PAGE_SIZE; }
+    public static int getPageCacheCapacity() { return PAGE_CACHE_CAPACITY; }
+    public static int getOpenHandlerCapacity() { return OPEN_HANDLER_CAPACITY; }
+    public static int getHandlerIdleSeconds() { return HANDLER_IDLE_SECONDS; }
+    public static boolean isMemoryMappedScan() { return MEMORY_MAPPED_SCAN; }
+    public static int getScanParallelism() { return SCAN_PARALLELISM; }
+    public static int getZoneMapBlockSize() { return ZONE_MAP_BLOCK_SIZE; }
+    public static int getIndexPageSize() { return INDEX_PAGE_SIZE; }
+    public static int getIndexNodeCacheCapacity() { return INDEX_NODE_CACHE_CAPACITY; }
+    public static int getIndexBuildMemory() { return INDEX_BUILD_MEMORY; }
+    public static double getIndexFillFactor() { return INDEX_FILL_FACTOR; }
+    public static int getIndexFilterCountersPerKey() { return INDEX_FILTER_COUNTERS_PER_KEY; }
+    public static int getStatisticsSampleSize() { return STATISTICS_SAMPLE_SIZE; }
+    public static double getIndexMaxSelectivity() { return INDEX_MAX_SELECTIVITY; }
+    public static String getWalPath() { return WAL_PATH; }
+    public static String getWalFsyncPolicy() { return WAL_FSYNC_POLICY; }
+    public static int getWalGroupCommitMs() { return WAL_GROUP_COMMIT_MS; }
+    public static long getWalCheckpointBytes() { return WAL_CHECKPOINT_BYTES; }
+    public static String getWalCleanShutdownPath() { return WAL_CLEAN_SHUTDOWN_PATH; }
 }
@@ -2,6 +2,8 @@ package backend.databaseActions;
 
 import backend.exceptions.databaseActionsExceptions.*;
 import backend.exceptions.recordHandlingExceptions.InvalidReadException;
+import backend.exceptions.recordHandlingExceptions.InvalidWriteException;
+import backend.exceptions.recordHandlingExceptions.KeyAlreadyInTreeException;
 import backend.exceptions.recordHandlingExceptions.RecordNotFoundException;
 import backend.exceptions.validatorExceptions.*;
 
@@ -12,5 +14,6 @@ public interface DatabaseAction {
             PrimaryKeyNotFound, ForeignKeyNotFound, FieldCantBeNull, FieldsAreNotUnique, TableDoesntExist,
             IndexAlreadyExists, ForeignKeyFieldNotFound, IOException, RecordNotFoundException,
             PrimaryKeyValuesContainDuplicates, UniqueFieldValuesContainDuplicates,
-            PrimaryKeyValueAlreadyInTable, UniqueValueAlreadyInTable, ForeignKeyValueNotFoundInParentTable, InvalidReadException, ForeignKeyValueIsBeingReferencedInAnotherTable, FieldsNotCompatible;
+            PrimaryKeyValueAlreadyInTable, UniqueValueAlreadyInTable, ForeignKeyValueNotFoundInParentTable, InvalidReadException, ForeignKeyValueIsBeingReferencedInAnotherTable, FieldsNotCompatible,
+            KeyAlreadyInTreeException, InvalidWriteException;
 }
@@ -142,22 +142,45 @@ public class CreateIndexAction implements DatabaseAction {
             throw new RuntimeException(e);
         }
 
-        if(this.indexFile.isUnique()){
-            try {
-                UniqueIndexManager.createIndex(this.databaseName, this.tableName, this.indexFile.getIndexName());
-            } catch (IOException e) {
-                log.error("Can't create index file -> IO exception!");
-                throw new RuntimeException(e);
-            }
-        } else {
-            try {
-                NonUniqueIndexManager.createIndex(this.databaseName, this.tableName, this.indexFile.getIndexName());
-            } catch (IOException e) {
-                log.error("Can't create index file ->" + e.getMessage());
-                throw new RuntimeException(e);
+        try {
+            if(this.indexFile.isUnique()){
+                try {
+                    UniqueIndexManager.createIndex(this.databaseName, this.tableName, this.indexFile.getIndexName());
+                } catch (IOException e) {
+                    log.error("Can't create index file -> IO exception!");
+                    throw new RuntimeException(e);
+                }
+            } else {
+                try {
+                    NonUniqueIndexManager.createIndex(this.databaseName, this.tableName, this.indexFile.getIndexName());
+                } catch (IOException e) {
+                    log.error("Can't create index file ->" + e.getMessage());
+                    throw new RuntimeException(e);
+                }
             }
+        } catch (RuntimeException e) {
+            // the failed statement is rolled back, the index file is cut back to nothing -> the index leaves the catalog
+            removeIndexFromCatalog(mapper);
+            throw e;
         }
 
         return null;
     }
+
+    private void removeIndexFromCatalog(ObjectMapper mapper) {
+        try {
+            JsonNode rootNode = mapper.readTree(Config.getCatalogFile());
+            JsonNode tableNode = this.findTableNode(this.tableName, this.findDatabaseNodeFromRoot(this.databaseName, rootNode));
+            ArrayNode indexFilesNode = (ArrayNode) tableNode.get("table").get("indexFiles");
+            for (int i = 0; i < indexFilesNode.size(); i++) {
+                if (this.indexFile.getIndexName().equals(indexFilesNode.get(i).get("indexFile").get("indexName").asText())) {
+                    indexFilesNode.remove(i);
+                    break;
+                }
+            }
+            mapper.writeValue(Config.getCatalogFile(), rootNode);
+        } catch (IOException e) {
+            log.error("CreateIndexAction -> Could not remove the failed index from the catalog: " + e.getMessage());
+        }
+    }
 }
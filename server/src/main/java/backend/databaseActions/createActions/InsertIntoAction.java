@@ -2,11 +2,15 @@ package backend.databaseActions.createActions;
 
 import backend.databaseActions.DatabaseAction;
 import backend.exceptions.databaseActionsExceptions.DatabaseDoesntExist;
+import backend.exceptions.databaseActionsExceptions.FieldCantBeNull;
 import backend.exceptions.databaseActionsExceptions.TableDoesntExist;
 import backend.exceptions.recordHandlingExceptions.InvalidTypeException;
+import backend.exceptions.recordHandlingExceptions.InvalidWriteException;
+import backend.exceptions.recordHandlingExceptions.KeyAlreadyInTreeException;
 import backend.exceptions.validatorExceptions.*;
 import backend.recordHandling.RecordInserter;
 import backend.recordHandling.RecordStandardizer;
+import backend.recordHandling.TypeConverter;
 import backend.service.CatalogManager;
 import backend.Indexing.indexValidators.InsertRowValidator;
 import lombok.Setter;
@@ -31,7 +35,7 @@ public class InsertIntoAction implements DatabaseAction {
     private ArrayList<ArrayList<String>> values;
 
     @Override
-    public Object actionPerform() throws IOException, PrimaryKeyValuesContainDuplicates, UniqueFieldValuesContainDuplicates, DatabaseDoesntExist, TableDoesntExist, PrimaryKeyValueAlreadyInTable, UniqueValueAlreadyInTable, ForeignKeyValueNotFoundInParentTable {
+    public Object actionPerform() throws IOException, FieldCantBeNull, PrimaryKeyValuesContainDuplicates, UniqueFieldValuesContainDuplicates, DatabaseDoesntExist, TableDoesntExist, PrimaryKeyValueAlreadyInTable, UniqueValueAlreadyInTable, ForeignKeyValueNotFoundInParentTable, KeyAlreadyInTreeException, InvalidWriteException {
         // ----------------------------------- CHECK DB, TABLE NAME ------------------------------------------------- //
         if (!CatalogManager.getDatabaseNames().contains(this.databaseName)) {
             throw new DatabaseDoesntExist(this.databaseName);
@@ -42,8 +46,21 @@ public class InsertIntoAction implements DatabaseAction {
         }
         // ---------------------------------- / CHECK DB, TABLE NAME ------------------------------------------------ //
 
-        // ----------------------------------- DUPLICATE VALUES CHECK ----------------------------------------------- //
+        // ------------------------------------------ NULL CHECK ---------------------------------------------------- //
         List<String> fieldNames = CatalogManager.getFieldNames(this.databaseName, this.tableName);
+        // Primary key and unique fields are not nullable
+        for (int i = 0; i < fieldNames.size(); i++) {
+            if (!CatalogManager.isFieldNullable(this.databaseName, this.tableName, fieldNames.get(i))) {
+                for (final ArrayList<String> row : values) {
+                    if (TypeConverter.isNull(row.get(i))) {
+                        throw new FieldCantBeNull(fieldNames.get(i));
+                    }
+                }
+            }
+        }
+        // ----------------------------------------- / NULL CHECK --------------------------------------------------- //
+
+        // ----------------------------------- DUPLICATE VALUES CHECK ----------------------------------------------- //
         // Check PK is set, unique columns are sets
         // Find primary key fields indexes and unique column indexes
         List<Integer> primaryKeyIndexes = CatalogManager.getPrimaryKeyFieldIndexes(this.databaseName, this.tableName);
@@ -91,6 +108,9 @@ public class InsertIntoAction implements DatabaseAction {
             for (final ArrayList<String> row : values) {
                 // Add padding to certain indexes
                 for (final Integer stringInd : stringIndexes) {
+                    if (TypeConverter.isNull(row.get(stringInd))) {
+                        continue;
+                    }
                     try {
                         row.set(stringInd, RecordStandardizer.formatString(row.get(stringInd), fieldTypes.get(stringInd)));
                     } catch (InvalidTypeException e) {
@@ -104,20 +124,26 @@ public class InsertIntoAction implements DatabaseAction {
 
         InsertRowValidator rowValidator = new InsertRowValidator(this.databaseName, this.tableName);
 
-        // First validate rows and if any error occurs don't insert any rows into table
-        for (final ArrayList<String> row : values) {
-            rowValidator.validateRow(row);
-        }
+        // the index managers (and their shared key filters) are released before an error goes up
+        try {
+            // First validate rows and if any error occurs don't insert any rows into table
+            for (final ArrayList<String> row : values) {
+                rowValidator.validateRow(row);
+            }
 
-        // No errors -> Insert each row into table
-        RecordInserter recordInserter = new RecordInserter(this.databaseName, this.tableName);
-        for (final ArrayList<String> row : values) {
-            recordInserter.insert(row);
+            // No errors -> Insert the rows into table in one batch
+            // an index / free space map out of step with the table fails the statement, its rollback removes the rows
+            // and the index entries written so far
+            RecordInserter recordInserter = new RecordInserter(this.databaseName, this.tableName);
+            try {
+                recordInserter.insertBatch(values);
+            } finally {
+                recordInserter.close();
+            }
+        } finally {
+            rowValidator.close();
         }
 
-        recordInserter.close();
-        rowValidator.close();
-
         return rowCount;        // Display inserted row count to user
     }
 }
@@ -2,8 +2,12 @@ package backend.databaseActions.dropActions;
 
 import backend.Indexing.indexValidators.DeleteRowValidator;
 import backend.Utilities.BaseTable;
+import backend.Utilities.RowBatch;
 import backend.databaseActions.DatabaseAction;
 import backend.databaseModels.conditions.Condition;
+import backend.databaseModels.conditions.Equation;
+import backend.databaseModels.conditions.FunctionCall;
+import backend.exceptions.NoIndexException;
 import backend.exceptions.databaseActionsExceptions.*;
 import backend.exceptions.recordHandlingExceptions.InvalidReadException;
 import backend.exceptions.recordHandlingExceptions.KeyNotFoundException;
@@ -17,6 +21,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.function.IntPredicate;
 
 @Slf4j
 @AllArgsConstructor
@@ -41,10 +46,61 @@ public class DeleteFromAction implements DatabaseAction {
         // ---------------------------------- / CHECK DB, TABLE NAME ------------------------------------------------ //
         DeleteRowValidator validator = new DeleteRowValidator(this.databaseName, this.tableName);
 
-        BaseTable table = new BaseTable(databaseName, tableName, conditions);
-        validator.validateTable(table);
-        table.delete();
+        if (usesIndex()) {
+            BaseTable table = new BaseTable(databaseName, tableName, conditions);
+            validator.validateTable(table);
+            table.delete();
+            return null;
+        }
+
+        // no index can narrow the records -> filter them while streaming the table instead of loading it
+        validator.validateTable(null);
+        ArrayList<String> columnNames = new ArrayList<>();
+        for (String fieldName : CatalogManager.getFieldNames(databaseName, tableName)) {
+            columnNames.add(tableName + "." + fieldName);
+        }
+        ArrayList<String> columnTypes = (ArrayList<String>) CatalogManager.getFieldTypes(databaseName, tableName);
+
+        // every streamed record is tested as the single row of a batch
+        RowBatch batch = new RowBatch(columnTypes);
+        IntPredicate filter = row -> true;
+        for (var condition : conditions) {
+            filter = filter.and(BaseTable.toPredicate(condition, columnNames, columnTypes, batch));
+        }
+        IntPredicate rowFilter = filter;
+
+        RecordDeleter deleter = new RecordDeleter(databaseName, tableName);
+        int deleted;
+        try {
+            deleted = deleter.deleteWhere(record -> {
+                batch.add(record);
+                boolean matches = rowFilter.test(0);
+                batch.removeLast();
+                return matches;
+            });
+        } finally {
+            deleter.close();
+        }
+        log.info("Deleted " + deleted + " record(s) from " + tableName);
 
         return null;
     }
+
+    private boolean usesIndex() {
+        for (var condition : conditions) {
+            String fieldName;
+            if (condition instanceof Equation) {
+                fieldName = ((Equation) condition).getLFieldName();
+            } else if (condition instanceof FunctionCall) {
+                fieldName = ((FunctionCall) condition).getFieldName();
+            } else {
+                continue;
+            }
+            try {
+                CatalogManager.getIndexName(databaseName, tableName, fieldName.substring(fieldName.indexOf('.') + 1));
+                return true;
+            } catch (NoIndexException ignored) {}
+        }
+        return false;
+    }
 }
@@ -5,6 +5,9 @@ import backend.databaseActions.DatabaseAction;
 import backend.databaseActions.miscActions.UseDatabaseAction;
 import backend.databaseModels.DatabaseModel;
 import backend.exceptions.databaseActionsExceptions.DatabaseDoesntExist;
+import backend.recordHandling.HandlerRegistry;
+import backend.recordHandling.SharedFile;
+import backend.service.CatalogManager;
 import backend.service.Utility;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -63,6 +66,13 @@ public class DropDatabaseAction implements DatabaseAction {
             if(currentDatabaseName.equals(this.database.getDatabaseName())) {
                 // Remove database folder
                 String databaseFolderPath = Config.getDbRecordsPath() + File.separator + this.database.getDatabaseName();
+                try {
+                    HandlerRegistry.close(this.database.getDatabaseName(), null);
+                    SharedFile.closeAll(databaseFolderPath);
+                } catch (IOException e) {
+                    log.error("DropDatabaseAction -> Files of database=" + this.database.getDatabaseName() + " could not be closed!");
+                    throw new RuntimeException(e);
+                }
                 if(!Utility.deleteDirectory(new File(databaseFolderPath))) {
                     log.error("Database directory=" + databaseFolderPath + " could not be deleted!");
                     throw new RuntimeException();
@@ -70,6 +80,7 @@ public class DropDatabaseAction implements DatabaseAction {
 
                 // Remove database and write back
                 databasesArray.remove(removed_ind);
+                CatalogManager.dropDatabaseStatistics(this.database.getDatabaseName());
 
                 // Mapper -> Write entire catalog
                 try {
@@ -4,6 +4,9 @@ import backend.config.Config;
 import backend.databaseActions.DatabaseAction;
 import backend.exceptions.databaseActionsExceptions.DatabaseDoesntExist;
 import backend.exceptions.databaseActionsExceptions.TableDoesntExist;
+import backend.recordHandling.HandlerRegistry;
+import backend.recordHandling.SharedFile;
+import backend.service.CatalogManager;
 import backend.service.Utility;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -88,6 +91,13 @@ public class DropTableAction implements DatabaseAction {
             if(tableNode.get("table").get("tableName").asText().equals(this.tableName)) {
                 // Remove table folder
                 String tableFolderPath = Config.getDbRecordsPath() + File.separator + this.databaseName + File.separator + this.tableName;
+                try {
+                    HandlerRegistry.close(this.databaseName, this.tableName);
+                    SharedFile.closeAll(tableFolderPath);
+                } catch (IOException e) {
+                    log.error("DropTableAction -> Files of table=" + this.tableName + " could not be closed!");
+                    throw new RuntimeException(e);
+                }
                 if(!Utility.deleteDirectory(new File(tableFolderPath))) {
                     log.error("Database directory=" + tableFolderPath + " could not be deleted!");
                     throw new RuntimeException();
@@ -95,6 +105,7 @@ public class DropTableAction implements DatabaseAction {
 
                 // Remove corresponding table node
                 databaseTables.remove(remove_ind);
+                CatalogManager.dropTableStatistics(this.databaseName, this.tableName);
 
                 // Mapper -> Write entire catalog
                 try {
@@ -0,0 +1,45 @@
+package backend.databaseActions.miscActions;
+
+import backend.databaseActions.DatabaseAction;
+import backend.exceptions.databaseActionsExceptions.DatabaseDoesntExist;
+import backend.exceptions.databaseActionsExceptions.TableDoesntExist;
+import backend.recordHandling.TableAnalyzer;
+import backend.service.CatalogManager;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.List;
+
+@Slf4j
+public class AnalyzeAction implements DatabaseAction {
+    // null -> every table of the database
+    private final String databaseName, tableName;
+
+    public AnalyzeAction(String databaseName, String tableName) {
+        this.databaseName = databaseName;
+        this.tableName = tableName;
+    }
+
+    @Override
+    public Object actionPerform() throws DatabaseDoesntExist, TableDoesntExist, IOException {
+        // ----------------------------------- CHECK DB, TABLE NAME ------------------------------------------------- //
+        if (!CatalogManager.getDatabaseNames().contains(this.databaseName)) {
+            throw new DatabaseDoesntExist(this.databaseName);
+        }
+
+        List<String> tableNames = CatalogManager.getCurrentDatabaseTableNames();
+        if (this.tableName != null) {
+            if (!tableNames.contains(this.tableName)) {
+                throw new TableDoesntExist(this.tableName, this.databaseName);
+            }
+            tableNames = List.of(this.tableName);
+        }
+        // ---------------------------------- / CHECK DB, TABLE NAME ------------------------------------------------ //
+
+        for (String table : tableNames) {
+            CatalogManager.setTableStatistics(this.databaseName, table, TableAnalyzer.analyze(this.databaseName, table));
+        }
+
+        return tableNames.size();       // Display analyzed table count to user
+    }
+}
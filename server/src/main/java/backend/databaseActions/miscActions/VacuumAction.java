@@ -0,0 +1,43 @@
+package backend.databaseActions.miscActions;
+
+import backend.databaseActions.DatabaseAction;
+import backend.exceptions.databaseActionsExceptions.DatabaseDoesntExist;
+import backend.exceptions.databaseActionsExceptions.TableDoesntExist;
+import backend.recordHandling.RecordCompactor;
+import backend.service.CatalogManager;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+
+@Slf4j
+public class VacuumAction implements DatabaseAction {
+    private final String databaseName, tableName;
+
+    public VacuumAction(String databaseName, String tableName) {
+        this.databaseName = databaseName;
+        this.tableName = tableName;
+    }
+
+    @Override
+    public Object actionPerform() throws DatabaseDoesntExist, TableDoesntExist, IOException {
+        // ----------------------------------- CHECK DB, TABLE NAME ------------------------------------------------- //
+        if (!CatalogManager.getDatabaseNames().contains(this.databaseName)) {
+            throw new DatabaseDoesntExist(this.databaseName);
+        }
+
+        if (!CatalogManager.getCurrentDatabaseTableNames().contains(this.tableName)) {
+            throw new TableDoesntExist(this.tableName, this.databaseName);
+        }
+        // ---------------------------------- / CHECK DB, TABLE NAME ------------------------------------------------ //
+
+        RecordCompactor compactor = new RecordCompactor(this.databaseName, this.tableName);
+        int moved;
+        try {
+            moved = compactor.compact();
+        } finally {
+            compactor.close();
+        }
+
+        return moved;       // Display moved record count to user
+    }
+}
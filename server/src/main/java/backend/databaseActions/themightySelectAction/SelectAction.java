@@ -21,6 +21,7 @@ import lombok.extern.slf4j.Slf4j;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -99,7 +100,7 @@ public class SelectAction implements DatabaseAction {
             String tableName = entry.getKey();
             ArrayList<Condition> conditions = entry.getValue();
 
-            baseConditionedTables.add(new BaseTable(databaseName, tableName, conditions));
+            baseConditionedTables.add(new BaseTable(databaseName, tableName, conditions, touchedColumns(tableName)));
         }
 
         // Create base tables that have no condition but appear on JOIN
@@ -115,7 +116,7 @@ public class SelectAction implements DatabaseAction {
             // check if there was a condition for the table
             // check if it is in the final tables
             if (! tableConditions.containsKey(ltable) && !finalTableNames.contains(ltable)) {
-                finalTables.add(new BaseTable(databaseName, ltable, new ArrayList<>()));
+                finalTables.add(new BaseTable(databaseName, ltable, new ArrayList<>(), touchedColumns(ltable)));
                 finalTableNames.add(ltable);
             } else if ( !finalTableNames.contains(ltable) ) {
                 // find the filtered table
@@ -130,7 +131,7 @@ public class SelectAction implements DatabaseAction {
 
             // same for the right table
             if (! tableConditions.containsKey(rtable) && !finalTableNames.contains(rtable)) {
-                finalTables.add(new BaseTable(databaseName, rtable, new ArrayList<>()));
+                finalTables.add(new BaseTable(databaseName, rtable, new ArrayList<>(), touchedColumns(rtable)));
                 finalTableNames.add(rtable);
             } else if (!finalTableNames.contains(rtable)) {
                 for (BaseTable table : baseConditionedTables) {
@@ -198,6 +199,32 @@ public class SelectAction implements DatabaseAction {
         return grouppedTable;
     }
 
+    // the columns of the table that the query touches anywhere, only these are read from disk, null -> SELECT *
+    private List<String> touchedColumns(String tableName) {
+        if (projectionColumns.get(0).equals("*")) {
+            return null;
+        }
+
+        LinkedHashSet<String> touched = new LinkedHashSet<>(projectionColumns);
+        touched.addAll(groupedByColumns);
+        for (Aggregator aggregator : aggregations) {
+            touched.add(aggregator.getFieldName());
+        }
+        for (Condition condition : conditions) {
+            if (condition instanceof Equation equation) {
+                touched.add(equation.getLFieldName());
+            } else if (condition instanceof FunctionCall functionCall) {
+                touched.add(functionCall.getFieldName());
+            }
+        }
+        for (JoinModel joinModel : joinModels) {
+            touched.add(joinModel.getLeftFieldName());
+            touched.add(joinModel.getRightFieldName());
+        }
+
+        return touched.stream().filter(columnName -> columnName.startsWith(tableName + ".")).collect(Collectors.toList());
+    }
+
     private ArrayList<Table> sortTables(ArrayList<Table> finalTables, ArrayList<String> finalTableNames, List<String> joinedTables) {
         ArrayList<Table> sortedTables = new ArrayList<>();
 
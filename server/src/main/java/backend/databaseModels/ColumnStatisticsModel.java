@@ -0,0 +1,101 @@
+package backend.databaseModels;
+
+import backend.databaseModels.conditions.Operator;
+import backend.recordHandling.ColumnCodec;
+import lombok.Data;
+
+import java.util.ArrayList;
+
+// statistics of one column, values are kept in their string form (parsed with the codec of the column's type)
+@Data
+public class ColumnStatisticsModel {
+    private String fieldName, fieldType;
+
+    private long nullCount;
+
+    // estimated number of distinct non null values
+    private long distinctCount;
+
+    // null if the column has no non null value
+    private String min, max;
+
+    // bounds of the equi-depth buckets (every bucket holds about the same number of values), first = min, last = max
+    private ArrayList<String> histogram;
+
+    public ColumnStatisticsModel() {
+        this.fieldName = "none";
+        this.fieldType = "none";
+        this.histogram = new ArrayList<>();
+    }
+
+    public ColumnStatisticsModel(String fieldName, String fieldType) {
+        this.fieldName = fieldName;
+        this.fieldType = fieldType;
+        this.histogram = new ArrayList<>();
+    }
+
+    // estimated fraction of the table's rows for which "value op constant" holds, nulls never match
+    public double estimateSelectivity(Operator op, Object constant, long rowCount) {
+        if (constant == null || rowCount <= 0 || min == null) {
+            return 0;
+        }
+        double nonNull = Math.max(0, rowCount - nullCount) / (double) rowCount;
+        boolean outside = compare(constant, min) < 0 || compare(constant, max) > 0;
+        double equal = outside || distinctCount <= 0 ? 0 : 1.0 / distinctCount;
+        double less = fractionBelow(constant);
+        double fraction = switch (op) {
+            case EQUALS -> equal;
+            case NOT_EQUALS -> 1 - equal;
+            case LESS_THAN -> less;
+            case LESS_THAN_OR_EQUAL_TO -> less + equal;
+            case GREATER_THAN -> 1 - less - equal;
+            case GREATER_THAN_OR_EQUAL_TO -> 1 - less;
+        };
+        return nonNull * clamp(fraction);
+    }
+
+    // estimated fraction of the rows with lower <= value <= upper
+    public double estimateRangeSelectivity(Object lower, Object upper, long rowCount) {
+        if (lower == null || upper == null) {
+            return 0;
+        }
+        return Math.max(0, estimateSelectivity(Operator.LESS_THAN_OR_EQUAL_TO, upper, rowCount)
+                - estimateSelectivity(Operator.LESS_THAN, lower, rowCount));
+    }
+
+    // fraction of the non null values below the constant, read from the histogram
+    private double fractionBelow(Object constant) {
+        ColumnCodec codec = ColumnCodec.of(fieldType);
+        if (histogram.size() < 2) {
+            return compare(constant, min) <= 0 ? 0 : (compare(constant, max) > 0 ? 1 : 0.5);
+        }
+        int buckets = histogram.size() - 1;
+        if (compare(constant, histogram.get(0)) <= 0) {
+            return 0;
+        }
+        if (compare(constant, histogram.get(buckets)) > 0) {
+            return 1;
+        }
+        int bucket = 0;
+        while (bucket < buckets - 1 && compare(constant, histogram.get(bucket + 1)) > 0) {
+            bucket++;
+        }
+        // numbers are assumed to be spread evenly inside their bucket, other values sit in its middle
+        double inside = 0.5;
+        Object low = codec.parse(histogram.get(bucket)), high = codec.parse(histogram.get(bucket + 1));
+        if (constant instanceof Number value && low instanceof Number from && high instanceof Number to) {
+            double width = to.doubleValue() - from.doubleValue();
+            inside = width <= 0 ? 0.5 : (value.doubleValue() - from.doubleValue()) / width;
+        }
+        return (bucket + clamp(inside)) / buckets;
+    }
+
+    private int compare(Object constant, String value) {
+        ColumnCodec codec = ColumnCodec.of(fieldType);
+        return codec.compare(constant, codec.parse(value));
+    }
+
+    private static double clamp(double fraction) {
+        return Math.min(1, Math.max(0, fraction));
+    }
+}
@@ -8,15 +8,25 @@ public class FieldModel {
 
     private boolean isNullable;
 
+    // char(n) values are stored as codes into a per-column dictionary
+    private boolean dictionary;
+
     public FieldModel() {
         this.fieldName = "none";
         this.type = "none";
         this.isNullable = true;
+        this.dictionary = false;
     }
 
     public FieldModel(String fieldName, String type, boolean isNullable) {
         this.fieldName = fieldName;
         this.type = type;
         this.isNullable = isNullable;
+        this.dictionary = false;
+    }
+
+    public FieldModel(String fieldName, String type, boolean isNullable, boolean dictionary) {
+        this(fieldName, type, isNullable);
+        this.dictionary = dictionary;
     }
 }
@@ -2,16 +2,22 @@ package backend.databaseModels;
 
 import lombok.Data;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 
 @Data
 public class TableModel {
+    public static final String ROW_STORAGE = "row", COLUMNAR_STORAGE = "columnar";
+    // 1: a null byte in front of every value, 2: a null bitmap after the deletion byte
+    public static final int LEGACY_RECORD_FORMAT = 1, RECORD_FORMAT = 2;
+
     private String tableName, fileName;
 
-    private ArrayList<FieldModel> fields;
+    // row or columnar
+    private String storage;
 
-    private ArrayDeque<Integer> deletedRecordLines;
+    private int recordFormat;
+
+    private ArrayList<FieldModel> fields;
 
     private PrimaryKeyModel primaryKey;
 
@@ -24,8 +30,9 @@ public class TableModel {
     public TableModel() {
         this.tableName = "none";
         this.fileName = "none";
+        this.storage = ROW_STORAGE;
+        this.recordFormat = RECORD_FORMAT;
         this.fields = new ArrayList<>();
-        this.deletedRecordLines = new ArrayDeque<>();
         this.primaryKey = new PrimaryKeyModel();
         this.foreignKeys = new ArrayList<>();
         this.uniqueFields = new ArrayList<>();
@@ -38,10 +45,18 @@ public class TableModel {
         this.tableName = tableName;
         this.fileName = fileName;
         this.fields = fields;
-        this.deletedRecordLines = new ArrayDeque<>();
         this.primaryKey = primaryKey;
         this.foreignKeys = foreignKeys;
         this.uniqueFields = uniqueFields;
         this.indexFiles = indexFiles;
+        this.storage = ROW_STORAGE;
+        this.recordFormat = RECORD_FORMAT;
+    }
+
+    public TableModel(String tableName, String fileName, ArrayList<FieldModel> fields,
+                      PrimaryKeyModel primaryKey, ArrayList<ForeignKeyModel> foreignKeys,
+                      ArrayList<String> uniqueFields, ArrayList<IndexFileModel> indexFiles, String storage) {
+        this(tableName, fileName, fields, primaryKey, foreignKeys, uniqueFields, indexFiles);
+        this.storage = storage;
     }
 }
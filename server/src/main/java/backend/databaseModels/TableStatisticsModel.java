@@ -0,0 +1,35 @@
+package backend.databaseModels;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+
+// statistics of a table collected by ANALYZE, the counts and min / max are kept up to date as rows change,
+// distinct counts and histograms only by the next ANALYZE
+@Data
+public class TableStatisticsModel {
+    // live records
+    private long rowCount;
+
+    // lines of the data file, live and deleted
+    private long slotCount, deletedSlotCount;
+
+    // rows inserted or deleted since the last ANALYZE
+    private long modifiedRowCount;
+
+    private ArrayList<ColumnStatisticsModel> columns;
+
+    public TableStatisticsModel() {
+        this.columns = new ArrayList<>();
+    }
+
+    // null if the table has no such column
+    public ColumnStatisticsModel findColumn(String fieldName) {
+        for (ColumnStatisticsModel column : columns) {
+            if (column.getFieldName().equals(fieldName)) {
+                return column;
+            }
+        }
+        return null;
+    }
+}
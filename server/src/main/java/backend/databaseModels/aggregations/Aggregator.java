@@ -1,9 +1,12 @@
 package backend.databaseModels.aggregations;
 
+import backend.recordHandling.ColumnCodec;
 import backend.recordHandling.TypeConverter;
 import lombok.Getter;
 
 import java.util.ArrayList;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 @Getter
 public class Aggregator {
@@ -23,9 +26,10 @@ public class Aggregator {
     }
 
     private static Object resolveMIN(ArrayList<Object> column, String columnType){
+        ColumnCodec codec = ColumnCodec.of(columnType);
         Object min = column.get(0);
         for(var elem : column) {
-            if(TypeConverter.compare(columnType, elem, min) < 0) {
+            if(codec.compare(elem, min) < 0) {
                 min = elem;
             }
         }
@@ -33,9 +37,10 @@ public class Aggregator {
     }
 
     private static Object resolveMAX(ArrayList<Object> column, String columnType) {
+        ColumnCodec codec = ColumnCodec.of(columnType);
         Object max = column.get(0);
         for(var elem : column) {
-            if(TypeConverter.compare(columnType, elem, max) > 0) {
+            if(codec.compare(elem, max) > 0) {
                 max = elem;
             }
         }
@@ -58,7 +63,11 @@ public class Aggregator {
             return (float) sum / column.size();
         }
     }
+    // null values are left out of every aggregate, COUNT counts the non null values
     public static Object resolve(AggregatorSymbol aggregatorSymbol, ArrayList<Object> column, String columnType){
+        if(column.contains(null)) {
+            column = column.stream().filter(Objects::nonNull).collect(Collectors.toCollection(ArrayList::new));
+        }
         if(column.size() == 0) {
             return null;
         }
@@ -8,8 +8,10 @@ import backend.databaseActions.createActions.InsertIntoAction;
 import backend.databaseActions.dropActions.DeleteFromAction;
 import backend.databaseActions.dropActions.DropDatabaseAction;
 import backend.databaseActions.dropActions.DropTableAction;
+import backend.databaseActions.miscActions.AnalyzeAction;
 import backend.databaseActions.miscActions.NothingDatabaseAction;
 import backend.databaseActions.miscActions.UseDatabaseAction;
+import backend.databaseActions.miscActions.VacuumAction;
 import backend.databaseActions.themightySelectAction.SelectAction;
 import backend.databaseModels.*;
 import backend.databaseModels.aggregations.Aggregator;
@@ -17,6 +19,7 @@ import backend.databaseModels.aggregations.AggregatorSymbol;
 import backend.databaseModels.conditions.*;
 import backend.exceptions.InvalidSQLCommand;
 import backend.exceptions.SQLParseException;
+import backend.recordHandling.VarcharHeap;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.iterators.PeekingIterator;
 
@@ -41,7 +44,7 @@ public class Parser {
         "sum", "min", "max", "avg", "count"
     };
     private static String[] ATTRIBUTE_TYPES = {
-        "int", "float", "bit", "date", "datetime", "char"
+        "int", "float", "bit", "date", "datetime", "char", "varchar"
     };
 
     /**
@@ -115,6 +118,12 @@ public class Parser {
             else if (firstWord.equals("select")) {
                 return parseSelect(tokens, databaseName, it);
             }
+            else if (firstWord.equals("vacuum")) {
+                return parseVacuum(tokens, databaseName, it);
+            }
+            else if (firstWord.equals("analyze")) {
+                return parseAnalyze(tokens, databaseName, it);
+            }
             else {
                 String secondWord = it.next();
 
@@ -474,6 +483,7 @@ public class Parser {
         String fieldName = "";
         String fieldType = "";
         boolean nullable = true;
+        boolean dictionary = false;
 
         // used for constructing TableModel
         String                      tableName           = null;
@@ -483,6 +493,7 @@ public class Parser {
         ArrayList<ForeignKeyModel>  foreignKeys         = new ArrayList<ForeignKeyModel>();
         ArrayList<String>           uniqueAttributes    = new ArrayList<String>();
         ArrayList<IndexFileModel>   indexFiles          = new ArrayList<IndexFileModel>();
+        String                      storage             = TableModel.ROW_STORAGE;
 
         // used for costructing PrimaryKeyModel
         ArrayList<String>           primaryKeyAttributes = new ArrayList<String>();
@@ -522,12 +533,13 @@ public class Parser {
                     checkName(fieldName, NAME_TYPE.COLUMN);
 
                     nullable = true;
+                    dictionary = false;
 
                     if (!isValidFieldType(fieldType)) {
                         throw(new SQLParseException("Invalid field type: \"" + fieldType + "\""));
                     }
-                    // char field type needs to have following structure: (  num  )
-                    if (fieldType.equals("char")) {
+                    // char and varchar field types need to have following structure: (  num  )
+                    if (fieldType.equals("char") || fieldType.equals("varchar")) {
                         if (!it.next().equals("(")) {
                             throw(new SQLParseException("Expected length of char attribute in form -> (len)"));
                         }
@@ -543,6 +555,10 @@ public class Parser {
                         if (!it.next().equals(")")) {
                             throw(new SQLParseException("Expected length of char attribute in parentheses -> (len)"));
                         }
+                        // a varchar value has to fit into a single heap page
+                        if (fieldType.equals("varchar") && (fieldLength <= 0 || fieldLength > VarcharHeap.MAX_LENGTH)) {
+                            throw(new SQLParseException("Invalid length of varchar: " + fieldLength + ", must be between 1 and " + VarcharHeap.MAX_LENGTH));
+                        }
 
                         fieldType = fieldType + "(" + fieldLength + ")";
                     }
@@ -568,6 +584,13 @@ public class Parser {
                         }
                         break;
                     }
+                    else if (token.equals("dictionary")) {
+                        if (!fieldType.startsWith("char(")) {
+                            throw(new SQLParseException("Only char(n) fields can be dictionary encoded: " + fieldName));
+                        }
+                        dictionary = true;
+                        break;
+                    }
                     else if (token.equals("foreign")) {
                         String tokenFirst = it.next();
                         String tokenSecond = it.next();
@@ -604,13 +627,19 @@ public class Parser {
                     //break;
 
                 case COMMA, CLOSING_BRACKET:
-                    attributes.add(new FieldModel(fieldName, fieldType, nullable));
+                    attributes.add(new FieldModel(fieldName, fieldType, nullable, dictionary));
 
                     fieldName = "";
                     fieldType = "";
                     nullable = true;
+                    dictionary = false;
 
                     if (state == CreateTableStates.CLOSING_BRACKET) {
+                        // optional table options -> WITH ( storage = row | columnar )
+                        if (it.hasNext()) {
+                            storage = parseTableStorage(it);
+                            grace = false;
+                        }
                         if (it.hasNext()) {
                             throw new SQLParseException("Expected end of input after closing bracket");
                         }
@@ -637,11 +666,33 @@ public class Parser {
         
         fileName = tableName + ".data.bin";
         primaryKey = new PrimaryKeyModel(primaryKeyAttributes);
-        TableModel tableModel = new TableModel(tableName, fileName, attributes, primaryKey, foreignKeys, uniqueAttributes, indexFiles);
+        TableModel tableModel = new TableModel(tableName, fileName, attributes, primaryKey, foreignKeys, uniqueAttributes, indexFiles, storage);
         CreateTableAction cta = new CreateTableAction(tableModel, databaseName);
         return cta;
     }
 
+    // WITH ( storage = columnar ), '=' is not a control character -> "storage=columnar" can also be a single token
+    private String parseTableStorage(PeekingIterator<String> it) throws SQLParseException {
+        if (!it.next().equals("with") || !it.next().equals("(")) {
+            throw new SQLParseException("Expected table options in form -> with (storage = row | columnar)");
+        }
+
+        StringBuilder option = new StringBuilder();
+        String token;
+        while (!(token = it.next()).equals(")")) {
+            option.append(token);
+        }
+
+        String[] keyValue = option.toString().split("=");
+        if (keyValue.length != 2 || !keyValue[0].equals("storage")) {
+            throw new SQLParseException("Unknown table option: " + option);
+        }
+        if (!keyValue[1].equals(TableModel.ROW_STORAGE) && !keyValue[1].equals(TableModel.COLUMNAR_STORAGE)) {
+            throw new SQLParseException("Unknown storage: " + keyValue[1] + ", expected row or columnar");
+        }
+        return keyValue[1];
+    }
+
     private DropDatabaseAction parseDropDatabase(List<String> tokens, PeekingIterator<String> it) throws SQLParseException {
         if (!it.hasNext()) {
             throw(new SQLParseException("Missing token for database name"));
@@ -679,6 +730,39 @@ public class Parser {
         return dta;
     }  
 
+    private VacuumAction parseVacuum(List<String> tokens, String databaseName, PeekingIterator<String> it) throws SQLParseException {
+        if (!it.hasNext()) {
+            throw(new SQLParseException("Missing token for table name"));
+        }
+
+        String tableName = it.next();
+
+        if (it.hasNext()) {
+            throw(new SQLParseException("Too many tokens after table name: `" + tableName + "`"));
+        }
+
+        checkName(tableName, NAME_TYPE.TABLE);
+
+        return new VacuumAction(databaseName, tableName);
+    }
+
+    // analyze [table_name], without a table name every table of the database is analyzed
+    private AnalyzeAction parseAnalyze(List<String> tokens, String databaseName, PeekingIterator<String> it) throws SQLParseException {
+        if (!it.hasNext()) {
+            return new AnalyzeAction(databaseName, null);
+        }
+
+        String tableName = it.next();
+
+        if (it.hasNext()) {
+            throw(new SQLParseException("Too many tokens after table name: `" + tableName + "`"));
+        }
+
+        checkName(tableName, NAME_TYPE.TABLE);
+
+        return new AnalyzeAction(databaseName, tableName);
+    }
+
     private enum InsertIntoStates {
         GET_TABLE_NAME, GET_FIELD_NAMES, GET_VALUES, GET_VALUES_STRINGS, CLOSING_BRACKET
     }
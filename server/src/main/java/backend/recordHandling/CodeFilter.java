@@ -0,0 +1,36 @@
+package backend.recordHandling;
+
+import java.nio.ByteBuffer;
+
+// equality conditions on dictionary encoded columns, the stored codes are compared before anything is decoded
+public class CodeFilter {
+    private final int[] columns, codes;
+
+    CodeFilter(int[] columns, int[] codes) {
+        this.columns = columns;
+        this.codes = codes;
+    }
+
+    int[] getColumns() {
+        return columns;
+    }
+
+    // a compared value that is not in its dictionary -> no record can match
+    boolean matchesNothing() {
+        for (int code : codes) {
+            if (code == -1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean test(RecordLayout layout, ByteBuffer buffer, int position) {
+        for (int i = 0; i < columns.length; i++) {
+            if (!layout.hasCode(buffer, position, columns[i], codes[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
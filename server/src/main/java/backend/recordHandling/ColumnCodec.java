@@ -0,0 +1,326 @@
+package backend.recordHandling;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// typed reader/writer of one field type, the type string is parsed once and the codec is shared by everyone using the type
+// values are read and written at absolute positions of a buffer, so decoding a field does not allocate (except for strings)
+@Slf4j
+public abstract class ColumnCodec {
+    private static final Pattern CHAR_PATTERN = Pattern.compile("char\\((\\d+)\\)");
+    private static final ConcurrentHashMap<String, ColumnCodec> CODECS = new ConcurrentHashMap<>();
+
+    public static ColumnCodec of(String type) {
+        ColumnCodec codec = CODECS.get(type);
+        if (codec == null) {
+            codec = CODECS.computeIfAbsent(type, ColumnCodec::create);
+        }
+        return codec;
+    }
+
+    private static ColumnCodec create(String type) {
+        switch (type) {
+            case "int" -> { return new IntCodec(); }
+            case "long" -> { return new LongCodec(); }
+            case "float" -> { return new FloatCodec(); }
+            case "double" -> { return new DoubleCodec(); }
+            case "char" -> { return new CharacterCodec(); }
+            case "bit" -> { return new BitCodec(); }
+            default -> {
+                if (TypeConverter.isVarchar(type)) {
+                    return new VarcharCodec(TypeConverter.varcharLength(type));
+                }
+                Matcher matcher = CHAR_PATTERN.matcher(type);
+                if (matcher.find()) {
+                    return new CharsCodec(Integer.parseInt(matcher.group(1)));
+                }
+                return new UnknownCodec(type);
+            }
+        }
+    }
+
+    // number of bytes of a value
+    public abstract int size();
+
+    public abstract Object read(ByteBuffer buffer, int position);
+
+    public abstract void write(ByteBuffer buffer, int position, Object value);
+
+    // value of its string form (strings are padded / cut to the type)
+    public abstract Object parse(String value);
+
+    // both values are of the type, null values are handled by the caller
+    public abstract int compare(Object o1, Object o2);
+
+    // the value against the one stored at the position, the numeric types don't decode (box) the stored value
+    public int compare(Object value, ByteBuffer buffer, int position) {
+        return compare(value, read(buffer, position));
+    }
+
+    public String readString(ByteBuffer buffer, int position) {
+        return String.valueOf(read(buffer, position));
+    }
+
+    public byte[] toBytes(Object value) {
+        ByteBuffer buffer = ByteBuffer.allocate(size());
+        write(buffer, 0, value);
+        return buffer.array();
+    }
+
+    public abstract Object smallestValue();
+
+    // the codec of the type whose bytes compare (unsigned, byte by byte) like its values, it reads what it writes
+    // types that are already stored that way return themselves
+    public ColumnCodec ordered() {
+        return this;
+    }
+
+    private static class IntCodec extends ColumnCodec {
+        public int size() { return Integer.BYTES; }
+        public Object read(ByteBuffer buffer, int position) { return buffer.getInt(position); }
+        public void write(ByteBuffer buffer, int position, Object value) { buffer.putInt(position, (Integer) value); }
+        public Object parse(String value) { return Integer.parseInt(value); }
+        public int compare(Object o1, Object o2) { return Integer.compare((int) o1, (int) o2); }
+        public int compare(Object value, ByteBuffer buffer, int position) { return Integer.compare((int) value, buffer.getInt(position)); }
+        public Object smallestValue() { return Integer.MIN_VALUE; }
+        public ColumnCodec ordered() { return new OrderedIntCodec(); }
+    }
+
+    // big endian with the sign bit flipped -> the negative values come first
+    private static final class OrderedIntCodec extends IntCodec {
+        public Object read(ByteBuffer buffer, int position) { return buffer.getInt(position) ^ Integer.MIN_VALUE; }
+        public void write(ByteBuffer buffer, int position, Object value) { buffer.putInt(position, (Integer) value ^ Integer.MIN_VALUE); }
+        public int compare(Object value, ByteBuffer buffer, int position) { return Integer.compare((int) value, buffer.getInt(position) ^ Integer.MIN_VALUE); }
+        public ColumnCodec ordered() { return this; }
+    }
+
+    private static class LongCodec extends ColumnCodec {
+        public int size() { return Long.BYTES; }
+        public Object read(ByteBuffer buffer, int position) { return buffer.getLong(position); }
+        public void write(ByteBuffer buffer, int position, Object value) { buffer.putLong(position, (Long) value); }
+        public Object parse(String value) { return Long.parseLong(value); }
+        public int compare(Object o1, Object o2) { return Long.compare((long) o1, (long) o2); }
+        public int compare(Object value, ByteBuffer buffer, int position) { return Long.compare((long) value, buffer.getLong(position)); }
+        public Object smallestValue() { return Long.MIN_VALUE; }
+        public ColumnCodec ordered() { return new OrderedLongCodec(); }
+    }
+
+    private static final class OrderedLongCodec extends LongCodec {
+        public Object read(ByteBuffer buffer, int position) { return buffer.getLong(position) ^ Long.MIN_VALUE; }
+        public void write(ByteBuffer buffer, int position, Object value) { buffer.putLong(position, (Long) value ^ Long.MIN_VALUE); }
+        public int compare(Object value, ByteBuffer buffer, int position) { return Long.compare((long) value, buffer.getLong(position) ^ Long.MIN_VALUE); }
+        public ColumnCodec ordered() { return this; }
+    }
+
+    private static class FloatCodec extends ColumnCodec {
+        public int size() { return Float.BYTES; }
+        public Object read(ByteBuffer buffer, int position) { return buffer.getFloat(position); }
+        public void write(ByteBuffer buffer, int position, Object value) { buffer.putFloat(position, (Float) value); }
+        public Object parse(String value) { return Float.parseFloat(value); }
+        public int compare(Object o1, Object o2) { return Float.compare((float) o1, (float) o2); }
+        public int compare(Object value, ByteBuffer buffer, int position) { return Float.compare((float) value, buffer.getFloat(position)); }
+        public Object smallestValue() { return -Float.MAX_VALUE; }
+        public ColumnCodec ordered() { return new OrderedFloatCodec(); }
+    }
+
+    // the bits of a negative value are all flipped, of the others only the sign bit -> the order of Float.compare
+    private static final class OrderedFloatCodec extends FloatCodec {
+        public Object read(ByteBuffer buffer, int position) { return decode(buffer.getInt(position)); }
+        public void write(ByteBuffer buffer, int position, Object value) { buffer.putInt(position, encode((Float) value)); }
+        public int compare(Object value, ByteBuffer buffer, int position) { return Float.compare((float) value, decode(buffer.getInt(position))); }
+        public ColumnCodec ordered() { return this; }
+
+        private static int encode(float value) {
+            int bits = Float.floatToIntBits(value);
+            return bits < 0 ? ~bits : bits | Integer.MIN_VALUE;
+        }
+
+        private static float decode(int bits) {
+            return Float.intBitsToFloat(bits < 0 ? bits & Integer.MAX_VALUE : ~bits);
+        }
+    }
+
+    private static class DoubleCodec extends ColumnCodec {
+        public int size() { return Double.BYTES; }
+        public Object read(ByteBuffer buffer, int position) { return buffer.getDouble(position); }
+        public void write(ByteBuffer buffer, int position, Object value) { buffer.putDouble(position, (Double) value); }
+        public Object parse(String value) { return Double.parseDouble(value); }
+        public int compare(Object o1, Object o2) { return Double.compare((double) o1, (double) o2); }
+        public int compare(Object value, ByteBuffer buffer, int position) { return Double.compare((double) value, buffer.getDouble(position)); }
+        public Object smallestValue() { return -Double.MAX_VALUE; }
+        public ColumnCodec ordered() { return new OrderedDoubleCodec(); }
+    }
+
+    private static final class OrderedDoubleCodec extends DoubleCodec {
+        public Object read(ByteBuffer buffer, int position) { return decode(buffer.getLong(position)); }
+        public void write(ByteBuffer buffer, int position, Object value) { buffer.putLong(position, encode((Double) value)); }
+        public int compare(Object value, ByteBuffer buffer, int position) { return Double.compare((double) value, decode(buffer.getLong(position))); }
+        public ColumnCodec ordered() { return this; }
+
+        private static long encode(double value) {
+            long bits = Double.doubleToLongBits(value);
+            return bits < 0 ? ~bits : bits | Long.MIN_VALUE;
+        }
+
+        private static double decode(long bits) {
+            return Double.longBitsToDouble(bits < 0 ? bits & Long.MAX_VALUE : ~bits);
+        }
+    }
+
+    private static final class CharacterCodec extends ColumnCodec {
+        public int size() { return Character.BYTES; }
+        public Object read(ByteBuffer buffer, int position) { return buffer.getChar(position); }
+        public void write(ByteBuffer buffer, int position, Object value) { buffer.putChar(position, (Character) value); }
+        public Object parse(String value) { return value.charAt(0); }
+        public int compare(Object o1, Object o2) { return Character.compare((char) o1, (char) o2); }
+        public int compare(Object value, ByteBuffer buffer, int position) { return Character.compare((char) value, buffer.getChar(position)); }
+        public Object smallestValue() { return Character.MIN_VALUE; }
+    }
+
+    private static final class BitCodec extends ColumnCodec {
+        public int size() { return 1; }
+        public Object read(ByteBuffer buffer, int position) { return buffer.get(position) == 0 ? (byte) 0 : (byte) 1; }
+        public void write(ByteBuffer buffer, int position, Object value) { buffer.put(position, (byte) value); }
+        public Object parse(String value) { return value.equals("1") ? (byte) 1 : (byte) 0; }
+        public int compare(Object o1, Object o2) { return (byte) o1 - (byte) o2; }
+        public Object smallestValue() { return (byte) 0; }
+    }
+
+    // char(n): n space padded ascii bytes
+    private static final class CharsCodec extends ColumnCodec {
+        private final int length;
+
+        CharsCodec(int length) {
+            this.length = length;
+        }
+
+        public int size() { return length; }
+
+        public Object read(ByteBuffer buffer, int position) {
+            return readAscii(buffer, position, length);
+        }
+
+        public void write(ByteBuffer buffer, int position, Object value) {
+            byte[] bytes = pad((String) value).getBytes(StandardCharsets.US_ASCII);
+            buffer.put(position, bytes, 0, Integer.min(bytes.length, length));
+            // a cut value is one byte short, the buffer may be reused (a node image)
+            for (int i = position + bytes.length; i < position + length; i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+
+        public Object parse(String value) { return pad(value); }
+
+        public int compare(Object o1, Object o2) { return pad((String) o1).compareTo(pad((String) o2)); }
+
+        public Object smallestValue() { return "\0".repeat(length); }
+
+        // same as RecordStandardizer.formatString, without parsing the type
+        private String pad(String value) {
+            if (value.length() == length) {
+                return value;
+            }
+            if (length < value.length()) {
+                return value.substring(0, length - 1);
+            }
+            return value + " ".repeat(length - value.length());
+        }
+    }
+
+    // varchar(n) as a key: [short length][value padded to n]
+    private static class VarcharCodec extends ColumnCodec {
+        final int length;
+
+        VarcharCodec(int length) {
+            this.length = length;
+        }
+
+        public int size() { return Short.BYTES + length; }
+
+        public Object read(ByteBuffer buffer, int position) {
+            return readAscii(buffer, position + Short.BYTES, Short.toUnsignedInt(buffer.getShort(position)));
+        }
+
+        public void write(ByteBuffer buffer, int position, Object value) {
+            byte[] bytes = cut((String) value).getBytes(StandardCharsets.US_ASCII);
+            buffer.putShort(position, (short) bytes.length);
+            buffer.put(position + Short.BYTES, bytes);
+            // the rest of the padding is zero, the buffer may be reused
+            for (int i = position + Short.BYTES + bytes.length; i < position + size(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+
+        public Object parse(String value) { return cut(value); }
+
+        public int compare(Object o1, Object o2) { return cut((String) o1).compareTo(cut((String) o2)); }
+
+        public Object smallestValue() { return ""; }
+
+        public ColumnCodec ordered() { return new OrderedVarcharCodec(length); }
+
+        String cut(String value) {
+            return value.length() > length ? value.substring(0, length) : value;
+        }
+    }
+
+    // [value padded with zeros to n][short length] -> a prefix comes before the longer values
+    private static final class OrderedVarcharCodec extends VarcharCodec {
+        OrderedVarcharCodec(int length) {
+            super(length);
+        }
+
+        public Object read(ByteBuffer buffer, int position) {
+            return readAscii(buffer, position, Short.toUnsignedInt(buffer.getShort(position + length)));
+        }
+
+        public void write(ByteBuffer buffer, int position, Object value) {
+            byte[] bytes = cut((String) value).getBytes(StandardCharsets.US_ASCII);
+            buffer.put(position, bytes);
+            for (int i = position + bytes.length; i < position + length; i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.putShort(position + length, (short) bytes.length);
+        }
+
+        public ColumnCodec ordered() { return this; }
+    }
+
+    // fields of types this version does not know take no space
+    private static final class UnknownCodec extends ColumnCodec {
+        private final String type;
+
+        UnknownCodec(String type) {
+            this.type = type;
+        }
+
+        public int size() { return 0; }
+        public Object read(ByteBuffer buffer, int position) { return ""; }
+        public void write(ByteBuffer buffer, int position, Object value) {}
+        public Object parse(String value) { return ""; }
+
+        public int compare(Object o1, Object o2) {
+            log.error("Invalid type given to comparator: " + type);
+            return 0;
+        }
+
+        public Object smallestValue() {
+            log.error("Invalid type given to comparator: " + type);
+            return 0;
+        }
+    }
+
+    private static String readAscii(ByteBuffer buffer, int position, int length) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + position, length, StandardCharsets.US_ASCII);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
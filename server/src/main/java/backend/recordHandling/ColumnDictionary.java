@@ -0,0 +1,97 @@
+package backend.recordHandling;
+
+import backend.recovery.WriteAheadLog;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// distinct values of a dictionary encoded char(n) column, the records only hold the code of their value
+//      file: the (space padded) values one after the other, n bytes each, the code of a value is its position
+// values are only ever appended, so another handler's codes stay valid, unknown codes are picked up by reloading
+// the workers of a parallel scan decode through the same dictionary -> every access holds its lock (reload moves the
+// file position and grows the list / map)
+public class ColumnDictionary {
+    private final String fileLocation;
+    private final RandomAccessFile io;
+    private final int width;
+    private final ArrayList<String> values;
+    private final HashMap<String, Integer> codes;
+
+    public ColumnDictionary(String fileLocation, int width) throws IOException {
+        this.fileLocation = fileLocation;
+        this.io = new RandomAccessFile(fileLocation, "rw");
+        this.width = width;
+        this.values = new ArrayList<>();
+        this.codes = new HashMap<>();
+        reload();
+    }
+
+    public synchronized String decode(int code) {
+        if (code >= values.size()) {
+            try {
+                reload();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return values.get(code);
+    }
+
+    // code of the (already padded) value, -1 if it is not in the dictionary
+    public synchronized int lookup(String value) throws IOException {
+        Integer code = codes.get(value);
+        if (code == null) {
+            reload();
+            code = codes.get(value);
+        }
+        return code == null ? -1 : code;
+    }
+
+    // code of the (already padded) value, new values are appended to the dictionary
+    public synchronized int encode(String value) throws IOException {
+        int code = lookup(value);
+        if (code != -1) {
+            return code;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        long offset = (long) values.size() * width;
+        // an append that reaches the file ahead of its log record is harmless, no record holds its code then
+        WriteAheadLog.logWrite(fileLocation, offset, new byte[0], bytes);
+        io.seek(offset);
+        io.write(bytes);
+
+        code = values.size();
+        values.add(value);
+        codes.put(value, code);
+        return code;
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+
+    // reads the values appended since the last load
+    private synchronized void reload() throws IOException {
+        long count = io.length() / width;
+        if (count <= values.size()) {
+            return;
+        }
+
+        byte[] bytes = new byte[(int) ((count - values.size()) * width)];
+        io.seek((long) values.size() * width);
+        io.readFully(bytes);
+        for (int i = 0; i < bytes.length; i += width) {
+            String value = new String(bytes, i, width, StandardCharsets.US_ASCII);
+            codes.put(value, values.size());
+            values.add(value);
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        io.close();
+    }
+}
@@ -0,0 +1,135 @@
+package backend.recordHandling;
+
+import java.io.IOException;
+import java.util.List;
+
+// every column in a file of its own, a scan over a few columns only reads the pages of those columns
+//      data file: [deletion byte][null bitmap] per line, the same header as a row record
+//      column file: the value of the column per line
+class ColumnarStorage implements RecordStorage {
+    // the cache capacity is shared between the files, but every file keeps a few pages
+    private static final int MIN_PAGES_PER_FILE = 8;
+
+    private final RecordLayout layout;
+    private final long recordSize;
+    private final SharedFile[] files;
+    // index 0 is the record headers, column i is at i + 1
+    private final PageCache[] pageCaches;
+    private final int[] widths;
+
+    ColumnarStorage(String dataFileLocation, List<String> columnFileLocations, RecordLayout layout, int pageSize, int pageCacheCapacity) throws IOException {
+        this.layout = layout;
+        this.recordSize = layout.getRecordSize();
+
+        int fileCount = columnFileLocations.size() + 1;
+        int capacity = Integer.max(MIN_PAGES_PER_FILE, pageCacheCapacity / fileCount);
+        files = new SharedFile[fileCount];
+        pageCaches = new PageCache[fileCount];
+        widths = new int[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            String fileLocation = i == 0 ? dataFileLocation : columnFileLocations.get(i - 1);
+            files[i] = SharedFile.open(fileLocation);
+            pageCaches[i] = new PageCache(files[i], fileLocation, pageSize, capacity);
+            widths[i] = i == 0 ? layout.getHeaderSize() : layout.getSize(i - 1);
+        }
+    }
+
+    @Override
+    public long getRecordCount() {
+        return pageCaches[0].length() / widths[0];
+    }
+
+    @Override
+    public boolean isLive(int line) throws IOException {
+        long offset = (long) line * widths[0];
+        return offset < pageCaches[0].length() && pageCaches[0].readByte(offset) != 0;
+    }
+
+    @Override
+    public void read(int line, int[] columns, byte[] image) throws IOException {
+        pageCaches[0].read((long) line * widths[0], image, 0, widths[0]);
+        for (int column : columns) {
+            pageCaches[column + 1].read((long) line * widths[column + 1], image, layout.getOffset(column), widths[column + 1]);
+        }
+    }
+
+    // every file's bytes of the lines are read at once and spread into the images
+    @Override
+    public void readChunk(int firstLine, int count, int[] columns, byte[] images) throws IOException {
+        byte[] headers = new byte[count * widths[0]];
+        files[0].read((long) firstLine * widths[0], headers, 0, headers.length);
+        for (int j = 0; j < count; j++) {
+            System.arraycopy(headers, j * widths[0], images, (int) (j * recordSize), widths[0]);
+        }
+        for (int column : columns) {
+            int width = widths[column + 1], offset = layout.getOffset(column);
+            byte[] values = new byte[count * width];
+            files[column + 1].read((long) firstLine * width, values, 0, values.length);
+            for (int j = 0; j < count; j++) {
+                System.arraycopy(values, j * width, images, (int) (j * recordSize) + offset, width);
+            }
+        }
+    }
+
+    @Override
+    public void write(int firstLine, byte[] images) throws IOException {
+        int count = (int) (images.length / recordSize);
+        // the values go first, a line only becomes live with its header
+        for (int i = 1; i < pageCaches.length; i++) {
+            int offset = layout.getOffset(i - 1);
+            byte[] values = new byte[count * widths[i]];
+            for (int j = 0; j < count; j++) {
+                System.arraycopy(images, (int) (j * recordSize) + offset, values, j * widths[i], widths[i]);
+            }
+            pageCaches[i].write((long) firstLine * widths[i], values);
+        }
+
+        byte[] headers = new byte[count * widths[0]];
+        for (int j = 0; j < count; j++) {
+            System.arraycopy(images, (int) (j * recordSize), headers, j * widths[0], widths[0]);
+        }
+        pageCaches[0].write((long) firstLine * widths[0], headers);
+    }
+
+    @Override
+    public void setDeleted(int line) throws IOException {
+        pageCaches[0].writeByte((long) line * widths[0], (byte) 0);
+    }
+
+    @Override
+    public void truncate(long recordCount) throws IOException {
+        for (int i = 0; i < pageCaches.length; i++) {
+            pageCaches[i].truncate(recordCount * widths[i]);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        for (PageCache pageCache : pageCaches) {
+            pageCache.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (PageCache pageCache : pageCaches) {
+            pageCache.flush();
+        }
+    }
+
+    @Override
+    public String toString() {
+        long hits = 0, misses = 0, evictions = 0;
+        for (PageCache pageCache : pageCaches) {
+            hits += pageCache.getHits();
+            misses += pageCache.getMisses();
+            evictions += pageCache.getEvictions();
+        }
+        return "ColumnarStorage{" +
+                "files=" + files.length +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+}
@@ -0,0 +1,205 @@
+package backend.recordHandling;
+
+import backend.service.CatalogManager;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+// per table bitmap of the free (deleted) record lines, stored next to the data file
+//      bit (line % 8) of byte (line / 8) is set <=> the line is free
+// changes are kept in memory and only the modified byte range is written back on flush/close
+// a summary in memory has a bit per word of 64 lines (8 bytes of the bitmap), set <=> the word has a free line -> an
+// allocation skips 4096 used lines per summary long instead of scanning the bitmap byte by byte
+// the map of a table belongs to its RecordHandler, the inserters / deleters get it from there (getFreeSpaceMap)
+@Slf4j
+public class FreeSpaceMap {
+    private final RandomAccessFile io;
+    private byte[] bitmap;
+    private long[] summary = new long[0];
+    @Getter
+    private int freeCount;
+
+    // every line before it is known to be in use
+    private int lowestFree;
+    private int dirtyFrom, dirtyTo;
+
+    public FreeSpaceMap(String databaseName, String tableName, RecordHandler recordHandler) throws IOException {
+        String fileLocation = CatalogManager.getTableFreeSpaceMapPath(databaseName, tableName);
+        boolean exists = new File(fileLocation).exists();
+
+        io = new RandomAccessFile(fileLocation, "rw");
+        bitmap = new byte[(int) io.length()];
+        io.readFully(bitmap);
+        resetDirty();
+        for (int index = 0; index < bitmap.length; index++) {
+            freeCount += Integer.bitCount(bitmap[index] & 0xFF);
+            updateSummary(index);
+        }
+        lowestFree = 0;
+
+        if (!exists) {
+            // tables created before the bitmap existed kept their deleted lines in the catalog
+            rebuild(recordHandler);
+            CatalogManager.dropLegacyDeletedRecordLines(databaseName, tableName);
+            flush();
+        }
+    }
+
+    // marks every line with a cleared deletion byte as free
+    private void rebuild(RecordHandler recordHandler) throws IOException {
+        long recordCount = recordHandler.getRecordCount();
+        for (int line = 0; line < recordCount; line++) {
+            if (!recordHandler.isLive(line)) {
+                set(line, true);
+            }
+        }
+        log.info("Free space map rebuilt, " + recordCount + " lines checked");
+    }
+
+    public boolean isFree(int line) {
+        int index = line >>> 3;
+        return index < bitmap.length && (bitmap[index] & (1 << (line & 7))) != 0;
+    }
+
+    // returns a free line and marks it as used, -1 if there is none (the record goes to the end of the file)
+    public int allocate() {
+        if (freeCount == 0) {
+            return -1;
+        }
+        int word = nextFreeWord(lowestFree >>> 6);
+        if (word == -1) {
+            return -1;
+        }
+        // the word has a free line, the lines of the word before lowestFree are in use
+        for (int index = word << 3; index < bitmap.length; index++) {
+            if (bitmap[index] != 0) {
+                int line = (index << 3) + Integer.numberOfTrailingZeros(bitmap[index] & 0xFF);
+                set(line, false);
+                lowestFree = line + 1;
+                return line;
+            }
+        }
+        return -1;
+    }
+
+    // the first word from the given one with a free line, -1 if there is none
+    private int nextFreeWord(int fromWord) {
+        int i = fromWord >>> 6;
+        if (i >= summary.length) {
+            return -1;
+        }
+        long bits = summary[i] & (-1L << (fromWord & 63));
+        while (bits == 0) {
+            if (++i == summary.length) {
+                return -1;
+            }
+            bits = summary[i];
+        }
+        return (i << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    // at most n free lines, in increasing order
+    public List<Integer> allocate(int n) {
+        ArrayList<Integer> lines = new ArrayList<>();
+        while (lines.size() < n) {
+            int line = allocate();
+            if (line == -1) {
+                break;
+            }
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    public void release(int line) {
+        if (!isFree(line)) {
+            set(line, true);
+        }
+        lowestFree = Integer.min(lowestFree, line);
+    }
+
+    public void release(List<Integer> lines) {
+        for (int line : lines) {
+            release(line);
+        }
+    }
+
+    // forgets every line from the given one, used when the data file is truncated
+    public void truncate(int recordCount) throws IOException {
+        for (int line = recordCount; line < ((long) bitmap.length << 3); line++) {
+            if (isFree(line)) {
+                set(line, false);
+            }
+        }
+        flush();
+        int length = (recordCount + 7) >>> 3;
+        if (length < bitmap.length) {
+            byte[] shorter = new byte[length];
+            System.arraycopy(bitmap, 0, shorter, 0, length);
+            bitmap = shorter;
+            io.setLength(length);
+        }
+        lowestFree = Integer.min(lowestFree, recordCount);
+    }
+
+    private void set(int line, boolean free) {
+        int index = line >>> 3;
+        if (index >= bitmap.length) {
+            byte[] larger = new byte[Integer.max(index + 1, bitmap.length * 2)];
+            System.arraycopy(bitmap, 0, larger, 0, bitmap.length);
+            bitmap = larger;
+        }
+        if (free) {
+            bitmap[index] |= (byte) (1 << (line & 7));
+            freeCount++;
+        } else {
+            bitmap[index] &= (byte) ~(1 << (line & 7));
+            freeCount--;
+        }
+        updateSummary(index);
+        dirtyFrom = Integer.min(dirtyFrom, index);
+        dirtyTo = Integer.max(dirtyTo, index + 1);
+    }
+
+    // the summary bit of the word holding the byte
+    private void updateSummary(int index) {
+        int word = index >>> 3;
+        if ((word >>> 6) >= summary.length) {
+            long[] larger = new long[Integer.max((word >>> 6) + 1, summary.length * 2)];
+            System.arraycopy(summary, 0, larger, 0, summary.length);
+            summary = larger;
+        }
+        boolean free = bitmap[index] != 0;
+        for (int i = word << 3; !free && i < Integer.min((word + 1) << 3, bitmap.length); i++) {
+            free = bitmap[i] != 0;
+        }
+        if (free) {
+            summary[word >>> 6] |= 1L << (word & 63);
+        } else {
+            summary[word >>> 6] &= ~(1L << (word & 63));
+        }
+    }
+
+    private void resetDirty() {
+        dirtyFrom = Integer.MAX_VALUE;
+        dirtyTo = 0;
+    }
+
+    public void flush() throws IOException {
+        if (dirtyFrom < dirtyTo) {
+            io.seek(dirtyFrom);
+            io.write(bitmap, dirtyFrom, dirtyTo - dirtyFrom);
+        }
+        resetDirty();
+    }
+
+    public void close() throws IOException {
+        flush();
+        io.close();
+    }
+}
@@ -0,0 +1,201 @@
+package backend.recordHandling;
+
+import backend.Indexing.NonUniqueIndexManager;
+import backend.Indexing.UniqueIndexManager;
+import backend.config.Config;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// record handlers and index managers kept open between statements, one per table / index
+//      RecordHandler handler = HandlerRegistry.recordHandler(databaseName, tableName);
+//      try { ... } finally { HandlerRegistry.release(handler); }
+// the borrowers of a table / index share one handler (and see each other's changes), a handler is flushed when its
+// last borrower releases it
+// handlers nobody borrows are closed after -Ddb.handlerIdleSeconds or when more than -Ddb.openHandlerCapacity are open
+// (least recently used first), checked at the end of every statement and by a timer every -Ddb.handlerIdleSeconds (a
+// server that gets no statements closes them as well), drop table / database close the handlers of the table / database, create index the
+// managers of the index, a failed statement every handler (its writes are undone in the files, see WriteAheadLog.rollback)
+@Slf4j
+public class HandlerRegistry {
+    // access ordered -> iteration starts at the least recently used handler
+    private static final LinkedHashMap<String, Entry> OPEN_HANDLERS = new LinkedHashMap<>(16, 0.75f, true);
+    // started by the first borrow
+    private static ScheduledExecutorService idleSweeper;
+
+    private static class Entry {
+        private final String databaseName, tableName;
+        private final SharedHandler handler;
+        private int references;
+        private long releasedAt;
+
+        private Entry(String databaseName, String tableName, SharedHandler handler) {
+            this.databaseName = databaseName;
+            this.tableName = tableName;
+            this.handler = handler;
+        }
+    }
+
+    private interface Opener {
+        SharedHandler open() throws IOException;
+    }
+
+    public static RecordHandler recordHandler(String databaseName, String tableName) throws IOException {
+        return (RecordHandler) borrow(databaseName, tableName, "records", () -> new RecordHandler(databaseName, tableName));
+    }
+
+    // like the constructors of the managers, a file that can't be opened is a RuntimeException
+    public static UniqueIndexManager uniqueIndexManager(String databaseName, String tableName, String indexName) {
+        return (UniqueIndexManager) borrowIndexManager(databaseName, tableName, "unique:" + indexName, () -> new UniqueIndexManager(databaseName, tableName, indexName));
+    }
+
+    public static NonUniqueIndexManager nonUniqueIndexManager(String databaseName, String tableName, String indexName) {
+        return (NonUniqueIndexManager) borrowIndexManager(databaseName, tableName, "nonUnique:" + indexName, () -> new NonUniqueIndexManager(databaseName, tableName, indexName));
+    }
+
+    private static SharedHandler borrowIndexManager(String databaseName, String tableName, String name, Opener opener) {
+        try {
+            return borrow(databaseName, tableName, name, opener);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static synchronized SharedHandler borrow(String databaseName, String tableName, String name, Opener opener) throws IOException {
+        if (idleSweeper == null) {
+            startIdleSweeper();
+        }
+        String key = databaseName + "/" + tableName + "/" + name;
+        Entry entry = OPEN_HANDLERS.get(key);
+        if (entry == null) {
+            entry = new Entry(databaseName, tableName, opener.open());
+            OPEN_HANDLERS.put(key, entry);
+        }
+        entry.references++;
+        return entry.handler;
+    }
+
+    // the handler stays open for the next borrower, handlers that are not in the registry (anymore) are left alone
+    public static synchronized void release(SharedHandler handler) throws IOException {
+        for (Entry entry : OPEN_HANDLERS.values()) {
+            if (entry.handler == handler) {
+                if (entry.references > 0 && --entry.references == 0) {
+                    entry.handler.flush();
+                    entry.releasedAt = System.currentTimeMillis();
+                }
+                return;
+            }
+        }
+    }
+
+    // the idle handlers are closed, the borrowers release their handlers in finally blocks -> a handler that is still
+    // borrowed here is a missed release, it is flushed and handed back anyway
+    public static synchronized void endStatement() throws IOException {
+        long now = System.currentTimeMillis();
+        for (var entry : OPEN_HANDLERS.entrySet()) {
+            Entry open = entry.getValue();
+            if (open.references > 0) {
+                log.error("Handler " + entry.getKey() + " was not released (" + open.references + " borrower(s)), released at the end of the statement");
+                open.handler.flush();
+                open.references = 0;
+                open.releasedAt = now;
+            }
+        }
+
+        evictIdle(now);
+    }
+
+    // borrowed handlers are left alone (the timer runs during statements too)
+    private static synchronized void evictIdle(long now) throws IOException {
+        long idleMillis = Config.getHandlerIdleSeconds() * 1000L;
+        int openCount = OPEN_HANDLERS.size();
+        ArrayList<SharedHandler> evicted = new ArrayList<>();
+        Iterator<Entry> it = OPEN_HANDLERS.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.references == 0 && (openCount > Config.getOpenHandlerCapacity() || now - entry.releasedAt > idleMillis)) {
+                evicted.add(entry.handler);
+                it.remove();
+                openCount--;
+            }
+        }
+        closeHandlers(evicted);
+    }
+
+    private static void startIdleSweeper() {
+        long periodSeconds = Long.max(1, Config.getHandlerIdleSeconds());
+        idleSweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "handler-idle-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        idleSweeper.scheduleAtFixedRate(HandlerRegistry::sweepIdle, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    private static void sweepIdle() {
+        try {
+            evictIdle(System.currentTimeMillis());
+        } catch (IOException e) {
+            log.error("Closing the idle handlers failed: " + e.getMessage());
+        }
+    }
+
+    // tableName == null -> every table of the database
+    public static synchronized void close(String databaseName, String tableName) throws IOException {
+        ArrayList<SharedHandler> closed = new ArrayList<>();
+        Iterator<Entry> it = OPEN_HANDLERS.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.databaseName.equals(databaseName) && (tableName == null || entry.tableName.equals(tableName))) {
+                closed.add(entry.handler);
+                it.remove();
+            }
+        }
+        closeHandlers(closed);
+    }
+
+    // the managers of one index, its file is about to be rebuilt (CREATE INDEX) -> their pinned root, node cache and
+    // filter would be stale
+    public static synchronized void closeIndex(String databaseName, String tableName, String indexName) throws IOException {
+        ArrayList<SharedHandler> closed = new ArrayList<>();
+        for (String name : new String[]{"unique:" + indexName, "nonUnique:" + indexName}) {
+            Entry entry = OPEN_HANDLERS.remove(databaseName + "/" + tableName + "/" + name);
+            if (entry != null) {
+                closed.add(entry.handler);
+            }
+        }
+        closeHandlers(closed);
+    }
+
+    // borrowed or not, the statement is over (rollback)
+    public static synchronized void closeAll() throws IOException {
+        ArrayList<SharedHandler> closed = new ArrayList<>();
+        for (Entry entry : OPEN_HANDLERS.values()) {
+            closed.add(entry.handler);
+        }
+        OPEN_HANDLERS.clear();
+        closeHandlers(closed);
+    }
+
+    // every handler is closed, the first failure is thrown at the end
+    private static void closeHandlers(ArrayList<SharedHandler> handlers) throws IOException {
+        IOException failure = null;
+        for (SharedHandler handler : handlers) {
+            try {
+                handler.close();
+            } catch (IOException e) {
+                log.error("Could not close " + handler + ": " + e.getMessage());
+                failure = failure == null ? e : failure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
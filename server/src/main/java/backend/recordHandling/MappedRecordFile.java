@@ -0,0 +1,88 @@
+package backend.recordHandling;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+// read only memory mapping of a table data file, records are found at line * recordSize
+@Slf4j
+public class MappedRecordFile {
+    // a single mapping can't be larger than 2GB -> the file is mapped in segments of whole records
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private final FileChannel channel;
+    private final long recordSize;
+    private final long recordsPerSegment;
+    private final ArrayList<MappedByteBuffer> segments;
+    private long mappedSize;
+
+    public MappedRecordFile(String fileLocation, long recordSize) throws IOException {
+        this.channel = FileChannel.open(Paths.get(fileLocation), StandardOpenOption.READ);
+        this.recordSize = recordSize;
+        this.recordsPerSegment = Long.max(1, MAX_SEGMENT_BYTES / recordSize);
+        this.segments = new ArrayList<>();
+        this.mappedSize = 0;
+        remap();
+    }
+
+    public long getRecordCount() throws IOException {
+        if (channel.size() != mappedSize) {
+            remap();
+        }
+        return mappedSize / recordSize;
+    }
+
+    // buffer holding the given line, the record starts at getPosition(line)
+    public MappedByteBuffer getBuffer(int line) throws IOException {
+        if ((line + 1) * recordSize > mappedSize) {
+            // the file grew since it was mapped
+            remap();
+            if ((line + 1) * recordSize > mappedSize) {
+                return null;
+            }
+        }
+        return segments.get((int) (line / recordsPerSegment));
+    }
+
+    public int getPosition(int line) {
+        return (int) ((line % recordsPerSegment) * recordSize);
+    }
+
+    private void remap() throws IOException {
+        long size = channel.size();
+        long segmentBytes = recordsPerSegment * recordSize;
+
+        // the file shrank (vacuum) -> map everything again
+        if (size < mappedSize) {
+            segments.clear();
+        }
+        // the last segment may be partial, it is mapped again together with the new records
+        else if (!segments.isEmpty() && mappedSize % segmentBytes != 0) {
+            segments.remove(segments.size() - 1);
+        }
+
+        long start = segments.size() * segmentBytes;
+        while (start < size) {
+            long length = Long.min(segmentBytes, size - start);
+            length -= length % recordSize;
+            if (length == 0) {
+                break;
+            }
+            segments.add(channel.map(FileChannel.MapMode.READ_ONLY, start, length));
+            start += length;
+        }
+        mappedSize = size - size % recordSize;
+        log.info("Mapped " + mappedSize + " bytes in " + segments.size() + " segment(s)");
+    }
+
+    public void close() throws IOException {
+        // the mappings stay valid until they are garbage collected
+        segments.clear();
+        channel.close();
+    }
+}
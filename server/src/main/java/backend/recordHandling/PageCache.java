@@ -0,0 +1,225 @@
+package backend.recordHandling;
+
+import backend.recovery.WriteAheadLog;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// fixed size page cache over a file, pages are evicted in LRU order and dirty pages are written back on eviction/flush
+// a page remembers the LSN of its last logged write, the write-ahead log is forced up to it before the page is written back
+// the cache belongs to one handler, the file underneath is shared (positional reads / writes, see SharedFile)
+// the handler is shared by every statement / scan worker reading the table (HandlerRegistry) -> even a read changes the
+// LRU order and the counters, every access holds the cache's lock
+@Slf4j
+public class PageCache {
+    private static class Page {
+        private final byte[] data;
+        private boolean dirty;
+        private long lsn;
+
+        private Page(int pageSize) {
+            data = new byte[pageSize];
+            dirty = false;
+        }
+    }
+
+    private final SharedFile file;
+    // writes are logged to the write-ahead log under this name, null -> not logged
+    private final String fileLocation;
+    @Getter
+    private final int pageSize, capacity;
+    private final LinkedHashMap<Long, Page> pages;
+
+    // logical length of the file, can be ahead of the physical length while pages are not written back
+    private long length;
+
+    private long hits, misses, evictions;
+
+    public PageCache(SharedFile file, int pageSize, int capacity) throws IOException {
+        this(file, null, pageSize, capacity);
+    }
+
+    public PageCache(SharedFile file, String fileLocation, int pageSize, int capacity) throws IOException {
+        this.file = file;
+        this.fileLocation = fileLocation;
+        this.pageSize = pageSize;
+        this.capacity = capacity;
+        // access ordered map -> iteration starts at the least recently used page
+        this.pages = new LinkedHashMap<>(capacity, 0.75f, true);
+        this.length = file.size();
+    }
+
+    public synchronized long length() {
+        return length;
+    }
+
+    public void read(long offset, byte[] bytes) throws IOException {
+        read(offset, bytes, 0, bytes.length);
+    }
+
+    public synchronized void read(long offset, byte[] bytes, int from, int count) throws IOException {
+        while (count > 0) {
+            long pageNumber = offset / pageSize;
+            int pageOffset = (int) (offset % pageSize);
+            int n = Integer.min(count, pageSize - pageOffset);
+
+            Page page = getPage(pageNumber);
+            System.arraycopy(page.data, pageOffset, bytes, from, n);
+
+            offset += n;
+            from += n;
+            count -= n;
+        }
+    }
+
+    public synchronized byte readByte(long offset) throws IOException {
+        Page page = getPage(offset / pageSize);
+        return page.data[(int) (offset % pageSize)];
+    }
+
+    public void write(long offset, byte[] bytes) throws IOException {
+        write(offset, bytes, 0, bytes.length);
+    }
+
+    public synchronized void write(long offset, byte[] bytes, int from, int count) throws IOException {
+        long lsn = logWrite(offset, bytes, from, count);
+        // before the pages are touched: a page past the old end that is evicted during the loop must be written back
+        length = Long.max(length, offset + count);
+        while (count > 0) {
+            long pageNumber = offset / pageSize;
+            int pageOffset = (int) (offset % pageSize);
+            int n = Integer.min(count, pageSize - pageOffset);
+
+            Page page = getPage(pageNumber);
+            System.arraycopy(bytes, from, page.data, pageOffset, n);
+            page.dirty = true;
+            page.lsn = Long.max(page.lsn, lsn);
+
+            offset += n;
+            from += n;
+            count -= n;
+        }
+    }
+
+    public synchronized void writeByte(long offset, byte value) throws IOException {
+        long lsn = logWrite(offset, new byte[]{value}, 0, 1);
+        length = Long.max(length, offset + 1);
+        Page page = getPage(offset / pageSize);
+        page.data[(int) (offset % pageSize)] = value;
+        page.dirty = true;
+        page.lsn = Long.max(page.lsn, lsn);
+    }
+
+    // returns the LSN of the write, 0 if it is not logged
+    private long logWrite(long offset, byte[] bytes, int from, int count) throws IOException {
+        if (fileLocation == null || !WriteAheadLog.isActive()) {
+            return 0;
+        }
+        // the before image only covers the part that is inside the file
+        byte[] before = new byte[(int) Long.max(0, Long.min(count, length - offset))];
+        read(offset, before);
+        byte[] after = new byte[count];
+        System.arraycopy(bytes, from, after, 0, count);
+        return WriteAheadLog.logWrite(fileLocation, offset, before, after);
+    }
+
+    public synchronized void flush() throws IOException {
+        for (var entry : pages.entrySet()) {
+            writeBack(entry.getKey(), entry.getValue());
+        }
+    }
+
+    // drops every cached page, used when the file is modified behind the cache (e.g. truncation)
+    public synchronized void invalidate() throws IOException {
+        flush();
+        pages.clear();
+        length = file.size();
+    }
+
+    public synchronized void truncate(long newLength) throws IOException {
+        flush();
+        pages.clear();
+        if (fileLocation != null && WriteAheadLog.isActive()) {
+            WriteAheadLog.logTruncate(fileLocation, newLength);
+        }
+        file.setLength(newLength);
+        length = newLength;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private Page getPage(long pageNumber) throws IOException {
+        Page page = pages.get(pageNumber);
+        if (page != null) {
+            hits++;
+            return page;
+        }
+        misses++;
+
+        if (pages.size() >= capacity) {
+            evict();
+        }
+
+        page = new Page(pageSize);
+        long pageStart = pageNumber * pageSize;
+        long physicalLength = file.size();
+        if (pageStart < physicalLength) {
+            file.read(pageStart, page.data, 0, (int) Long.min(pageSize, physicalLength - pageStart));
+        }
+        pages.put(pageNumber, page);
+        return page;
+    }
+
+    private void evict() throws IOException {
+        Iterator<Map.Entry<Long, Page>> it = pages.entrySet().iterator();
+        Map.Entry<Long, Page> eldest = it.next();
+        writeBack(eldest.getKey(), eldest.getValue());
+        it.remove();
+        evictions++;
+    }
+
+    private void writeBack(long pageNumber, Page page) throws IOException {
+        if (!page.dirty) {
+            return;
+        }
+        WriteAheadLog.flushTo(page.lsn);
+        long pageStart = pageNumber * pageSize;
+        // never write the zero tail of the last page, the file must not grow past its logical length
+        int toWrite = (int) Long.min(pageSize, length - pageStart);
+        if (toWrite > 0) {
+            file.write(pageStart, page.data, 0, toWrite);
+        }
+        page.dirty = false;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PageCache{" +
+                "pageSize=" + pageSize +
+                ", capacity=" + capacity +
+                ", cached=" + pages.size() +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+}
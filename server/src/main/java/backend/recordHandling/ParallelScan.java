@@ -0,0 +1,276 @@
+package backend.recordHandling;
+
+import backend.Utilities.RowBatch;
+import backend.config.Config;
+import backend.databaseModels.conditions.Operator;
+import backend.service.CatalogManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+// scan of the live records of a table split into chunks of consecutive lines, the chunks are read by fork / join workers
+//      every worker reads the shared files of the table directly (positional reads, no file pointer or page cache),
+//      skips the blocks the zone map rules out, checks the dictionary codes and the row filter and keeps the rows that
+//      pass in a RowBatch of the chunk
+//      scan.run(ordered, chunk -> { ... chunk.getBatch() ... chunk.getPointers() ... });
+// the chunks are handed to the consumer on the calling thread, in the order of their lines or as soon as they are done
+public class ParallelScan {
+    private static final int CHUNK_LINES = 8192;
+    private static ForkJoinPool pool;
+
+    private final String databaseName, tableName;
+    // null -> every column
+    private final List<String> columnNames;
+
+    private final ArrayList<String> filterColumnNames, filterValues;
+    private final ArrayList<String> rangeColumnNames;
+    private final ArrayList<Operator> rangeOperators;
+    private final ArrayList<Object> rangeValues;
+    // builds the filter of a chunk's batch, null -> every live record is kept
+    private Function<RowBatch, IntPredicate> rowFilter;
+
+    private RecordHandler recordHandler;
+    private RecordLayout layout;
+    private int[] columns, readColumns;
+    private List<String> columnTypes;
+    private CodeFilter codeFilter;
+    private ZoneFilter zoneFilter;
+    private int chunkLines;
+
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    // the consumer stopped early, the remaining chunks are not read anymore
+    private volatile boolean cancelled;
+
+    public ParallelScan(String databaseName, String tableName, List<String> columnNames) {
+        this.databaseName = databaseName;
+        this.tableName = tableName;
+        this.columnNames = columnNames;
+        this.filterColumnNames = new ArrayList<>();
+        this.filterValues = new ArrayList<>();
+        this.rangeColumnNames = new ArrayList<>();
+        this.rangeOperators = new ArrayList<>();
+        this.rangeValues = new ArrayList<>();
+    }
+
+    // same as RecordCursor.addEqualityFilter
+    public void addEqualityFilter(String columnName, String value) {
+        filterColumnNames.add(columnName);
+        filterValues.add(value);
+    }
+
+    // same as RecordCursor.addRangeFilter, the records of the other blocks still have to be tested by the row filter
+    public void addRangeFilter(String columnName, Operator op, Object value) {
+        rangeColumnNames.add(columnName);
+        rangeOperators.add(op);
+        rangeValues.add(value);
+    }
+
+    // the filter is built once for the batch of every chunk (by the worker reading it)
+    public void setRowFilter(Function<RowBatch, IntPredicate> rowFilter) {
+        this.rowFilter = rowFilter;
+    }
+
+    // the rows of a chunk that passed the filters and their record lines
+    public static class Chunk {
+        private final RowBatch batch;
+        private final int[] pointers;
+
+        Chunk(RowBatch batch, int[] pointers) {
+            this.batch = batch;
+            this.pointers = pointers;
+        }
+
+        public RowBatch getBatch() {
+            return batch;
+        }
+
+        public int[] getPointers() {
+            return pointers;
+        }
+    }
+
+    public void run(boolean ordered, Consumer<Chunk> consumer) throws IOException {
+        open();
+        try {
+            long recordCount = recordHandler.getRecordCount();
+            if (codeFilter != null && codeFilter.matchesNothing()) {
+                return;
+            }
+            int chunkCount = (int) ((recordCount + chunkLines - 1) / chunkLines);
+            if (chunkCount <= 1 || Config.getScanParallelism() <= 1) {
+                for (int chunk = 0; chunk < chunkCount; chunk++) {
+                    consumer.accept(readChunk(chunk, recordCount));
+                }
+                return;
+            }
+
+            // the workers put the number of every finished chunk into the queue
+            Chunk[] chunks = new Chunk[chunkCount];
+            BlockingQueue<Integer> finished = new LinkedBlockingQueue<>();
+            pool().execute(new ChunkTask(0, chunkCount, recordCount, chunks, finished));
+
+            boolean[] received = new boolean[chunkCount];
+            int next = 0, reported = 0;
+            try {
+                while (reported < chunkCount) {
+                    int chunk = take(finished);
+                    reported++;
+                    if (failure.get() != null) {
+                        continue;
+                    }
+                    if (!ordered) {
+                        consumer.accept(chunks[chunk]);
+                        chunks[chunk] = null;
+                        continue;
+                    }
+                    received[chunk] = true;
+                    while (next < chunkCount && received[next]) {
+                        consumer.accept(chunks[next]);
+                        chunks[next++] = null;
+                    }
+                }
+            } finally {
+                // the handler is only released once no worker reads through it anymore
+                cancelled = true;
+                while (reported < chunkCount) {
+                    take(finished);
+                    reported++;
+                }
+            }
+            if (failure.get() != null) {
+                throw new IOException("Parallel scan of " + tableName + " failed", failure.get());
+            }
+        } finally {
+            close();
+        }
+    }
+
+    private void open() throws IOException {
+        recordHandler = HandlerRegistry.recordHandler(databaseName, tableName);
+        // the workers read the files directly
+        recordHandler.flush();
+        layout = recordHandler.getLayout();
+
+        List<String> fieldNames = CatalogManager.getFieldNames(databaseName, tableName);
+        columns = RecordLayout.project(fieldNames, columnNames == null ? fieldNames : columnNames);
+        columnTypes = Arrays.stream(columns).mapToObj(layout::getType).toList();
+        codeFilter = filterColumnNames.isEmpty() ? null : recordHandler.codeFilter(RecordLayout.project(fieldNames, filterColumnNames), filterValues);
+        // the columns of the dictionary codes are needed as well (a columnar table only reads what is asked for)
+        readColumns = codeFilter == null ? columns : IntStream.concat(Arrays.stream(columns), Arrays.stream(codeFilter.getColumns())).distinct().toArray();
+
+        zoneFilter = rangeColumnNames.isEmpty() ? null
+                : new ZoneFilter(recordHandler.getZoneMap(), RecordLayout.project(fieldNames, rangeColumnNames), rangeOperators.toArray(new Operator[0]), rangeValues.toArray());
+        // a chunk is made of whole zone map blocks
+        chunkLines = zoneFilter == null ? CHUNK_LINES : Integer.max(1, CHUNK_LINES / zoneFilter.getBlockSize()) * zoneFilter.getBlockSize();
+    }
+
+    // reads, filters and decodes the lines of the chunk
+    private Chunk readChunk(int chunk, long recordCount) throws IOException {
+        int firstLine = chunk * chunkLines;
+        int count = (int) Long.min(chunkLines, recordCount - firstLine);
+        int recordSize = layout.getRecordSize();
+        int blockSize = zoneFilter == null ? count : zoneFilter.getBlockSize();
+
+        RowBatch batch = new RowBatch(columnTypes);
+        IntPredicate filter = rowFilter == null ? null : rowFilter.apply(batch);
+        int[] pointers = new int[16];
+        ArrayList<Object> row = new ArrayList<>(columns.length);
+        byte[] images = new byte[blockSize * recordSize];
+        ByteBuffer buffer = ByteBuffer.wrap(images);
+
+        for (int blockStart = firstLine; blockStart < firstLine + count; blockStart += blockSize) {
+            if (zoneFilter != null && !zoneFilter.test(blockStart / blockSize)) {
+                continue;
+            }
+            int lines = Integer.min(blockSize, firstLine + count - blockStart);
+            recordHandler.readChunk(blockStart, lines, readColumns, images);
+            for (int i = 0; i < lines; i++) {
+                int position = i * recordSize;
+                if (!layout.isLive(buffer, position) || (codeFilter != null && !codeFilter.test(layout, buffer, position))) {
+                    continue;
+                }
+                layout.decode(buffer, position, columns, row);
+                batch.add(row);
+                if (filter != null && !filter.test(batch.size() - 1)) {
+                    batch.removeLast();
+                    continue;
+                }
+                if (batch.size() > pointers.length) {
+                    pointers = Arrays.copyOf(pointers, pointers.length * 2);
+                }
+                pointers[batch.size() - 1] = blockStart + i;
+            }
+        }
+        return new Chunk(batch, Arrays.copyOf(pointers, batch.size()));
+    }
+
+    // halves its range of chunks until a single chunk is left, which is read by the worker
+    private class ChunkTask extends RecursiveAction {
+        private final int from, to;
+        private final long recordCount;
+        private final Chunk[] chunks;
+        private final BlockingQueue<Integer> finished;
+
+        ChunkTask(int from, int to, long recordCount, Chunk[] chunks, BlockingQueue<Integer> finished) {
+            this.from = from;
+            this.to = to;
+            this.recordCount = recordCount;
+            this.chunks = chunks;
+            this.finished = finished;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask(from, middle, recordCount, chunks, finished), new ChunkTask(middle, to, recordCount, chunks, finished));
+                return;
+            }
+            try {
+                // after a failure the remaining chunks are only reported
+                if (failure.get() == null && !cancelled) {
+                    chunks[from] = readChunk(from, recordCount);
+                }
+            } catch (Exception e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                finished.add(from);
+            }
+        }
+    }
+
+    private static int take(BlockingQueue<Integer> finished) throws IOException {
+        try {
+            return finished.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Parallel scan interrupted", e);
+        }
+    }
+
+    private static synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Config.getScanParallelism());
+        }
+        return pool;
+    }
+
+    private void close() throws IOException {
+        if (recordHandler != null) {
+            HandlerRegistry.release(recordHandler);
+            recordHandler = null;
+        }
+    }
+}
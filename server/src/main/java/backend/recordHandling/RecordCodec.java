@@ -0,0 +1,130 @@
+package backend.recordHandling;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// fields of a list of types stored back to back without any header (index keys)
+// offsets, sizes and codecs are computed once per structure, the codec is shared by every node and key of the structure
+// the ordered codec of a structure writes keys whose bytes compare (Arrays.compareUnsigned) like the keys themselves
+public class RecordCodec {
+    private static final ConcurrentHashMap<List<String>, RecordCodec> CODECS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<List<String>, RecordCodec> ORDERED_CODECS = new ConcurrentHashMap<>();
+
+    // shared by every key of the structure, not to be changed
+    private final ArrayList<String> types;
+    private final ColumnCodec[] codecs;
+    private final int[] offsets;
+    private final int size;
+    // the codec of the same structure that is not ordered, this one if it isn't
+    private final RecordCodec plain;
+
+    public static RecordCodec of(List<String> types) {
+        RecordCodec codec = CODECS.get(types);
+        if (codec == null) {
+            codec = CODECS.computeIfAbsent(List.copyOf(types), RecordCodec::new);
+        }
+        return codec;
+    }
+
+    public static RecordCodec ordered(List<String> types) {
+        RecordCodec codec = ORDERED_CODECS.get(types);
+        if (codec == null) {
+            codec = ORDERED_CODECS.computeIfAbsent(List.copyOf(types), orderedTypes -> new RecordCodec(orderedTypes, of(orderedTypes)));
+        }
+        return codec;
+    }
+
+    private RecordCodec(List<String> types) {
+        this(types, null);
+    }
+
+    private RecordCodec(List<String> types, RecordCodec plain) {
+        this.types = new ArrayList<>(types);
+        this.plain = plain == null ? this : plain;
+        codecs = new ColumnCodec[types.size()];
+        offsets = new int[types.size()];
+        int offset = 0;
+        for (int i = 0; i < codecs.length; i++) {
+            codecs[i] = plain == null ? ColumnCodec.of(types.get(i)) : ColumnCodec.of(types.get(i)).ordered();
+            offsets[i] = offset;
+            offset += codecs[i].size();
+        }
+        size = offset;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public ArrayList<String> getTypes() {
+        return types;
+    }
+
+    public boolean isOrdered() {
+        return plain != this;
+    }
+
+    public RecordCodec plain() {
+        return plain;
+    }
+
+    public int getFieldCount() {
+        return codecs.length;
+    }
+
+    public ColumnCodec getCodec(int field) {
+        return codecs[field];
+    }
+
+    public int getOffset(int field) {
+        return offsets[field];
+    }
+
+    public ArrayList<Object> read(ByteBuffer buffer, int position) {
+        ArrayList<Object> values = new ArrayList<>(codecs.length);
+        for (int i = 0; i < codecs.length; i++) {
+            values.add(codecs[i].read(buffer, position + offsets[i]));
+        }
+        return values;
+    }
+
+    public void write(ByteBuffer buffer, int position, List<Object> values) {
+        for (int i = 0; i < codecs.length; i++) {
+            if (values.get(i) == null) {
+                throw new RuntimeException();
+            }
+            codecs[i].write(buffer, position + offsets[i], values.get(i));
+        }
+    }
+
+    // field by field, null values come first
+    public int compare(List<Object> values1, List<Object> values2) {
+        for (int i = 0; i < values2.size(); i++) {
+            Object o1 = values1.get(i), o2 = values2.get(i);
+            int rel;
+            if (o1 == null || o2 == null) {
+                rel = o1 == null ? (o2 == null ? 0 : -1) : 1;
+            } else {
+                rel = codecs[i].compare(o1, o2);
+            }
+            if (rel != 0) {
+                return rel;
+            }
+        }
+        return 0;
+    }
+
+    // same as compare, the second key is read from the buffer field by field (it is never null)
+    public int compare(List<Object> values, ByteBuffer buffer, int position) {
+        for (int i = 0; i < values.size(); i++) {
+            Object value = values.get(i);
+            int rel = value == null ? -1 : codecs[i].compare(value, buffer, position + offsets[i]);
+            if (rel != 0) {
+                return rel;
+            }
+        }
+        return 0;
+    }
+}
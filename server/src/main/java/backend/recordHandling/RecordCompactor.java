@@ -0,0 +1,71 @@
+package backend.recordHandling;
+
+import backend.Indexing.MultipleIndexUpdater;
+import backend.exceptions.recordHandlingExceptions.InvalidReadException;
+import backend.recovery.WriteAheadLog;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+// packs the live records of a table to the front of its data file and cuts off the rest (VACUUM)
+//      the first free line is filled with the last live record until the two meet, one record at a time
+@Slf4j
+public class RecordCompactor {
+    private final RecordHandler recordHandler;
+    private final FreeSpaceMap freeSpaceMap;
+    private final MultipleIndexUpdater multipleIndexUpdater;
+
+    public RecordCompactor(String databaseName, String tableName) throws IOException {
+        recordHandler = HandlerRegistry.recordHandler(databaseName, tableName);
+        freeSpaceMap = recordHandler.getFreeSpaceMap();
+        multipleIndexUpdater = new MultipleIndexUpdater(databaseName, tableName);
+    }
+
+    // returns the number of moved records
+    public int compact() throws IOException {
+        int moved = 0;
+        int low = 0;
+        int high = (int) recordHandler.getRecordCount() - 1;
+
+        while (true) {
+            while (low <= high && recordHandler.isLive(low)) {
+                low++;
+            }
+            while (high >= low && !recordHandler.isLive(high)) {
+                high--;
+            }
+            if (low >= high) {
+                break;
+            }
+
+            try {
+                ArrayList<String> record = recordHandler.readLine(high);
+                recordHandler.insert(record, low);
+                recordHandler.deleteLine(high);
+                multipleIndexUpdater.move(record, high, low);
+                moved++;
+            } catch (InvalidReadException e) {
+                log.error("Could not move line " + high + ": " + e.getMessage());
+                break;
+            }
+        }
+
+        // the moves are committed before the lines they emptied are cut, the cut itself is not undone
+        WriteAheadLog.commitAndContinue();
+
+        // every line before the cut is in use now
+        long liveCount = high + 1;
+        long oldCount = recordHandler.getRecordCount();
+        recordHandler.truncate(liveCount);
+        freeSpaceMap.truncate(0);
+
+        log.info("Vacuum: " + moved + " record(s) moved, " + (oldCount - liveCount) + " line(s) reclaimed");
+        return moved;
+    }
+
+    public void close() throws IOException {
+        multipleIndexUpdater.close();
+        HandlerRegistry.release(recordHandler);
+    }
+}
@@ -0,0 +1,134 @@
+package backend.recordHandling;
+
+import backend.databaseModels.conditions.Operator;
+import backend.exceptions.recordHandlingExceptions.InvalidReadException;
+import backend.service.CatalogManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// pull based iteration over the live records of a table, only one record is held in memory at a time
+//      cursor.open();
+//      while ((record = cursor.next()) != null) { ... cursor.getPointer() ... }
+//      cursor.close();
+public class RecordCursor {
+    private final String databaseName, tableName;
+    // when set, next() refills the same list instead of allocating a new one for every record
+    private final boolean reuseRow;
+    // when set, only these columns are decoded (in this order)
+    private final List<String> columnNames;
+    private int[] columns;
+
+    // equality conditions on dictionary encoded columns, checked on the stored codes
+    private final ArrayList<String> filterColumnNames, filterValues;
+    private CodeFilter filter;
+
+    // range conditions, blocks of lines whose zone can't match them are skipped without being read
+    private final ArrayList<String> rangeColumnNames;
+    private final ArrayList<Operator> rangeOperators;
+    private final ArrayList<Object> rangeValues;
+    private ZoneFilter zoneFilter;
+    private int blockSize;
+
+    private RecordReader reader;
+    private ArrayList<Object> row;
+    private long recordCount;
+    private int line, pointer;
+
+    public RecordCursor(String databaseName, String tableName) {
+        this(databaseName, tableName, false);
+    }
+
+    public RecordCursor(String databaseName, String tableName, boolean reuseRow) {
+        this(databaseName, tableName, null, reuseRow);
+    }
+
+    public RecordCursor(String databaseName, String tableName, List<String> columnNames, boolean reuseRow) {
+        this.databaseName = databaseName;
+        this.tableName = tableName;
+        this.columnNames = columnNames;
+        this.reuseRow = reuseRow;
+        this.filterColumnNames = new ArrayList<>();
+        this.filterValues = new ArrayList<>();
+        this.rangeColumnNames = new ArrayList<>();
+        this.rangeOperators = new ArrayList<>();
+        this.rangeValues = new ArrayList<>();
+    }
+
+    // only the records whose dictionary encoded column equals the value are returned, must be called before open()
+    public void addEqualityFilter(String columnName, String value) {
+        filterColumnNames.add(columnName);
+        filterValues.add(value);
+    }
+
+    // lets the cursor skip the blocks where no record can satisfy "column op value", must be called before open()
+    // the records of the other blocks are returned whether they match or not, the caller still has to test them
+    public void addRangeFilter(String columnName, Operator op, Object value) {
+        rangeColumnNames.add(columnName);
+        rangeOperators.add(op);
+        rangeValues.add(value);
+    }
+
+    public void open() throws IOException {
+        reader = new RecordReader(databaseName, tableName);
+        recordCount = reader.getRecordCount();
+        columns = columnNames == null ? null : reader.project(columnNames);
+        filter = filterColumnNames.isEmpty() ? null : reader.codeFilter(filterColumnNames, filterValues);
+        if (filter != null) {
+            if (columns == null) {
+                columns = reader.project(CatalogManager.getFieldNames(databaseName, tableName));
+            }
+            if (filter.matchesNothing()) {
+                recordCount = 0;
+            }
+        }
+        zoneFilter = rangeColumnNames.isEmpty() ? null : reader.zoneFilter(rangeColumnNames, rangeOperators, rangeValues);
+        blockSize = zoneFilter == null ? 0 : zoneFilter.getBlockSize();
+        row = new ArrayList<>();
+        line = 0;
+        pointer = -1;
+    }
+
+    // returns the next live record, or null when the end of the table was reached
+    public ArrayList<Object> next() throws IOException {
+        while (line < recordCount) {
+            int current = line++;
+            if (zoneFilter != null && current % blockSize == 0 && !zoneFilter.test(current / blockSize)) {
+                line = current + blockSize;
+                continue;
+            }
+            if (!reuseRow) {
+                row = new ArrayList<>();
+            }
+            try {
+                if (filter == null) {
+                    reader.readLineInto(current, columns, row);
+                } else if (!reader.readLineInto(current, columns, filter, row)) {
+                    continue;
+                }
+                pointer = current;
+                return row;
+            } catch (InvalidReadException ignored) {}
+        }
+        pointer = -1;
+        return null;
+    }
+
+    // lines of the table (live and deleted) that are iterated, known after open()
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    // record line (pointer) of the last record returned by next()
+    public int getPointer() {
+        return pointer;
+    }
+
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+    }
+}
@@ -7,23 +7,25 @@ import backend.exceptions.recordHandlingExceptions.KeyNotFoundException;
 import backend.service.CatalogManager;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.function.Predicate;
 
 @Slf4j
 public class RecordDeleter {
     private final RecordHandler recordHandler;
+    private final FreeSpaceMap freeSpaceMap;
     private final String databaseName, tableName;
     private final MultipleIndexUpdater multipleIndexUpdater;
 
     private final UniqueIndexManager primaryKeyIndexManager;
-    public RecordDeleter(String databaseName, String tableName) throws FileNotFoundException {
+    public RecordDeleter(String databaseName, String tableName) throws IOException {
         this.databaseName = databaseName;
         this.tableName = tableName;
-        recordHandler = new RecordHandler(databaseName, tableName);
+        recordHandler = HandlerRegistry.recordHandler(databaseName, tableName);
+        freeSpaceMap = recordHandler.getFreeSpaceMap();
         multipleIndexUpdater = new MultipleIndexUpdater(databaseName, tableName);
-        primaryKeyIndexManager = new UniqueIndexManager(databaseName, tableName, CatalogManager.getPrimaryKeyIndexName(databaseName, tableName));
+        primaryKeyIndexManager = HandlerRegistry.uniqueIndexManager(databaseName, tableName, CatalogManager.getPrimaryKeyIndexName(databaseName, tableName));
     }
 
     public ArrayList<String> readLineToBeDeleted(ArrayList<String> keyValues) throws IOException, KeyNotFoundException, InvalidReadException {
@@ -32,31 +34,53 @@ public class RecordDeleter {
     }
 
     public void deleteRecords(ArrayList<Integer> pointers) {
-        CatalogManager.deletedRecordLinesEnqueueN(databaseName, tableName, pointers);
         for(var pointer : pointers){
             try{
                 ArrayList<String> record = recordHandler.readLine(pointer);
 
                 recordHandler.deleteLine(pointer);
+                freeSpaceMap.release(pointer);
                 multipleIndexUpdater.delete(record, pointer);
             }catch (Exception ignored){}
         }
     }
 
+    // streams the table and deletes every record matching the filter
+    public int deleteWhere(Predicate<ArrayList<Object>> filter) throws IOException {
+        int deleted = 0;
+        ArrayList<Object> row = new ArrayList<>();
+        long recordCount = recordHandler.getRecordCount();
+        for (int line = 0; line < recordCount; line++) {
+            try {
+                recordHandler.readLineInto(line, row);
+                if (!filter.test(row)) {
+                    continue;
+                }
+                ArrayList<String> record = recordHandler.readLine(line);
+
+                recordHandler.deleteLine(line);
+                freeSpaceMap.release(line);
+                multipleIndexUpdater.delete(record, line);
+                deleted++;
+            } catch (InvalidReadException ignored) {}
+        }
+        return deleted;
+    }
+
     public void deleteByPrimaryKey(ArrayList<String> keyValues){
         try{
             int pointer = primaryKeyIndexManager.findLocation(keyValues);
             ArrayList<String> record = recordHandler.readLine(pointer);
 
-            CatalogManager.deletedRecordLinesEnqueue(databaseName, tableName, pointer);
             recordHandler.deleteLine(pointer);
+            freeSpaceMap.release(pointer);
             multipleIndexUpdater.delete(record, pointer);
         }catch (Exception ignored){}
     }
 
     public void close() throws IOException {
         multipleIndexUpdater.close();
-        primaryKeyIndexManager.close();
-        recordHandler.close();
+        HandlerRegistry.release(primaryKeyIndexManager);
+        HandlerRegistry.release(recordHandler);
     }
 }
@@ -0,0 +1,164 @@
+package backend.recordHandling;
+
+import backend.databaseModels.TableModel;
+import backend.service.CatalogManager;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// rewrites the files of a table created before the null bitmap, on the first open of the table
+//      row:      [deletion byte][null byte + value]...             -> [deletion byte][null bitmap][value]...
+//      columnar: data [deletion byte], column [null byte + value]  -> data [deletion byte][null bitmap], column [value]
+// the new files are written next to the old ones, then the catalog is switched to the new format and the files are renamed
+// a crash before the switch leaves the old files in use, after it the renames are finished on the next open
+@Slf4j
+class RecordFormatUpgrader {
+    private static final String SUFFIX = ".upgrade";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    static void upgradeIfNeeded(String databaseName, String tableName, RecordLayout layout) throws IOException {
+        boolean columnar = CatalogManager.isColumnar(databaseName, tableName);
+        String dataLocation = CatalogManager.getTableDataPath(databaseName, tableName);
+        List<String> columnLocations = new ArrayList<>();
+        if (columnar) {
+            for (String fieldName : CatalogManager.getFieldNames(databaseName, tableName)) {
+                columnLocations.add(CatalogManager.getTableColumnPath(databaseName, tableName, fieldName));
+            }
+        }
+        List<String> locations = new ArrayList<>(columnLocations);
+        locations.add(dataLocation);
+
+        if (CatalogManager.getTableRecordFormat(databaseName, tableName) != TableModel.LEGACY_RECORD_FORMAT) {
+            replaceWithUpgraded(locations);
+            return;
+        }
+
+        // leftovers of an upgrade that did not get to the switch
+        for (String location : locations) {
+            Files.deleteIfExists(Path.of(location + SUFFIX));
+        }
+
+        long lines;
+        if (columnar) {
+            lines = upgradeColumnar(dataLocation, columnLocations, layout);
+        } else {
+            lines = upgradeRow(dataLocation, layout);
+        }
+        CatalogManager.setTableRecordFormat(databaseName, tableName, TableModel.RECORD_FORMAT);
+        replaceWithUpgraded(locations);
+        log.info("Records of " + databaseName + "." + tableName + " upgraded to the null bitmap: " + lines + " line(s)");
+    }
+
+    private static long upgradeRow(String dataLocation, RecordLayout layout) throws IOException {
+        int oldRecordSize = 1;
+        for (int i = 0; i < layout.getColumnCount(); i++) {
+            oldRecordSize += 1 + layout.getSize(i);
+        }
+        long lines = new File(dataLocation).length() / oldRecordSize;
+        if (lines == 0) {
+            return 0;
+        }
+
+        byte[] old = new byte[oldRecordSize];
+        byte[] image = new byte[layout.getRecordSize()];
+        try (DataInputStream in = openInput(dataLocation); FileOutputStream out = new FileOutputStream(dataLocation + SUFFIX)) {
+            BufferedOutputStream bufferedOut = new BufferedOutputStream(out, BUFFER_SIZE);
+            for (long line = 0; line < lines; line++) {
+                in.readFully(old);
+                Arrays.fill(image, (byte) 0);
+                image[0] = old[0];
+                int offset = 1;
+                for (int i = 0; i < layout.getColumnCount(); i++) {
+                    if (old[offset] == 0) {
+                        RecordLayout.setNull(image, 0, i);
+                    } else {
+                        System.arraycopy(old, offset + 1, image, layout.getOffset(i), layout.getSize(i));
+                    }
+                    offset += 1 + layout.getSize(i);
+                }
+                bufferedOut.write(image);
+            }
+            bufferedOut.flush();
+            out.getFD().sync();
+        }
+        return lines;
+    }
+
+    private static long upgradeColumnar(String dataLocation, List<String> columnLocations, RecordLayout layout) throws IOException {
+        long lines = new File(dataLocation).length();
+        if (lines == 0) {
+            return 0;
+        }
+
+        int columnCount = columnLocations.size();
+        ArrayList<Closeable> opened = new ArrayList<>();
+        try {
+            DataInputStream dataIn = openInput(dataLocation);
+            opened.add(dataIn);
+            FileOutputStream dataOut = new FileOutputStream(dataLocation + SUFFIX);
+            opened.add(dataOut);
+            DataInputStream[] columnIns = new DataInputStream[columnCount];
+            FileOutputStream[] columnOuts = new FileOutputStream[columnCount];
+            BufferedOutputStream[] bufferedColumnOuts = new BufferedOutputStream[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                columnIns[i] = openInput(columnLocations.get(i));
+                opened.add(columnIns[i]);
+                columnOuts[i] = new FileOutputStream(columnLocations.get(i) + SUFFIX);
+                opened.add(columnOuts[i]);
+                bufferedColumnOuts[i] = new BufferedOutputStream(columnOuts[i], BUFFER_SIZE);
+            }
+            BufferedOutputStream bufferedDataOut = new BufferedOutputStream(dataOut, BUFFER_SIZE);
+
+            byte[] header = new byte[layout.getHeaderSize()];
+            for (long line = 0; line < lines; line++) {
+                Arrays.fill(header, (byte) 0);
+                header[0] = dataIn.readByte();
+                for (int i = 0; i < columnCount; i++) {
+                    byte[] value = new byte[layout.getSize(i)];
+                    byte nullByte = columnIns[i].readByte();
+                    columnIns[i].readFully(value);
+                    if (nullByte == 0) {
+                        RecordLayout.setNull(header, 0, i);
+                        Arrays.fill(value, (byte) 0);
+                    }
+                    bufferedColumnOuts[i].write(value);
+                }
+                bufferedDataOut.write(header);
+            }
+
+            bufferedDataOut.flush();
+            dataOut.getFD().sync();
+            for (int i = 0; i < columnCount; i++) {
+                bufferedColumnOuts[i].flush();
+                columnOuts[i].getFD().sync();
+            }
+        } finally {
+            for (Closeable closeable : opened) {
+                closeable.close();
+            }
+        }
+        return lines;
+    }
+
+    // the upgraded files take the place of the old ones, files that were already renamed are skipped
+    private static void replaceWithUpgraded(List<String> locations) throws IOException {
+        for (String location : locations) {
+            Path upgraded = Path.of(location + SUFFIX);
+            if (Files.exists(upgraded)) {
+                Files.move(upgraded, Path.of(location), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                // a channel opened before would still read the old file
+                SharedFile.close(location);
+            }
+        }
+    }
+
+    private static DataInputStream openInput(String location) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(location), BUFFER_SIZE));
+    }
+}
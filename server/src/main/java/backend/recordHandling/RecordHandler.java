@@ -1,29 +1,96 @@
 package backend.recordHandling;
 
+import backend.config.Config;
 import backend.exceptions.recordHandlingExceptions.InvalidReadException;
+import backend.exceptions.recordHandlingExceptions.InvalidTypeException;
+import backend.exceptions.recordHandlingExceptions.InvalidWriteException;
 import backend.service.CatalogManager;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
 
 @Slf4j
-public class RecordHandler {
+public class RecordHandler implements SharedHandler {
+    @Getter
     private long recordSize;
     private final ArrayList<String> tableStructure;
-    private final RandomAccessFile io;
+    @Getter
+    private final RecordLayout layout;
+    private final int[] allColumns;
+    @Getter
+    private final String fileLocation;
+    // columnar tables keep every column in a file of its own
+    @Getter
+    private final boolean columnar;
+    private final RecordStorage storage;
+    private final ColumnDictionary[] dictionaries;
+    private final VarcharHeap heap;
+    @Getter
+    private final ZoneMap zoneMap;
+    // columns read from a record that is being deleted: its varchar values and its zoned columns
+    private final int[] deletedColumns;
+    // row changes for the table's statistics
+    private final StatisticsTracker statistics;
+    private final String databaseName, tableName;
+    // free lines of the table, read by the first inserter / deleter and kept for the next statements
+    private FreeSpaceMap freeSpaceMap;
 
-    public RecordHandler(String databaseName, String tableName) throws FileNotFoundException {
-        String fileLocation = CatalogManager.getTableDataPath(databaseName, tableName);
+    public RecordHandler(String databaseName, String tableName) throws IOException {
+        this(databaseName, tableName, Config.getPageSize(), Config.getPageCacheCapacity());
+    }
+
+    public RecordHandler(String databaseName, String tableName, int pageSize, int pageCacheCapacity) throws IOException {
+        this.databaseName = databaseName;
+        this.tableName = tableName;
+        fileLocation = CatalogManager.getTableDataPath(databaseName, tableName);
 
         tableStructure = (ArrayList<String>) CatalogManager.getFieldTypes(databaseName, tableName);
 
-        recordSize = 1 + tableStructure.size();
-        for (String type : tableStructure) {
-            recordSize += TypeConverter.sizeof(type);
+        // dictionary encoded char(n) columns
+        List<String> fieldNames = CatalogManager.getFieldNames(databaseName, tableName);
+        dictionaries = new ColumnDictionary[tableStructure.size()];
+        for (int i = 0; i < dictionaries.length; i++) {
+            if (CatalogManager.isDictionaryEncoded(databaseName, tableName, fieldNames.get(i))) {
+                String dictionaryLocation = CatalogManager.getTableDictionaryPath(databaseName, tableName, fieldNames.get(i));
+                dictionaries[i] = new ColumnDictionary(dictionaryLocation, (int) TypeConverter.sizeof(tableStructure.get(i)));
+            }
+        }
+
+        // varchar values live in the table's heap
+        heap = tableStructure.stream().anyMatch(TypeConverter::isVarchar)
+                ? new VarcharHeap(CatalogManager.getTableHeapPath(databaseName, tableName), CatalogManager.getTableHeapFreeSpacePath(databaseName, tableName), pageCacheCapacity)
+                : null;
+
+        layout = new RecordLayout(tableStructure, dictionaries, heap);
+        recordSize = layout.getRecordSize();
+        // tables of older versions still have a null byte per column
+        RecordFormatUpgrader.upgradeIfNeeded(databaseName, tableName, layout);
+        allColumns = new int[tableStructure.size()];
+        for (int i = 0; i < allColumns.length; i++) {
+            allColumns[i] = i;
+        }
+        columnar = CatalogManager.isColumnar(databaseName, tableName);
+        if (columnar) {
+            ArrayList<String> columnFileLocations = new ArrayList<>();
+            for (String fieldName : fieldNames) {
+                columnFileLocations.add(CatalogManager.getTableColumnPath(databaseName, tableName, fieldName));
+            }
+            storage = new ColumnarStorage(fileLocation, columnFileLocations, layout, pageSize, pageCacheCapacity);
+        } else {
+            storage = new RowStorage(fileLocation, layout, pageSize, pageCacheCapacity);
         }
-        io = new RandomAccessFile(fileLocation, "rw");
-        System.out.println("Open: RecordHandler");
+        deletedColumns = IntStream.range(0, allColumns.length).filter(i -> TypeConverter.isVarchar(tableStructure.get(i)) || layout.hasZone(i)).toArray();
+        zoneMap = new ZoneMap(CatalogManager.getTableZoneMapPath(databaseName, tableName), layout, Config.getZoneMapBlockSize());
+        if (zoneMap.isRebuildNeeded()) {
+            rebuildZoneMap();
+        }
+        statistics = new StatisticsTracker(databaseName, tableName, layout);
+        log.debug("Open: RecordHandler " + fileLocation);
     }
 
     public void insert(ArrayList<String> values, int line) throws IOException {
@@ -31,108 +98,254 @@ public class RecordHandler {
             log.info("Wrong length of values");
             return;
         }
-        long offset = line * recordSize;
-        io.seek(offset);
-        if (io.length() > offset){
-            boolean deletionByte = io.readBoolean();
-            if(deletionByte){
-                log.info("Invalid location for write");
-                return;
-            }
-            io.seek(offset);
+        if (storage.isLive(line)){
+            log.info("Invalid location for write");
+            return;
         }
 
-        io.writeBoolean(true);
-        for(int i = 0; i < values.size(); i++){
-            // if(values.get(i).equals("null")){
-            //    io.writeBoolean(false);
-            //    io.write(new byte[(int) TypeConverter.sizeof(tableStructure.get(i))]);
-            //}else{
-            io.writeBoolean(true);
-            io.write(TypeConverter.toBytes(tableStructure.get(i), values.get(i)));
-            //}
+        ByteBuffer buffer = ByteBuffer.allocate((int) recordSize);
+        encode(values, buffer);
+        storage.write(line, buffer.array());
+        zoneMap.add(line, buffer, 0);
+        statistics.add(buffer, 0);
+    }
 
+    // writes the rows to consecutive lines starting at firstLine with a single write, the lines must be free
+    // nothing is written if a row has the wrong length or a line is live (the indexes would point at the wrong records)
+    public void insertBatch(List<ArrayList<String>> rows, int firstLine) throws IOException, InvalidWriteException {
+        for (var values : rows) {
+            if (values.size() != tableStructure.size()){
+                throw new IllegalArgumentException("Wrong length of values: " + values.size() + " instead of " + tableStructure.size());
+            }
+        }
+        long lastWritten = Long.min(firstLine + rows.size(), storage.getRecordCount());
+        for (int line = firstLine; line < lastWritten; line++) {
+            if (storage.isLive(line)) {
+                log.error("Invalid location for write: line " + line + " is live");
+                throw new InvalidWriteException();
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) (rows.size() * recordSize));
+        for (var values : rows) {
+            encode(values, buffer);
+        }
+        storage.write(firstLine, buffer.array());
+        for (int i = 0; i < rows.size(); i++) {
+            zoneMap.add(firstLine + i, buffer, (int) (i * recordSize));
+            statistics.add(buffer, (int) (i * recordSize));
         }
     }
 
-    public void deleteLine(int line) throws IOException {
-        long offset = line * recordSize;
+    private void encode(ArrayList<String> values, ByteBuffer buffer) throws IOException {
+        layout.encode(values, buffer);
+    }
 
-        if(offset >= io.length()){
+    public void deleteLine(int line) throws IOException {
+        if(line >= storage.getRecordCount()){
             log.info("offset too long");
+            return;
         }
 
-        io.seek(offset);
-        boolean deletionByte = io.readBoolean();
-        if(!deletionByte){
+        if(!storage.isLive(line)){
             log.info("Line is not written");
             return;
         }
 
-        io.seek(offset);
-        io.writeBoolean(false);
+        // the record's varchar values are freed in the heap, its values leave the counts of the zone map and the statistics
+        ByteBuffer record = ByteBuffer.allocate((int) recordSize);
+        storage.read(line, deletedColumns, record.array());
+        if (heap != null) {
+            layout.releaseVarchars(record, 0);
+        }
+        zoneMap.remove(line, record, 0);
+        statistics.remove(record, 0);
+        storage.setDeleted(line);
     }
 
-    public ArrayList<String> readLine(int line) throws IOException, InvalidReadException {
-        ArrayList<String> values = new ArrayList<>();
-        long offset = line * recordSize;
-        if(offset >= io.length()){
+    // images of count consecutive lines straight from the files (positional reads, safe from several threads),
+    // only the deletion byte, the null bitmap and the given columns are guaranteed to be filled, see flush()
+    void readChunk(int firstLine, int count, int[] columns, byte[] images) throws IOException {
+        storage.readChunk(firstLine, count, columns, images);
+    }
+
+    // false if the line is deleted or out of the file
+    public boolean isLive(int line) throws IOException {
+        return storage.isLive(line);
+    }
+
+    // image of the record in row layout, only the given columns are guaranteed to be filled
+    private byte[] readRecord(int line, int[] columns) throws IOException, InvalidReadException {
+        if(line >= storage.getRecordCount()){
             throw new InvalidReadException();
         }
 
-        io.seek(offset);
-        boolean deletionByte = io.readBoolean();
-        if(!deletionByte){
+        byte[] record = new byte[(int) recordSize];
+        storage.read(line, columns, record);
+        return record;
+    }
+
+    public ArrayList<String> readLine(int line) throws IOException, InvalidReadException {
+        ArrayList<String> values = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(readRecord(line, allColumns));
+        if(!layout.isLive(buffer, 0)){
             throw new InvalidReadException();
         }
 
-        for(String type : tableStructure){
-            boolean nullBit = io.readBoolean();
-            byte[] bytes = new byte[(int) TypeConverter.sizeof(type)];
-            io.readFully(bytes);
-            if(nullBit){
-                values.add(TypeConverter.toString(type, bytes));
-            }else{
-                values.add("null");
-            }
+        for(int i = 0; i < tableStructure.size(); i++){
+            values.add(layout.decodeColumnString(buffer, 0, i));
         }
 
         return values;
     }
 
     public ArrayList<Object> readLineAsObjectList(int line) throws IOException, InvalidReadException {
+        return decodeAsObjectList(ByteBuffer.wrap(readRecord(line, allColumns)), 0);
+    }
+
+    // decodes the record starting at the given position of the buffer, the buffer's position is not modified
+    public ArrayList<Object> decodeAsObjectList(ByteBuffer buffer, int position) throws InvalidReadException {
         ArrayList<Object> values = new ArrayList<>();
-        long offset = line * recordSize;
-        if(offset >= io.length()){
+        decodeInto(buffer, position, values);
+        return values;
+    }
+
+    // same as decodeAsObjectList, but fills the given row (it is cleared first) so that it can be reused between records
+    public void decodeInto(ByteBuffer buffer, int position, ArrayList<Object> values) throws InvalidReadException {
+        decodeInto(buffer, position, allColumns, values);
+    }
+
+    // decodes only the given columns (indexes into the table structure), the other columns' bytes are skipped
+    public void decodeInto(ByteBuffer buffer, int position, int[] columns, ArrayList<Object> values) throws InvalidReadException {
+        if(!layout.isLive(buffer, position)){
             throw new InvalidReadException();
         }
+        layout.decode(buffer, position, columns, values);
+    }
+
+    public void readLineInto(int line, ArrayList<Object> values) throws IOException, InvalidReadException {
+        readLineInto(line, allColumns, values);
+    }
+
+    public void readLineInto(int line, int[] columns, ArrayList<Object> values) throws IOException, InvalidReadException {
+        decodeInto(ByteBuffer.wrap(readRecord(line, columns)), 0, columns, values);
+    }
 
-        io.seek(offset);
-        boolean deletionByte = io.readBoolean();
-        if(!deletionByte){
+    // false if the record does not pass the filter, then nothing is decoded
+    public boolean readLineInto(int line, int[] columns, CodeFilter filter, ArrayList<Object> values) throws IOException, InvalidReadException {
+        byte[] record = readRecord(line, filter.getColumns());
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        if(!layout.isLive(buffer, 0)){
             throw new InvalidReadException();
         }
+        if(!filter.test(layout, buffer, 0)){
+            return false;
+        }
+        // a row image is complete already, a columnar one only holds the filtered columns so far
+        if(columnar){
+            storage.read(line, columns, record);
+        }
+        layout.decode(buffer, 0, columns, values);
+        return true;
+    }
 
-        for(String type : tableStructure){
-            boolean nullBit = io.readBoolean();
-            byte[] bytes = new byte[(int) TypeConverter.sizeof(type)];
-            io.readFully(bytes);
-            if(nullBit){
-                values.add(TypeConverter.toObject(type, bytes));
-            }else{
-                values.add(null);
-            }
+    // same as above for a record that is already in memory (memory mapped)
+    public boolean decodeInto(ByteBuffer buffer, int position, int[] columns, CodeFilter filter, ArrayList<Object> values) throws InvalidReadException {
+        if(!layout.isLive(buffer, position)){
+            throw new InvalidReadException();
         }
+        if(!filter.test(layout, buffer, position)){
+            return false;
+        }
+        layout.decode(buffer, position, columns, values);
+        return true;
+    }
 
-        return values;
+    // equality filter on dictionary encoded columns, the values are looked up in the dictionaries once
+    public CodeFilter codeFilter(int[] columns, List<String> values) throws IOException {
+        int[] codes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            // null values are not in the dictionary, nothing equals null
+            if (TypeConverter.isNull(values.get(i))) {
+                codes[i] = -1;
+                continue;
+            }
+            try {
+                codes[i] = dictionaries[columns[i]].lookup(RecordStandardizer.formatString(values.get(i), tableStructure.get(columns[i])));
+            } catch (InvalidTypeException e) {
+                codes[i] = -1;
+            }
+        }
+        return new CodeFilter(columns, codes);
     }
 
     public long getRecordCount() throws IOException {
-        return io.length() / recordSize;
+        return storage.getRecordCount();
     }
 
+    // tables created before the zone maps, or whose data file was repaired by the recovery
+    private void rebuildZoneMap() throws IOException {
+        long recordCount = storage.getRecordCount();
+        int[] zonedColumns = IntStream.range(0, allColumns.length).filter(layout::hasZone).toArray();
+        byte[] record = new byte[(int) recordSize];
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        for (int line = 0; line < recordCount; line++) {
+            storage.read(line, zonedColumns, record);
+            if (layout.isLive(buffer, 0)) {
+                zoneMap.add(line, buffer, 0);
+            }
+        }
+        zoneMap.flush();
+        log.info("Zone map rebuilt, " + recordCount + " lines checked");
+    }
+
+    // cuts the file after the first recordCount lines
+    public void truncate(long recordCount) throws IOException {
+        storage.truncate(recordCount);
+        zoneMap.truncate(recordCount);
+        statistics.truncated();
+        if (heap != null) {
+            heap.truncateEmptyPages();
+        }
+    }
+
+    public FreeSpaceMap getFreeSpaceMap() throws IOException {
+        if (freeSpaceMap == null) {
+            freeSpaceMap = new FreeSpaceMap(databaseName, tableName, this);
+        }
+        return freeSpaceMap;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        storage.flush();
+        zoneMap.flush();
+        if (freeSpaceMap != null) {
+            freeSpaceMap.flush();
+        }
+        statistics.flush(storage.getRecordCount());
+        if (heap != null) {
+            heap.flush();
+        }
+    }
+
+    @Override
     public void close() throws IOException {
-        System.out.println("Close RecordHandler");
-        io.close();
+        log.debug("Close: RecordHandler " + fileLocation);
+        log.info(storage.toString());
+        statistics.flush(storage.getRecordCount());
+        storage.close();
+        zoneMap.close();
+        if (freeSpaceMap != null) {
+            freeSpaceMap.close();
+        }
+        if (heap != null) {
+            heap.close();
+        }
+        for (ColumnDictionary dictionary : dictionaries) {
+            if (dictionary != null) {
+                dictionary.close();
+            }
+        }
     }
 }
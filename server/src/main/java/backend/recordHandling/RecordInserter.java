@@ -1,39 +1,75 @@
 package backend.recordHandling;
 
 import backend.Indexing.MultipleIndexUpdater;
-import backend.exceptions.recordHandlingExceptions.DeletedRecordLinesEmpty;
+import backend.exceptions.recordHandlingExceptions.InvalidWriteException;
 import backend.exceptions.recordHandlingExceptions.KeyAlreadyInTreeException;
-import backend.service.CatalogManager;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 public class RecordInserter {
     private final RecordHandler recordHandler;
+    private final FreeSpaceMap freeSpaceMap;
     private final MultipleIndexUpdater multipleIndexUpdater;
     private final String databaseName, tableName;
 
     public RecordInserter(String databaseName, String tableName) throws IOException {
         this.databaseName = databaseName;
         this.tableName = tableName;
-        recordHandler = new RecordHandler(databaseName, tableName);
+        recordHandler = HandlerRegistry.recordHandler(databaseName, tableName);
+        freeSpaceMap = recordHandler.getFreeSpaceMap();
         multipleIndexUpdater = new MultipleIndexUpdater(databaseName, tableName);
     }
 
     public void insert(ArrayList<String> values) throws IOException {
-        int pointer;
-        try{
-            pointer = CatalogManager.deletedRecordLinesPop(databaseName, tableName);
-        }catch (Exception e){
-            pointer = (int)recordHandler.getRecordCount();
+        int pointer = freeSpaceMap.allocate();
+        if (pointer == -1) {
+            pointer = (int) recordHandler.getRecordCount();
         }
 
         recordHandler.insert(values, pointer);
         multipleIndexUpdater.insert(values, pointer);
     }
 
+    // reserves a line for every row, contiguous lines are written with one write and the indexes are updated in one batch
+    public void insertBatch(List<ArrayList<String>> rows) throws IOException, KeyAlreadyInTreeException, InvalidWriteException {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        // reused lines come in increasing order, the rest is appended after the end of the file
+        List<Integer> pointers = freeSpaceMap.allocate(rows.size());
+        int reusedCount = pointers.size();
+        int end = (int) recordHandler.getRecordCount();
+        while (pointers.size() < rows.size()) {
+            pointers.add(end++);
+        }
+
+        try {
+            int runStart = 0;
+            for (int i = 1; i <= rows.size(); i++) {
+                if (i == rows.size() || pointers.get(i) != pointers.get(i - 1) + 1) {
+                    recordHandler.insertBatch(rows.subList(runStart, i), pointers.get(runStart));
+                    runStart = i;
+                }
+            }
+        } catch (InvalidWriteException | IllegalArgumentException e) {
+            // the reused lines that were not written are free again, a live line the map handed out stays in use
+            // (the written runs are undone by the statement's rollback)
+            for (int pointer : pointers.subList(0, reusedCount)) {
+                if (!recordHandler.isLive(pointer)) {
+                    freeSpaceMap.release(pointer);
+                }
+            }
+            throw e;
+        }
+
+        multipleIndexUpdater.insertBatch(rows, pointers);
+    }
+
     public void close() throws IOException {
-        recordHandler.close();
+        HandlerRegistry.release(recordHandler);
         multipleIndexUpdater.close();
     }
 }
@@ -0,0 +1,231 @@
+package backend.recordHandling;
+
+import backend.exceptions.recordHandlingExceptions.InvalidTypeException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// byte layout of a table record, computed once from the field types
+//      [deletion byte][null bitmap, one bit per column][value of column 0][value of column 1]...
+// a null value has its bit set, its value bytes are left zero
+// decoding with a projection only touches the bytes of the requested columns
+// a dictionary encoded column holds the int code of its value instead of the value
+// a varchar column holds the reference of its value in the table's VarcharHeap
+public class RecordLayout {
+    private final String[] types;
+    // typed reader / writer of every column, the type strings are not looked at while decoding
+    private final ColumnCodec[] codecs;
+    private final int[] offsets;
+    private final int[] sizes;
+    private final int recordSize;
+    // deletion byte + null bitmap
+    private final int headerSize;
+    // null for the columns that are not dictionary encoded
+    private final ColumnDictionary[] dictionaries;
+    // null if the table has no varchar column
+    private final VarcharHeap heap;
+    private final int[] varcharColumns;
+    // varchar columns of a table with a heap
+    private final boolean[] inHeap;
+
+    public RecordLayout(List<String> types) {
+        this(types, new ColumnDictionary[types.size()], null);
+    }
+
+    public RecordLayout(List<String> types, ColumnDictionary[] dictionaries, VarcharHeap heap) {
+        this.types = types.toArray(new String[0]);
+        this.offsets = new int[this.types.length];
+        this.sizes = new int[this.types.length];
+        this.codecs = new ColumnCodec[this.types.length];
+        this.dictionaries = dictionaries;
+        this.heap = heap;
+
+        headerSize = 1 + (this.types.length + 7) / 8;
+        int offset = headerSize;
+        for (int i = 0; i < this.types.length; i++) {
+            offsets[i] = offset;
+            codecs[i] = ColumnCodec.of(this.types[i]);
+            if (dictionaries[i] != null) {
+                sizes[i] = Integer.BYTES;
+            } else if (TypeConverter.isVarchar(this.types[i])) {
+                sizes[i] = VarcharHeap.REFERENCE_SIZE;
+            } else {
+                sizes[i] = codecs[i].size();
+            }
+            offset += sizes[i];
+        }
+        recordSize = offset;
+        varcharColumns = IntStream.range(0, this.types.length).filter(i -> TypeConverter.isVarchar(this.types[i])).toArray();
+        inHeap = new boolean[this.types.length];
+        for (int column : varcharColumns) {
+            inHeap[column] = heap != null;
+        }
+    }
+
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    public int getColumnCount() {
+        return types.length;
+    }
+
+    public int getHeaderSize() {
+        return headerSize;
+    }
+
+    // offset of the column's value inside the record
+    public int getOffset(int column) {
+        return offsets[column];
+    }
+
+    public int getSize(int column) {
+        return sizes[column];
+    }
+
+    public String getType(int column) {
+        return types[column];
+    }
+
+    public ColumnCodec getCodec(int column) {
+        return codecs[column];
+    }
+
+    // fixed width values stored in the record itself, a ZoneMap keeps their range per block
+    public boolean hasZone(int column) {
+        return dictionaries[column] == null && !TypeConverter.isVarchar(types[column]) && sizes[column] > 0;
+    }
+
+    public ColumnDictionary getDictionary(int column) {
+        return dictionaries[column];
+    }
+
+    // column indexes of the given names, in the order of the names
+    public static int[] project(List<String> allColumnNames, List<String> columnNames) {
+        int[] columns = new int[columnNames.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = allColumnNames.indexOf(columnNames.get(i));
+        }
+        return columns;
+    }
+
+    public boolean isLive(ByteBuffer buffer, int position) {
+        return buffer.get(position) != 0;
+    }
+
+    public boolean isNull(ByteBuffer buffer, int position, int column) {
+        return (buffer.get(position + 1 + column / 8) & (1 << (column % 8))) != 0;
+    }
+
+    public static void setNull(byte[] image, int position, int column) {
+        image[position + 1 + column / 8] |= (byte) (1 << (column % 8));
+    }
+
+    // writes the live record of the values to the buffer's position, "null" values only get their bit set
+    public void encode(List<String> values, ByteBuffer buffer) throws IOException {
+        int position = buffer.position();
+        Arrays.fill(buffer.array(), buffer.arrayOffset() + position, buffer.arrayOffset() + position + recordSize, (byte) 0);
+        buffer.put(position, (byte) 1);
+        for (int i = 0; i < values.size(); i++) {
+            String value = values.get(i);
+            if (TypeConverter.isNull(value)) {
+                setNull(buffer.array(), buffer.arrayOffset() + position, i);
+            } else if (dictionaries[i] != null || inHeap[i]) {
+                buffer.put(position + offsets[i], encodeColumn(i, value));
+            } else {
+                codecs[i].write(buffer, position + offsets[i], codecs[i].parse(value));
+            }
+        }
+        buffer.position(position + recordSize);
+    }
+
+    // decodes only the given columns of the record starting at position, the buffer's position is not modified
+    public void decode(ByteBuffer buffer, int position, int[] columns, ArrayList<Object> values) {
+        values.clear();
+        for (int column : columns) {
+            values.add(decodeColumn(buffer, position, column));
+        }
+    }
+
+    public Object decodeColumn(ByteBuffer buffer, int position, int column) {
+        if (isNull(buffer, position, column)) {
+            return null;
+        }
+        int offset = position + offsets[column];
+        if (dictionaries[column] != null) {
+            return dictionaries[column].decode(buffer.getInt(offset));
+        }
+        if (inHeap[column]) {
+            return readVarchar(buffer, offset);
+        }
+        return codecs[column].read(buffer, offset);
+    }
+
+    // same as decodeColumn, but the value is given as a string ("null" for null values)
+    public String decodeColumnString(ByteBuffer buffer, int position, int column) {
+        if (isNull(buffer, position, column)) {
+            return TypeConverter.NULL;
+        }
+        int offset = position + offsets[column];
+        if (dictionaries[column] != null) {
+            return dictionaries[column].decode(buffer.getInt(offset));
+        }
+        if (inHeap[column]) {
+            return readVarchar(buffer, offset);
+        }
+        return codecs[column].readString(buffer, offset);
+    }
+
+    // compares the stored code of a dictionary encoded column without decoding the value
+    public boolean hasCode(ByteBuffer buffer, int position, int column, int code) {
+        return !isNull(buffer, position, column) && buffer.getInt(position + offsets[column]) == code;
+    }
+
+    // value bytes of the column as stored in the record, dictionary encoded values get their code
+    public byte[] encodeColumn(int column, String value) throws IOException {
+        if (dictionaries[column] != null) {
+            try {
+                String padded = RecordStandardizer.formatString(value, types[column]);
+                return ByteBuffer.allocate(Integer.BYTES).putInt(dictionaries[column].encode(padded)).array();
+            } catch (InvalidTypeException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        if (inHeap[column]) {
+            try {
+                return heap.insert(RecordStandardizer.formatString(value, types[column]));
+            } catch (InvalidTypeException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return codecs[column].toBytes(codecs[column].parse(value));
+    }
+
+    private String readVarchar(ByteBuffer buffer, int position) {
+        // the heap's page cache is shared by the workers of a parallel scan
+        try {
+            synchronized (heap) {
+                return heap.read(buffer, position);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public int[] getVarcharColumns() {
+        return varcharColumns;
+    }
+
+    // frees the varchar values of the record starting at position (the record is being deleted)
+    public void releaseVarchars(ByteBuffer buffer, int position) throws IOException {
+        for (int column : varcharColumns) {
+            if (!isNull(buffer, position, column)) {
+                heap.release(buffer, position + offsets[column]);
+            }
+        }
+    }
+}
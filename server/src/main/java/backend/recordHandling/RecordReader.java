@@ -1,27 +1,125 @@
 package backend.recordHandling;
 
+import backend.config.Config;
+import backend.databaseModels.conditions.Operator;
 import backend.exceptions.recordHandlingExceptions.InvalidReadException;
 import backend.service.CatalogManager;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 public class RecordReader {
     private RecordHandler recordHandler;
     private final String databaseName, tableName;
 
-    public RecordReader(String databaseName, String tableName) throws FileNotFoundException {
+    // only set in memory mapped mode
+    private MappedRecordFile mappedFile;
+
+    public RecordReader(String databaseName, String tableName) throws IOException {
+        this(databaseName, tableName, Config.isMemoryMappedScan());
+    }
+
+    public RecordReader(String databaseName, String tableName, boolean memoryMapped) throws IOException {
         this.databaseName = databaseName;
         this.tableName = tableName;
-        recordHandler = new RecordHandler(databaseName, tableName);
+        recordHandler = HandlerRegistry.recordHandler(databaseName, tableName);
+        // a columnar data file only holds the deletion bytes, its columns are read through the page caches
+        if (memoryMapped && !recordHandler.isColumnar()) {
+            // the mapping must see everything written through the page cache
+            recordHandler.flush();
+            mappedFile = new MappedRecordFile(recordHandler.getFileLocation(), recordHandler.getRecordSize());
+        }
+    }
+
+    long getRecordCount() throws IOException {
+        if (mappedFile != null) {
+            return mappedFile.getRecordCount();
+        }
+        return recordHandler.getRecordCount();
+    }
+
+    private ArrayList<Object> readLineAsObjectList(int line) throws IOException, InvalidReadException {
+        ArrayList<Object> record = new ArrayList<>();
+        readLineInto(line, record);
+        return record;
+    }
+
+    void readLineInto(int line, ArrayList<Object> record) throws IOException, InvalidReadException {
+        readLineInto(line, null, record);
+    }
+
+    // columns == null -> every column is decoded
+    void readLineInto(int line, int[] columns, ArrayList<Object> record) throws IOException, InvalidReadException {
+        if (mappedFile != null) {
+            ByteBuffer buffer = mappedFile.getBuffer(line);
+            if (buffer == null) {
+                throw new InvalidReadException();
+            }
+            if (columns == null) {
+                recordHandler.decodeInto(buffer, mappedFile.getPosition(line), record);
+            } else {
+                recordHandler.decodeInto(buffer, mappedFile.getPosition(line), columns, record);
+            }
+            return;
+        }
+        if (columns == null) {
+            recordHandler.readLineInto(line, record);
+        } else {
+            recordHandler.readLineInto(line, columns, record);
+        }
+    }
+
+    // false if the record does not pass the filter, columns can't be null here
+    boolean readLineInto(int line, int[] columns, CodeFilter filter, ArrayList<Object> record) throws IOException, InvalidReadException {
+        if (mappedFile != null) {
+            ByteBuffer buffer = mappedFile.getBuffer(line);
+            if (buffer == null) {
+                throw new InvalidReadException();
+            }
+            return recordHandler.decodeInto(buffer, mappedFile.getPosition(line), columns, filter, record);
+        }
+        return recordHandler.readLineInto(line, columns, filter, record);
+    }
+
+    CodeFilter codeFilter(List<String> columnNames, List<String> values) throws IOException {
+        return recordHandler.codeFilter(project(columnNames), values);
+    }
+
+    ZoneFilter zoneFilter(List<String> columnNames, List<Operator> operators, List<Object> values) {
+        return new ZoneFilter(recordHandler.getZoneMap(), project(columnNames), operators.toArray(new Operator[0]), values.toArray());
+    }
+
+    int[] project(List<String> columnNames) {
+        return RecordLayout.project(CatalogManager.getFieldNames(databaseName, tableName), columnNames);
+    }
+
+    // single record lookup, null if the line is deleted or out of the file
+    public ArrayList<Object> readRecord(int line) throws IOException {
+        try {
+            return readLineAsObjectList(line);
+        } catch (InvalidReadException e) {
+            return null;
+        }
+    }
+
+    // same as readRecord(line), but only the given columns are read
+    public ArrayList<Object> readRecord(int line, List<String> columnNames) throws IOException {
+        try {
+            ArrayList<Object> record = new ArrayList<>(columnNames.size());
+            readLineInto(line, project(columnNames), record);
+            return record;
+        } catch (InvalidReadException e) {
+            return null;
+        }
     }
 
     public ArrayList<ArrayList<Object>> scan() throws IOException {
         ArrayList<ArrayList<Object>> table = new ArrayList<>();
-        for(int i = 0; i < recordHandler.getRecordCount(); i++){
+        long recordCount = getRecordCount();
+        for(int i = 0; i < recordCount; i++){
             try{
-                table.add(recordHandler.readLineAsObjectList(i));
+                table.add(readLineAsObjectList(i));
             }catch (InvalidReadException ignored){}
         }
         return table;
@@ -29,30 +127,25 @@ public class RecordReader {
 
     public LinkedHashSet<Integer> getAllPointers() throws IOException {
         LinkedHashSet<Integer> pointers = new LinkedHashSet<>();
-        for (int i = 0; i < recordHandler.getRecordCount(); i++){
-            pointers.add(i);
+        FreeSpaceMap freeSpaceMap = recordHandler.getFreeSpaceMap();
+        long recordCount = recordHandler.getRecordCount();
+        for (int i = 0; i < recordCount; i++){
+            if (!freeSpaceMap.isFree(i)) {
+                pointers.add(i);
+            }
         }
-        ArrayDeque<Integer> deletedLines = CatalogManager.deletedRecordLinesQueue(databaseName, tableName);
-        pointers.removeAll(deletedLines);
         return pointers;
     }
 
     public ArrayList<ArrayList<Object>> scan(ArrayList<String> columnNames) throws IOException {
-        List<String> allColumnNames = CatalogManager.getFieldNames(databaseName, tableName);
-
-        ArrayList<Integer> columns = new ArrayList<>();
-        for(String columnName : columnNames){
-            columns.add(allColumnNames.indexOf(columnName));
-        }
+        int[] columns = project(columnNames);
 
         ArrayList<ArrayList<Object>> table = new ArrayList<>();
-        for(int i = 0; i < recordHandler.getRecordCount(); i++){
+        long recordCount = getRecordCount();
+        for(int i = 0; i < recordCount; i++){
             try{
-                ArrayList<Object> record = recordHandler.readLineAsObjectList(i);
-                ArrayList<Object> partialRecord = new ArrayList<>();
-                for(int column : columns){
-                    partialRecord.add(record.get(column));
-                }
+                ArrayList<Object> partialRecord = new ArrayList<>(columns.length);
+                readLineInto(i, columns, partialRecord);
                 table.add(partialRecord);
             }catch (InvalidReadException ignored){}
         }
@@ -63,28 +156,20 @@ public class RecordReader {
         ArrayList<ArrayList<Object>> table = new ArrayList<>();
         for(int i : pointers){
             try {
-                table.add(recordHandler.readLineAsObjectList(i));
+                table.add(readLineAsObjectList(i));
             } catch (InvalidReadException ignored){}
         }
         return table;
     }
 
     public ArrayList<ArrayList<Object>> scanLines(ArrayList<Integer> pointers, ArrayList<String> columnNames) throws IOException {
-        List<String> allColumnNames = CatalogManager.getFieldNames(databaseName, tableName);
-
-        ArrayList<Integer> columns = new ArrayList<>();
-        for(String columnName : columnNames){
-            columns.add(allColumnNames.indexOf(columnName));
-        }
+        int[] columns = project(columnNames);
 
         ArrayList<ArrayList<Object>> table = new ArrayList<>();
         for(int i : pointers){
             try {
-                ArrayList<Object> record = recordHandler.readLineAsObjectList(i);
-                ArrayList<Object> partialRecord = new ArrayList<>();
-                for(int column : columns){
-                    partialRecord.add(record.get(column));
-                }
+                ArrayList<Object> partialRecord = new ArrayList<>(columns.length);
+                readLineInto(i, columns, partialRecord);
                 table.add(partialRecord);
             } catch (InvalidReadException ignored){}
         }
@@ -92,6 +177,9 @@ public class RecordReader {
     }
 
     public void close() throws IOException {
-        recordHandler.close();
+        if (mappedFile != null) {
+            mappedFile.close();
+        }
+        HandlerRegistry.release(recordHandler);
     }
 }
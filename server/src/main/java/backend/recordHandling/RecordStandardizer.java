@@ -7,11 +7,16 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class RecordStandardizer {
-    // appends string types with spaces
+    private static final Pattern CHAR_PATTERN = Pattern.compile("char\\((\\d+)\\)");
+
+    // appends string types with spaces, varchar values are only cut to their maximal length
     public static String formatString(String str, String type) throws InvalidTypeException {
         String formattedStr;
-        Pattern pattern = Pattern.compile("char\\((\\d+)\\)");
-        Matcher matcher = pattern.matcher(type);
+        int varcharLength = TypeConverter.varcharLength(type);
+        if (varcharLength != -1) {
+            return str.length() > varcharLength ? str.substring(0, varcharLength) : str;
+        }
+        Matcher matcher = CHAR_PATTERN.matcher(type);
         if (matcher.find()) {
             long size = Long.parseLong(matcher.group(1));
             if (size < str.length()) {
@@ -0,0 +1,32 @@
+package backend.recordHandling;
+
+import java.io.IOException;
+
+// where the records of a table are kept on disk
+//      the handler always works on row layout images ([deletion byte][null bitmap][values]), see RecordLayout,
+//      the storage decides how the images are spread over the files
+interface RecordStorage {
+    long getRecordCount() throws IOException;
+
+    // false if the line is deleted or out of the file
+    boolean isLive(int line) throws IOException;
+
+    // fills the deletion byte and the given columns of the line's image, the other bytes may be left untouched
+    void read(int line, int[] columns, byte[] image) throws IOException;
+
+    // writes the complete images of consecutive lines starting at firstLine
+    void write(int firstLine, byte[] images) throws IOException;
+
+    void setDeleted(int line) throws IOException;
+
+    // same as read() for count consecutive lines starting at firstLine, straight from the shared files with positional
+    // reads (no page cache -> safe from several threads), the page caches must have been flushed
+    void readChunk(int firstLine, int count, int[] columns, byte[] images) throws IOException;
+
+    // cuts the storage after the first recordCount lines
+    void truncate(long recordCount) throws IOException;
+
+    void flush() throws IOException;
+
+    void close() throws IOException;
+}
@@ -0,0 +1,68 @@
+package backend.recordHandling;
+
+import java.io.IOException;
+
+// the whole record image at line * recordSize of the table's data file
+class RowStorage implements RecordStorage {
+    private final long recordSize;
+    private final SharedFile file;
+    private final PageCache pageCache;
+
+    RowStorage(String fileLocation, RecordLayout layout, int pageSize, int pageCacheCapacity) throws IOException {
+        recordSize = layout.getRecordSize();
+        file = SharedFile.open(fileLocation);
+        pageCache = new PageCache(file, fileLocation, pageSize, pageCacheCapacity);
+    }
+
+    @Override
+    public long getRecordCount() {
+        return pageCache.length() / recordSize;
+    }
+
+    @Override
+    public boolean isLive(int line) throws IOException {
+        long offset = line * recordSize;
+        return offset < pageCache.length() && pageCache.readByte(offset) != 0;
+    }
+
+    @Override
+    public void read(int line, int[] columns, byte[] image) throws IOException {
+        // one copy out of the page cache for the whole record, the columns are next to each other anyway
+        pageCache.read(line * recordSize, image);
+    }
+
+    @Override
+    public void readChunk(int firstLine, int count, int[] columns, byte[] images) throws IOException {
+        file.read(firstLine * recordSize, images, 0, (int) (count * recordSize));
+    }
+
+    @Override
+    public void write(int firstLine, byte[] images) throws IOException {
+        pageCache.write(firstLine * recordSize, images);
+    }
+
+    @Override
+    public void setDeleted(int line) throws IOException {
+        pageCache.writeByte(line * recordSize, (byte) 0);
+    }
+
+    @Override
+    public void truncate(long recordCount) throws IOException {
+        pageCache.truncate(recordCount * recordSize);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        pageCache.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        pageCache.flush();
+    }
+
+    @Override
+    public String toString() {
+        return pageCache.toString();
+    }
+}
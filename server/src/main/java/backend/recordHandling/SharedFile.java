@@ -0,0 +1,117 @@
+package backend.recordHandling;
+
+import lombok.Getter;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+
+// one long lived read / write channel per file, shared by every handler (and statement) working on the file
+//      reads and writes are positional, there is no shared file pointer -> concurrent readers don't disturb each other
+//      SharedFile file = SharedFile.open(location); ... file.read(position, bytes, 0, n) ...
+// the handlers don't close their files, a file stays open for the next statement until it is dropped (closeAll)
+// or replaced (close)
+public class SharedFile {
+    private static final HashMap<Path, SharedFile> openFiles = new HashMap<>();
+
+    private final Path path;
+    @Getter
+    private final String fileLocation;
+    private final FileChannel channel;
+
+    private SharedFile(Path path, String fileLocation) throws IOException {
+        this.path = path;
+        this.fileLocation = fileLocation;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // creates the file if it doesn't exist
+    public static synchronized SharedFile open(String fileLocation) throws IOException {
+        Path path = normalize(fileLocation);
+        SharedFile file = openFiles.get(path);
+        if (file == null || !file.channel.isOpen()) {
+            file = new SharedFile(path, fileLocation);
+            openFiles.put(path, file);
+        }
+        return file;
+    }
+
+    // the file was replaced or deleted behind the registry, the next open gets a new channel
+    public static synchronized void close(String fileLocation) throws IOException {
+        SharedFile file = openFiles.remove(normalize(fileLocation));
+        if (file != null) {
+            file.channel.close();
+        }
+    }
+
+    // every file inside the directory (drop table / database)
+    public static synchronized void closeAll(String directoryLocation) throws IOException {
+        Path directory = normalize(directoryLocation);
+        Iterator<SharedFile> it = openFiles.values().iterator();
+        while (it.hasNext()) {
+            SharedFile file = it.next();
+            if (file.path.startsWith(directory)) {
+                file.channel.close();
+                it.remove();
+            }
+        }
+    }
+
+    private static Path normalize(String location) {
+        return Paths.get(location).toAbsolutePath().normalize();
+    }
+
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    // reads count bytes at the position, the bytes past the end of the file are left untouched
+    public int read(long position, byte[] bytes, int from, int count) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, from, count);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position() - from) < 0) {
+                break;
+            }
+        }
+        return buffer.position() - from;
+    }
+
+    public int readInt(long position) throws IOException {
+        byte[] bytes = new byte[Integer.BYTES];
+        if (read(position, bytes, 0, bytes.length) < bytes.length) {
+            throw new EOFException(fileLocation);
+        }
+        return ByteBuffer.wrap(bytes).getInt();
+    }
+
+    public void write(long position, byte[] bytes, int from, int count) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, from, count);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position() - from);
+        }
+    }
+
+    // same as RandomAccessFile.setLength, a longer length pads the file with zeros
+    public void setLength(long length) throws IOException {
+        long size = channel.size();
+        if (length < size) {
+            channel.truncate(length);
+        } else if (length > size) {
+            write(length - 1, new byte[1], 0, 1);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SharedFile{" +
+                "fileLocation='" + fileLocation + '\'' +
+                ", open=" + channel.isOpen() +
+                '}';
+    }
+}
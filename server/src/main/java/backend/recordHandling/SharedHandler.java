@@ -0,0 +1,11 @@
+package backend.recordHandling;
+
+import java.io.IOException;
+
+// a handler the HandlerRegistry keeps open between statements
+public interface SharedHandler {
+    // writes back everything the handler holds in memory, the handler stays usable
+    void flush() throws IOException;
+
+    void close() throws IOException;
+}
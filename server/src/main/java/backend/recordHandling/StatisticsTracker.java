@@ -0,0 +1,127 @@
+package backend.recordHandling;
+
+import backend.databaseModels.ColumnStatisticsModel;
+import backend.databaseModels.TableStatisticsModel;
+import backend.service.CatalogManager;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+// row changes made through a RecordHandler, merged into the table's statistics (if it was analyzed) on flush / close
+// row and null counts are exact, min / max are widened for the fixed width columns (the ones with a zone),
+// distinct counts of key like columns grow with the rows, the other distinct counts and the histograms wait for ANALYZE
+class StatisticsTracker {
+    // a column whose values were (nearly) all distinct is taken to stay that way
+    private static final double KEY_LIKE_RATIO = 0.9;
+
+    private final String databaseName, tableName;
+    private final RecordLayout layout;
+
+    private long insertedCount, deletedCount;
+    private final long[] insertedNulls, deletedNulls;
+    private final Object[] min, max;
+    private boolean changed;
+
+    StatisticsTracker(String databaseName, String tableName, RecordLayout layout) {
+        this.databaseName = databaseName;
+        this.tableName = tableName;
+        this.layout = layout;
+        insertedNulls = new long[layout.getColumnCount()];
+        deletedNulls = new long[layout.getColumnCount()];
+        min = new Object[layout.getColumnCount()];
+        max = new Object[layout.getColumnCount()];
+    }
+
+    // the record starting at position of the buffer was inserted
+    void add(ByteBuffer record, int position) {
+        insertedCount++;
+        for (int column = 0; column < insertedNulls.length; column++) {
+            if (layout.isNull(record, position, column)) {
+                insertedNulls[column]++;
+            } else if (layout.hasZone(column)) {
+                ColumnCodec codec = layout.getCodec(column);
+                Object value = codec.read(record, position + layout.getOffset(column));
+                if (min[column] == null || codec.compare(value, min[column]) < 0) {
+                    min[column] = value;
+                }
+                if (max[column] == null || codec.compare(value, max[column]) > 0) {
+                    max[column] = value;
+                }
+            }
+        }
+        changed = true;
+    }
+
+    // the record is being deleted, only its null bitmap is needed
+    void remove(ByteBuffer record, int position) {
+        deletedCount++;
+        for (int column = 0; column < deletedNulls.length; column++) {
+            if (layout.isNull(record, position, column)) {
+                deletedNulls[column]++;
+            }
+        }
+        changed = true;
+    }
+
+    // the data file was cut, the slot counts change
+    void truncated() {
+        changed = true;
+    }
+
+    void flush(long slotCount) {
+        if (!changed) {
+            return;
+        }
+        CatalogManager.updateTableStatistics(databaseName, tableName, statistics -> merge(statistics, slotCount));
+        insertedCount = deletedCount = 0;
+        for (int column = 0; column < min.length; column++) {
+            insertedNulls[column] = deletedNulls[column] = 0;
+            min[column] = max[column] = null;
+        }
+        changed = false;
+    }
+
+    private void merge(TableStatisticsModel statistics, long slotCount) {
+        long rowCount = Math.max(0, statistics.getRowCount() + insertedCount - deletedCount);
+        ArrayList<ColumnStatisticsModel> columns = statistics.getColumns();
+        for (int column = 0; column < columns.size() && column < min.length; column++) {
+            ColumnStatisticsModel columnStatistics = columns.get(column);
+            long oldValueCount = statistics.getRowCount() - columnStatistics.getNullCount();
+            long nullCount = Math.max(0, columnStatistics.getNullCount() + insertedNulls[column] - deletedNulls[column]);
+            long valueCount = Math.max(0, rowCount - nullCount);
+            columnStatistics.setNullCount(nullCount);
+
+            long distinctCount = columnStatistics.getDistinctCount();
+            if (oldValueCount > 0 && distinctCount >= KEY_LIKE_RATIO * oldValueCount) {
+                distinctCount = Math.round((double) distinctCount * valueCount / oldValueCount);
+            }
+            columnStatistics.setDistinctCount(Math.min(distinctCount, valueCount));
+
+            if (min[column] != null) {
+                widen(columnStatistics, column);
+            }
+        }
+        statistics.setRowCount(rowCount);
+        statistics.setSlotCount(slotCount);
+        statistics.setDeletedSlotCount(Math.max(0, slotCount - rowCount));
+        statistics.setModifiedRowCount(statistics.getModifiedRowCount() + insertedCount + deletedCount);
+    }
+
+    // the range (and the outer bounds of the histogram) covers the inserted values
+    private void widen(ColumnStatisticsModel columnStatistics, int column) {
+        ColumnCodec codec = layout.getCodec(column);
+        ArrayList<String> histogram = columnStatistics.getHistogram();
+        if (columnStatistics.getMin() == null || codec.compare(min[column], codec.parse(columnStatistics.getMin())) < 0) {
+            columnStatistics.setMin(String.valueOf(min[column]));
+            if (!histogram.isEmpty()) {
+                histogram.set(0, columnStatistics.getMin());
+            }
+        }
+        if (columnStatistics.getMax() == null || codec.compare(max[column], codec.parse(columnStatistics.getMax())) > 0) {
+            columnStatistics.setMax(String.valueOf(max[column]));
+            if (!histogram.isEmpty()) {
+                histogram.set(histogram.size() - 1, columnStatistics.getMax());
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package backend.recordHandling;
+
+import backend.config.Config;
+import backend.databaseModels.ColumnStatisticsModel;
+import backend.databaseModels.TableStatisticsModel;
+import backend.service.CatalogManager;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// collects the statistics of a table in one scan (ANALYZE)
+//      row, slot and null counts and min / max are exact
+//      distinct counts are estimated with a HyperLogLog sketch per column
+//      the equi-depth histograms are built from a reservoir sample of every column's values (-Ddb.statisticsSampleSize)
+@Slf4j
+public class TableAnalyzer {
+    private static final int HISTOGRAM_BUCKETS = 32;
+    // the same sample for the same table, plans don't change between two ANALYZEs of unchanged data
+    private static final long SAMPLE_SEED = 42;
+
+    public static TableStatisticsModel analyze(String databaseName, String tableName) throws IOException {
+        List<String> fieldNames = CatalogManager.getFieldNames(databaseName, tableName);
+        List<String> fieldTypes = CatalogManager.getFieldTypes(databaseName, tableName);
+        int columnCount = fieldNames.size();
+
+        ColumnCodec[] codecs = new ColumnCodec[columnCount];
+        DistinctSketch[] sketches = new DistinctSketch[columnCount];
+        ArrayList<ArrayList<Object>> samples = new ArrayList<>();
+        long[] nullCounts = new long[columnCount], valueCounts = new long[columnCount];
+        Object[] min = new Object[columnCount], max = new Object[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            codecs[i] = ColumnCodec.of(fieldTypes.get(i));
+            sketches[i] = new DistinctSketch();
+            samples.add(new ArrayList<>());
+        }
+
+        int sampleSize = Integer.max(1, Config.getStatisticsSampleSize());
+        Random random = new Random(SAMPLE_SEED);
+        long rowCount = 0;
+        RecordCursor cursor = new RecordCursor(databaseName, tableName, true);
+        long slotCount;
+        try {
+            cursor.open();
+            slotCount = cursor.getRecordCount();
+            ArrayList<Object> record;
+            while ((record = cursor.next()) != null) {
+                rowCount++;
+                for (int i = 0; i < columnCount; i++) {
+                    Object value = record.get(i);
+                    if (value == null) {
+                        nullCounts[i]++;
+                        continue;
+                    }
+                    long seen = ++valueCounts[i];
+                    if (min[i] == null || codecs[i].compare(value, min[i]) < 0) {
+                        min[i] = value;
+                    }
+                    if (max[i] == null || codecs[i].compare(value, max[i]) > 0) {
+                        max[i] = value;
+                    }
+                    sketches[i].add(value);
+
+                    // reservoir: every value so far has the same chance to be in the sample
+                    ArrayList<Object> sample = samples.get(i);
+                    if (sample.size() < sampleSize) {
+                        sample.add(value);
+                    } else {
+                        long slot = (long) (random.nextDouble() * seen);
+                        if (slot < sampleSize) {
+                            sample.set((int) slot, value);
+                        }
+                    }
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        TableStatisticsModel statistics = new TableStatisticsModel();
+        statistics.setRowCount(rowCount);
+        statistics.setSlotCount(slotCount);
+        statistics.setDeletedSlotCount(Math.max(0, slotCount - rowCount));
+        for (int i = 0; i < columnCount; i++) {
+            ColumnStatisticsModel column = new ColumnStatisticsModel(fieldNames.get(i), fieldTypes.get(i));
+            column.setNullCount(nullCounts[i]);
+            column.setDistinctCount(Math.min(valueCounts[i], sketches[i].estimate()));
+            if (min[i] != null) {
+                column.setMin(String.valueOf(min[i]));
+                column.setMax(String.valueOf(max[i]));
+                column.setHistogram(histogram(samples.get(i), codecs[i], min[i], max[i]));
+            }
+            statistics.getColumns().add(column);
+        }
+
+        log.info("Analyze: table=" + tableName + ", " + rowCount + " row(s), " + slotCount + " line(s)");
+        return statistics;
+    }
+
+    // the bounds of buckets holding the same number of sampled values, the outer bounds are the exact min / max
+    private static ArrayList<String> histogram(ArrayList<Object> sample, ColumnCodec codec, Object min, Object max) {
+        sample.sort(codec::compare);
+        int buckets = Integer.min(HISTOGRAM_BUCKETS, sample.size());
+        ArrayList<String> bounds = new ArrayList<>();
+        bounds.add(String.valueOf(min));
+        for (int bucket = 1; bucket < buckets; bucket++) {
+            bounds.add(String.valueOf(sample.get((int) ((long) bucket * (sample.size() - 1) / buckets))));
+        }
+        bounds.add(String.valueOf(max));
+        return bounds;
+    }
+
+    // HyperLogLog: the longest run of leading zero bits of the hashed values, kept for 2^PRECISION buckets of hashes
+    private static class DistinctSketch {
+        private static final int PRECISION = 11;
+        private static final int REGISTER_COUNT = 1 << PRECISION;
+
+        private final byte[] registers = new byte[REGISTER_COUNT];
+
+        void add(Object value) {
+            long hash = mix(value.hashCode());
+            int register = (int) (hash >>> (Long.SIZE - PRECISION));
+            int rank = Long.numberOfLeadingZeros(hash << PRECISION | (1L << (PRECISION - 1))) + 1;
+            if (rank > registers[register]) {
+                registers[register] = (byte) rank;
+            }
+        }
+
+        long estimate() {
+            double sum = 0;
+            int zeros = 0;
+            for (byte register : registers) {
+                sum += 1.0 / (1L << register);
+                if (register == 0) {
+                    zeros++;
+                }
+            }
+            double alpha = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+            double estimate = alpha * REGISTER_COUNT * REGISTER_COUNT / sum;
+            // few values -> counting the empty registers is more precise
+            if (estimate <= 2.5 * REGISTER_COUNT && zeros > 0) {
+                estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeros);
+            }
+            return Math.round(estimate);
+        }
+
+        // spreads the bits of the hash code over the whole long
+        private static long mix(long hash) {
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
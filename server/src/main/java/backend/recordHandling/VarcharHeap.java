@@ -0,0 +1,247 @@
+package backend.recordHandling;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+// varchar values of a table in slotted pages, a record only holds the reference of its value: [int page][short slot]
+//      page: [short slot count][short heap start][slot: short offset + short length]...  free gap  ...[values]
+//      the slot directory grows from the front, the values from the back, a free slot has offset 0
+// values can be moved inside their page (compaction) without touching the records, their slot stays the same
+// the reclaimable bytes of every page are kept in a side file (not logged, rebuilt from the pages when missing)
+@Slf4j
+public class VarcharHeap {
+    public static final int PAGE_SIZE = 8192;
+    private static final int HEADER_SIZE = 2 * Short.BYTES, SLOT_SIZE = 2 * Short.BYTES;
+    public static final int MAX_LENGTH = PAGE_SIZE - HEADER_SIZE - SLOT_SIZE;
+    public static final int REFERENCE_SIZE = Integer.BYTES + Short.BYTES;
+
+    private final SharedFile file;
+    private final PageCache pageCache;
+    private final String freeSpaceLocation;
+    // reclaimable bytes of every page: free gap + bytes of released values
+    private final ArrayList<Integer> freeBytes;
+    private boolean freeBytesDirty;
+
+    public VarcharHeap(String fileLocation, String freeSpaceLocation, int pageCacheCapacity) throws IOException {
+        file = SharedFile.open(fileLocation);
+        pageCache = new PageCache(file, fileLocation, PAGE_SIZE, pageCacheCapacity);
+        this.freeSpaceLocation = freeSpaceLocation;
+        freeBytes = new ArrayList<>();
+        loadFreeBytes();
+    }
+
+    /* ------------------------------------------------- Values ----------------------------------------------------- */
+    // stores the value and returns its reference
+    public byte[] insert(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        int page = findPage(bytes.length + SLOT_SIZE);
+
+        long pageStart = (long) page * PAGE_SIZE;
+        ByteBuffer header = readBytes(pageStart, HEADER_SIZE);
+        int slotCount = Short.toUnsignedInt(header.getShort(0));
+        int heapStart = Short.toUnsignedInt(header.getShort(Short.BYTES));
+
+        // reuse a released slot if there is one
+        int slot = slotCount;
+        ByteBuffer slots = readBytes(pageStart + HEADER_SIZE, slotCount * SLOT_SIZE);
+        for (int i = 0; i < slotCount; i++) {
+            if (slots.getShort(i * SLOT_SIZE) == 0) {
+                slot = i;
+                break;
+            }
+        }
+        int needed = bytes.length + (slot == slotCount ? SLOT_SIZE : 0);
+
+        // enough reclaimable space, but not in one piece -> move the values together first
+        if (heapStart - HEADER_SIZE - slotCount * SLOT_SIZE < needed) {
+            heapStart = compact(page, slotCount);
+        }
+
+        heapStart -= bytes.length;
+        pageCache.write(pageStart + heapStart, bytes);
+        writeShorts(pageStart + HEADER_SIZE + (long) slot * SLOT_SIZE, (short) heapStart, (short) bytes.length);
+        writeShorts(pageStart, (short) Integer.max(slotCount, slot + 1), (short) heapStart);
+        setFreeBytes(page, freeBytes.get(page) - needed);
+
+        return ByteBuffer.allocate(REFERENCE_SIZE).putInt(page).putShort((short) slot).array();
+    }
+
+    // value of the reference starting at position
+    public String read(ByteBuffer buffer, int position) throws IOException {
+        long pageStart = (long) buffer.getInt(position) * PAGE_SIZE;
+        int slot = Short.toUnsignedInt(buffer.getShort(position + Integer.BYTES));
+
+        ByteBuffer slotEntry = readBytes(pageStart + HEADER_SIZE + (long) slot * SLOT_SIZE, SLOT_SIZE);
+        int offset = Short.toUnsignedInt(slotEntry.getShort(0));
+        int length = Short.toUnsignedInt(slotEntry.getShort(Short.BYTES));
+
+        byte[] bytes = new byte[length];
+        pageCache.read(pageStart + offset, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    // frees the value of the reference starting at position
+    public void release(ByteBuffer buffer, int position) throws IOException {
+        int page = buffer.getInt(position);
+        long pageStart = (long) page * PAGE_SIZE;
+        int slot = Short.toUnsignedInt(buffer.getShort(position + Integer.BYTES));
+
+        ByteBuffer slotEntry = readBytes(pageStart + HEADER_SIZE + (long) slot * SLOT_SIZE, SLOT_SIZE);
+        if (slotEntry.getShort(0) == 0) {
+            return;
+        }
+        int length = Short.toUnsignedInt(slotEntry.getShort(Short.BYTES));
+        writeShorts(pageStart + HEADER_SIZE + (long) slot * SLOT_SIZE, (short) 0, (short) 0);
+
+        int slotCount = Short.toUnsignedInt(readBytes(pageStart, Short.BYTES).getShort(0));
+        ByteBuffer slots = readBytes(pageStart + HEADER_SIZE, slotCount * SLOT_SIZE);
+        for (int i = 0; i < slotCount; i++) {
+            if (slots.getShort(i * SLOT_SIZE) != 0) {
+                setFreeBytes(page, freeBytes.get(page) + length);
+                return;
+            }
+        }
+        // no value left in the page -> start it over
+        writeShorts(pageStart, (short) 0, (short) PAGE_SIZE);
+        setFreeBytes(page, PAGE_SIZE - HEADER_SIZE);
+    }
+    /* ------------------------------------------------ / Values ---------------------------------------------------- */
+
+    // first page with enough reclaimable space, a new page is appended if there is none
+    private int findPage(int needed) throws IOException {
+        for (int page = freeBytes.size() - 1; page >= 0; page--) {
+            if (freeBytes.get(page) >= needed) {
+                return page;
+            }
+        }
+
+        int page = freeBytes.size();
+        byte[] empty = new byte[PAGE_SIZE];
+        ByteBuffer.wrap(empty).putShort(0, (short) 0).putShort(Short.BYTES, (short) PAGE_SIZE);
+        pageCache.write((long) page * PAGE_SIZE, empty);
+        freeBytes.add(PAGE_SIZE - HEADER_SIZE);
+        freeBytesDirty = true;
+        return page;
+    }
+
+    // moves the values of the page to its end, returns the new heap start
+    private int compact(int page, int slotCount) throws IOException {
+        long pageStart = (long) page * PAGE_SIZE;
+        byte[] old = new byte[PAGE_SIZE];
+        pageCache.read(pageStart, old);
+        ByteBuffer oldPage = ByteBuffer.wrap(old);
+
+        byte[] compacted = new byte[PAGE_SIZE];
+        ByteBuffer newPage = ByteBuffer.wrap(compacted);
+        int heapStart = PAGE_SIZE;
+        for (int i = 0; i < slotCount; i++) {
+            int slotOffset = HEADER_SIZE + i * SLOT_SIZE;
+            int offset = Short.toUnsignedInt(oldPage.getShort(slotOffset));
+            int length = Short.toUnsignedInt(oldPage.getShort(slotOffset + Short.BYTES));
+            if (offset == 0) {
+                continue;
+            }
+            heapStart -= length;
+            System.arraycopy(old, offset, compacted, heapStart, length);
+            newPage.putShort(slotOffset, (short) heapStart);
+            newPage.putShort(slotOffset + Short.BYTES, (short) length);
+        }
+        newPage.putShort(0, (short) slotCount);
+        newPage.putShort(Short.BYTES, (short) heapStart);
+        pageCache.write(pageStart, compacted);
+        return heapStart;
+    }
+
+    // cuts off the empty pages at the end of the file
+    public void truncateEmptyPages() throws IOException {
+        int pageCount = freeBytes.size();
+        while (pageCount > 0 && freeBytes.get(pageCount - 1) == PAGE_SIZE - HEADER_SIZE) {
+            pageCount--;
+        }
+        if (pageCount < freeBytes.size()) {
+            pageCache.truncate((long) pageCount * PAGE_SIZE);
+            freeBytes.subList(pageCount, freeBytes.size()).clear();
+            freeBytesDirty = true;
+        }
+    }
+
+    /* ---------------------------------------------- Free space ---------------------------------------------------- */
+    private void setFreeBytes(int page, int bytes) {
+        freeBytes.set(page, bytes);
+        freeBytesDirty = true;
+    }
+
+    private void loadFreeBytes() throws IOException {
+        long pageCount = pageCache.length() / PAGE_SIZE;
+        File freeSpaceFile = new File(freeSpaceLocation);
+        if (freeSpaceFile.exists() && freeSpaceFile.length() == pageCount * Short.BYTES) {
+            try (RandomAccessFile freeIo = new RandomAccessFile(freeSpaceFile, "r")) {
+                byte[] bytes = new byte[(int) freeIo.length()];
+                freeIo.readFully(bytes);
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                for (int page = 0; page < pageCount; page++) {
+                    freeBytes.add(Short.toUnsignedInt(buffer.getShort()));
+                }
+            }
+            return;
+        }
+
+        // missing or out of date -> count the released bytes of every page
+        for (int page = 0; page < pageCount; page++) {
+            long pageStart = (long) page * PAGE_SIZE;
+            int slotCount = Short.toUnsignedInt(readBytes(pageStart, Short.BYTES).getShort(0));
+            ByteBuffer slots = readBytes(pageStart + HEADER_SIZE, slotCount * SLOT_SIZE);
+            int used = HEADER_SIZE + slotCount * SLOT_SIZE;
+            for (int i = 0; i < slotCount; i++) {
+                if (slots.getShort(i * SLOT_SIZE) != 0) {
+                    used += Short.toUnsignedInt(slots.getShort(i * SLOT_SIZE + Short.BYTES));
+                }
+            }
+            freeBytes.add(PAGE_SIZE - used);
+        }
+        freeBytesDirty = true;
+        log.info("Varchar heap free space rebuilt: " + pageCount + " page(s)");
+    }
+
+    private void saveFreeBytes() throws IOException {
+        if (!freeBytesDirty) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(freeBytes.size() * Short.BYTES);
+        for (int bytes : freeBytes) {
+            buffer.putShort((short) bytes);
+        }
+        try (RandomAccessFile freeIo = new RandomAccessFile(freeSpaceLocation, "rw")) {
+            freeIo.setLength(0);
+            freeIo.write(buffer.array());
+        }
+        freeBytesDirty = false;
+    }
+    /* --------------------------------------------- / Free space --------------------------------------------------- */
+
+    private ByteBuffer readBytes(long offset, int count) throws IOException {
+        byte[] bytes = new byte[count];
+        pageCache.read(offset, bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private void writeShorts(long offset, short first, short second) throws IOException {
+        pageCache.write(offset, ByteBuffer.allocate(2 * Short.BYTES).putShort(first).putShort(second).array());
+    }
+
+    public void flush() throws IOException {
+        pageCache.flush();
+        saveFreeBytes();
+    }
+
+    // the heap file stays open for the next statement, see SharedFile
+    public void close() throws IOException {
+        flush();
+    }
+}
@@ -0,0 +1,32 @@
+package backend.recordHandling;
+
+import backend.databaseModels.conditions.Operator;
+
+// range conditions of a scan, checked against the zone map before the records of a block are read
+public class ZoneFilter {
+    private final ZoneMap zoneMap;
+    private final int[] columns;
+    private final Operator[] operators;
+    private final Object[] values;
+
+    ZoneFilter(ZoneMap zoneMap, int[] columns, Operator[] operators, Object[] values) {
+        this.zoneMap = zoneMap;
+        this.columns = columns;
+        this.operators = operators;
+        this.values = values;
+    }
+
+    int getBlockSize() {
+        return zoneMap.getBlockSize();
+    }
+
+    // false if no record of the block can pass every condition
+    boolean test(int block) {
+        for (int i = 0; i < columns.length; i++) {
+            if (!zoneMap.mayMatch(block, columns[i], operators[i], values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
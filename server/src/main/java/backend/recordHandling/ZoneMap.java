@@ -0,0 +1,206 @@
+package backend.recordHandling;
+
+import backend.databaseModels.conditions.Operator;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// min / max value and null count of the fixed width columns for every block of consecutive record lines (zone map)
+//      file: [int block size][int entry size], then one entry per block, for every zoned column:
+//            [int null count][int value count][min value][max value] (values in their record encoding)
+// inserts widen the range of their block, deletes only lower the counts, so the range of a block always covers its values
+// dictionary encoded and varchar columns have no zone, a scan can't skip blocks on them
+// changes are kept in memory and only the modified byte range is written back on flush/close
+public class ZoneMap {
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int COUNTS_SIZE = 2 * Integer.BYTES;
+
+    private final RandomAccessFile io;
+    private final RecordLayout layout;
+    @Getter
+    private final int blockSize;
+    private final int[] zonedColumns;
+    // offset of the column inside a block's entry, -1 for columns without a zone
+    private final int[] entryOffsets;
+    private final int entrySize;
+
+    private byte[] zones;
+    private ByteBuffer buffer;
+    private int blockCount;
+    // the file was missing or written with another block size, the caller has to add every live record
+    @Getter
+    private boolean rebuildNeeded;
+    private int dirtyFrom, dirtyTo;
+
+    public ZoneMap(String fileLocation, RecordLayout layout, int blockSize) throws IOException {
+        this.layout = layout;
+        this.blockSize = blockSize;
+
+        entryOffsets = new int[layout.getColumnCount()];
+        int zoned = 0, offset = 0;
+        for (int i = 0; i < entryOffsets.length; i++) {
+            if (layout.hasZone(i)) {
+                entryOffsets[i] = offset;
+                offset += COUNTS_SIZE + 2 * layout.getSize(i);
+                zoned++;
+            } else {
+                entryOffsets[i] = -1;
+            }
+        }
+        entrySize = offset;
+        zonedColumns = new int[zoned];
+        for (int i = 0, j = 0; i < entryOffsets.length; i++) {
+            if (entryOffsets[i] != -1) {
+                zonedColumns[j++] = i;
+            }
+        }
+
+        io = new RandomAccessFile(fileLocation, "rw");
+        resetDirty();
+        long length = io.length();
+        if (length >= HEADER_SIZE && io.readInt() == blockSize && io.readInt() == entrySize
+                && (entrySize == 0 || (length - HEADER_SIZE) % entrySize == 0)) {
+            zones = new byte[(int) (length - HEADER_SIZE)];
+            io.readFully(zones);
+            blockCount = entrySize == 0 ? 0 : zones.length / entrySize;
+        } else {
+            io.setLength(0);
+            io.writeInt(blockSize);
+            io.writeInt(entrySize);
+            zones = new byte[0];
+            blockCount = 0;
+            rebuildNeeded = true;
+        }
+        buffer = ByteBuffer.wrap(zones);
+    }
+
+    // the live record starting at position of the buffer was written to the line
+    public void add(int line, ByteBuffer record, int position) {
+        if (zonedColumns.length == 0) {
+            return;
+        }
+        int block = line / blockSize;
+        ensureBlock(block);
+        for (int column : zonedColumns) {
+            int at = block * entrySize + entryOffsets[column];
+            if (layout.isNull(record, position, column)) {
+                buffer.putInt(at, buffer.getInt(at) + 1);
+                continue;
+            }
+            ColumnCodec codec = layout.getCodec(column);
+            Object value = codec.read(record, position + layout.getOffset(column));
+            int valueCount = buffer.getInt(at + Integer.BYTES);
+            int minAt = at + COUNTS_SIZE, maxAt = minAt + layout.getSize(column);
+            if (valueCount == 0 || codec.compare(value, codec.read(buffer, minAt)) < 0) {
+                codec.write(buffer, minAt, value);
+            }
+            if (valueCount == 0 || codec.compare(value, codec.read(buffer, maxAt)) > 0) {
+                codec.write(buffer, maxAt, value);
+            }
+            buffer.putInt(at + Integer.BYTES, valueCount + 1);
+        }
+        markDirty(block);
+    }
+
+    // the record of the line is being deleted, its range is kept (it still covers the remaining values)
+    public void remove(int line, ByteBuffer record, int position) {
+        int block = line / blockSize;
+        if (zonedColumns.length == 0 || block >= blockCount) {
+            return;
+        }
+        for (int column : zonedColumns) {
+            int at = block * entrySize + entryOffsets[column];
+            if (!layout.isNull(record, position, column)) {
+                at += Integer.BYTES;
+            }
+            buffer.putInt(at, Integer.max(0, buffer.getInt(at) - 1));
+        }
+        markDirty(block);
+    }
+
+    // false if no record of the block can satisfy "value op constant", blocks without a zone may always match
+    public boolean mayMatch(int block, int column, Operator op, Object constant) {
+        if (block >= blockCount || entryOffsets[column] == -1) {
+            return true;
+        }
+        int at = block * entrySize + entryOffsets[column];
+        // nulls never satisfy a comparison
+        if (constant == null || buffer.getInt(at + Integer.BYTES) == 0) {
+            return false;
+        }
+        ColumnCodec codec = layout.getCodec(column);
+        int minAt = at + COUNTS_SIZE, maxAt = minAt + layout.getSize(column);
+        return switch (op) {
+            case EQUALS -> codec.compare(codec.read(buffer, minAt), constant) <= 0 && codec.compare(codec.read(buffer, maxAt), constant) >= 0;
+            case LESS_THAN -> codec.compare(codec.read(buffer, minAt), constant) < 0;
+            case LESS_THAN_OR_EQUAL_TO -> codec.compare(codec.read(buffer, minAt), constant) <= 0;
+            case GREATER_THAN -> codec.compare(codec.read(buffer, maxAt), constant) > 0;
+            case GREATER_THAN_OR_EQUAL_TO -> codec.compare(codec.read(buffer, maxAt), constant) >= 0;
+            default -> true;
+        };
+    }
+
+    public int getNullCount(int block, int column) {
+        if (block >= blockCount || entryOffsets[column] == -1) {
+            return 0;
+        }
+        return buffer.getInt(block * entrySize + entryOffsets[column]);
+    }
+
+    // forgets the blocks after the first recordCount lines, used when the data file is truncated
+    public void truncate(long recordCount) throws IOException {
+        int count = (int) ((recordCount + blockSize - 1) / blockSize);
+        if (count >= blockCount) {
+            return;
+        }
+        flush();
+        blockCount = count;
+        io.setLength(HEADER_SIZE + (long) blockCount * entrySize);
+    }
+
+    private void ensureBlock(int block) {
+        if (block < blockCount) {
+            return;
+        }
+        int length = (block + 1) * entrySize;
+        if (length > zones.length) {
+            byte[] larger = new byte[Integer.max(length, zones.length * 2)];
+            System.arraycopy(zones, 0, larger, 0, blockCount * entrySize);
+            zones = larger;
+            buffer = ByteBuffer.wrap(zones);
+        } else {
+            // entries of blocks that were cut off before
+            Arrays.fill(zones, blockCount * entrySize, length, (byte) 0);
+        }
+        dirtyFrom = Integer.min(dirtyFrom, blockCount * entrySize);
+        blockCount = block + 1;
+    }
+
+    private void markDirty(int block) {
+        dirtyFrom = Integer.min(dirtyFrom, block * entrySize);
+        dirtyTo = Integer.max(dirtyTo, (block + 1) * entrySize);
+    }
+
+    private void resetDirty() {
+        dirtyFrom = Integer.MAX_VALUE;
+        dirtyTo = 0;
+    }
+
+    public void flush() throws IOException {
+        dirtyTo = Integer.min(dirtyTo, blockCount * entrySize);
+        if (dirtyFrom < dirtyTo) {
+            io.seek(HEADER_SIZE + dirtyFrom);
+            io.write(zones, dirtyFrom, dirtyTo - dirtyFrom);
+        }
+        rebuildNeeded = false;
+        resetDirty();
+    }
+
+    public void close() throws IOException {
+        flush();
+        io.close();
+    }
+}
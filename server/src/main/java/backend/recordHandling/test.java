@@ -25,7 +25,7 @@ import java.util.*;
 public class test {
     public static ArrayList<String> types;
     public static void TreeNodeTest(){
-        TreeNode node = new TreeNode(true, types);
+        TreeNode node = new TreeNode(true, RecordCodec.of(types), Constants.D);
         byte[] bytes1 = {0, 0, 0, 1};
         byte[] bytes2 = {0, 0, 0, 2};
         byte[] bytes3 = {0, 0, 0, 3};
@@ -36,7 +36,7 @@ public class test {
 
         node.insertInLeaf(key1, 1);
 
-        TreeNode node1 = new TreeNode(true, types);
+        TreeNode node1 = new TreeNode(true, RecordCodec.of(types), Constants.D);
         node1.insertInLeaf(key3, 3);
 
         System.out.println(node);
@@ -45,8 +45,9 @@ public class test {
         node.join(node1, key2);
         System.out.println(node);
 
-        System.out.println(node.popBackKey());
-        System.out.println(node.popSecondToLastPointer());
+        System.out.println(node.getKey(node.keyCount() - 1));
+        System.out.println(node.getPointer(node.keyCount() - 1));
+        node.removeEntry(node.keyCount() - 1, node.keyCount() - 1);
         System.out.println(node);
 //        try{
 //            node.removeKey(key2);
@@ -0,0 +1,21 @@
+package backend.recovery;
+
+// when the write-ahead log is forced to disk
+public enum FsyncPolicy {
+    // every statement waits for its commit record to be on disk
+    STATEMENT,
+    // commit records are forced by a background thread every few milliseconds, a crash loses at most that window
+    // (a page is only written back once the log holds its writes, the write back forces it if the thread didn't yet)
+    GROUP,
+    // the log is never forced and the pages don't wait for it, the OS decides when either reaches the disk
+    NONE;
+
+    public static FsyncPolicy fromString(String value) {
+        for (var policy : values()) {
+            if (policy.name().equalsIgnoreCase(value)) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown fsync policy: " + value);
+    }
+}
@@ -0,0 +1,503 @@
+package backend.recovery;
+
+import backend.config.Config;
+import backend.service.CatalogManager;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// write-ahead log of every byte range written to the data and index files during a statement
+//      record: [int length][byte type][long statement id][payload][long crc of type..payload]
+//      WRITE payload: [short path length][path][long offset][int length][before image][int length][after image]
+//      TRUNCATE payload: same as WRITE, the file is cut at offset (empty images, a cut is only redone)
+//      CREATE payload: same as WRITE (offset 0, empty images), the file is new, its writes are not logged
+// on startup the committed statements are redone and the unfinished ones undone, then the log is emptied, a statement
+// that fails is undone right away (rollback)
+// a logged write must not reach its file before its record reached the disk: logWrite returns the position of the log
+// after the record (LSN), the page caches call flushTo(lsn) before they write a page back
+// the derived files (free space maps, zone maps, index filters) are neither logged nor synced between checkpoints: a
+// clean shutdown syncs them and leaves a marker, a start without the marker deletes them (rebuilt when opened)
+@Slf4j
+public class WriteAheadLog {
+    private static final byte WRITE = 1, COMMIT = 2, TRUNCATE = 3, CREATE = 4;
+
+    private static final FsyncPolicy policy = FsyncPolicy.fromString(Config.getWalFsyncPolicy());
+
+    private static FileChannel channel;
+    private static ScheduledExecutorService groupCommitter;
+
+    private static long statementId = 0, nextStatementId = 1;
+    private static boolean unforcedCommits = false;
+    // bytes appended to the log since startup / known to be on disk
+    private static long appendedBytes = 0, forcedBytes = 0;
+    // position in the log file where the records of the statement start
+    private static long statementStart = 0;
+
+    // files written since the last checkpoint, they are synced before the log is emptied
+    private static final Set<String> touchedFiles = new HashSet<>();
+    // files created by the statement, synced before its commit record
+    private static final Set<String> createdFiles = new HashSet<>();
+
+    private static class LoggedWrite {
+        private final byte type;
+        private final long statementId, offset;
+        private final String file;
+        private final byte[] before, after;
+
+        private LoggedWrite(byte type, long statementId, String file, long offset, byte[] before, byte[] after) {
+            this.type = type;
+            this.statementId = statementId;
+            this.file = file;
+            this.offset = offset;
+            this.before = before;
+            this.after = after;
+        }
+    }
+
+    /* ------------------------------------------------ Statements -------------------------------------------------- */
+    public static synchronized void begin() throws IOException {
+        open();
+        statementId = nextStatementId++;
+        statementStart = channel.size();
+    }
+
+    public static synchronized boolean isActive() {
+        return statementId != 0;
+    }
+
+    // the pages the statement changed may still be in the page caches, the log holds their writes
+    public static synchronized void commit() throws IOException {
+        if (statementId == 0) {
+            return;
+        }
+        // the writes into the created files are not logged, the files must be on disk before the statement counts
+        for (String file : createdFiles) {
+            sync(file);
+        }
+        createdFiles.clear();
+        append(COMMIT, statementId, ByteBuffer.allocate(0));
+        statementId = 0;
+
+        switch (policy) {
+            case STATEMENT -> force();
+            case GROUP -> unforcedCommits = true;
+            case NONE -> {}
+        }
+    }
+
+    // what the statement wrote so far is committed, the rest of it is logged (and undone) as a statement of its own
+    public static synchronized void commitAndContinue() throws IOException {
+        if (statementId == 0) {
+            return;
+        }
+        commit();
+        begin();
+    }
+
+    // false if the statement did not log anything yet (nothing to roll back)
+    public static synchronized boolean hasStatementWrites() throws IOException {
+        return statementId != 0 && channel.size() > statementStart;
+    }
+
+    // the statement failed: its writes are undone newest first from their before images and the files it created are
+    // cut back to nothing, like the unfinished statements in recover
+    // the handlers must be closed before (HandlerRegistry.closeAll), no page of the statement may reach its file after
+    // the undo, the derived files of the tables are rebuilt when they are opened again
+    public static synchronized void rollback() throws IOException {
+        if (statementId == 0) {
+            return;
+        }
+        long id = statementId;
+        statementId = 0;
+        createdFiles.clear();
+        if (channel.size() == statementStart) {
+            return;
+        }
+
+        ArrayList<LoggedWrite> writes = new ArrayList<>();
+        readLog(new File(Config.getWalPath()), statementStart, writes, new HashSet<>());
+        Set<String> files = new HashSet<>();
+        int undone = 0;
+        for (int i = writes.size() - 1; i >= 0; i--) {
+            var write = writes.get(i);
+            if (write.statementId == id) {
+                undo(write);
+                files.add(write.file);
+                undone++;
+            }
+        }
+        for (String file : files) {
+            sync(file);
+            deleteDerivedFiles(new File(file).getParentFile());
+        }
+        // the records stay in the log without a commit, a recovery would undo them again over the writes of the later
+        // statements -> the log is emptied
+        checkpoint();
+        log.info("WAL rollback: " + undone + " write(s) undone");
+    }
+
+    // called once the handlers were flushed (HandlerRegistry.endStatement), see checkpoint
+    public static synchronized void checkpointIfFull() throws IOException {
+        if (channel != null && channel.size() > Config.getWalCheckpointBytes()) {
+            checkpoint();
+        }
+    }
+
+    // must be called before the bytes are written to the file, writes outside of a statement are not logged
+    // returns the LSN of the write (0 if it was not logged), see flushTo
+    public static synchronized long logWrite(String file, long offset, byte[] before, byte[] after) throws IOException {
+        if (statementId == 0 || createdFiles.contains(file)) {
+            return 0;
+        }
+        touchedFiles.add(file);
+        return append(WRITE, statementId, writePayload(file, offset, before, after));
+    }
+
+    // must be called before the file is cut at newLength, the cut part must not hold anything the committed state needs
+    // (VACUUM cuts the lines it emptied after it committed its moves, see commitAndContinue) -> only the length is logged,
+    // an unfinished cut is not undone
+    public static synchronized void logTruncate(String file, long newLength) throws IOException {
+        if (statementId == 0) {
+            return;
+        }
+        touchedFiles.add(file);
+        append(TRUNCATE, statementId, writePayload(file, newLength, new byte[0], new byte[0]));
+        // the commit of the moves must be on disk before the file is cut
+        force();
+    }
+
+    // must be called before the file is written for the first time (CREATE INDEX), instead of every write only the
+    // creation is logged: an unfinished statement cuts the file back to nothing, commit syncs it
+    public static synchronized void logCreate(String file) throws IOException {
+        if (statementId == 0) {
+            return;
+        }
+        touchedFiles.add(file);
+        append(CREATE, statementId, writePayload(file, 0, new byte[0], new byte[0]));
+        force();
+        createdFiles.add(file);
+    }
+
+    // forces the log up to the LSN, a page holding writes up to it may be written back afterwards
+    public static synchronized void flushTo(long lsn) throws IOException {
+        if (lsn <= forcedBytes || policy == FsyncPolicy.NONE) {
+            return;
+        }
+        force();
+    }
+
+    private static ByteBuffer writePayload(String file, long offset, byte[] before, byte[] after) {
+        byte[] path = file.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(Short.BYTES + path.length + Long.BYTES + 2 * Integer.BYTES + before.length + after.length);
+        payload.putShort((short) path.length);
+        payload.put(path);
+        payload.putLong(offset);
+        payload.putInt(before.length);
+        payload.put(before);
+        payload.putInt(after.length);
+        payload.put(after);
+        payload.flip();
+        return payload;
+    }
+
+    // between statements only: the handlers stay open, but HandlerRegistry.endStatement wrote their pages back, so every
+    // logged write reached its file, the files are synced before the log is emptied
+    public static synchronized void checkpoint() throws IOException {
+        for (String file : touchedFiles) {
+            sync(file);
+        }
+        touchedFiles.clear();
+        // the statistics the handlers changed in memory are not logged, they are written at every checkpoint
+        CatalogManager.flushStatistics();
+        channel.truncate(0);
+        channel.force(true);
+        forcedBytes = appendedBytes;
+        log.info("WAL checkpoint");
+    }
+
+    // the handlers must be closed before (HandlerRegistry.closeAll), the next start keeps the derived files
+    public static synchronized void shutdown() throws IOException {
+        open();
+        for (File tableDirectory : tableDirectories()) {
+            for (File file : derivedFiles(tableDirectory)) {
+                sync(file.getPath());
+            }
+        }
+        checkpoint();
+        File marker = new File(Config.getWalCleanShutdownPath());
+        try (FileOutputStream out = new FileOutputStream(marker)) {
+            out.getFD().sync();
+        }
+        syncDirectory(marker.getParentFile());
+        log.info("WAL clean shutdown");
+    }
+    /* ----------------------------------------------- / Statements ------------------------------------------------- */
+
+    /* ------------------------------------------------- Recovery --------------------------------------------------- */
+    public static synchronized void recover() throws IOException {
+        if (channel != null) {
+            return;
+        }
+
+        File walFile = new File(Config.getWalPath());
+        if (walFile.exists() && walFile.length() > 0) {
+            ArrayList<LoggedWrite> writes = new ArrayList<>();
+            HashSet<Long> committed = new HashSet<>();
+            readLog(walFile, 0, writes, committed);
+
+            // redo the committed statements in log order, undo the rest backwards
+            Set<String> files = new HashSet<>();
+            int redone = 0, undone = 0;
+            // a created file was synced before the commit -> nothing to redo, a cut has no before image -> nothing to undo
+            for (var write : writes) {
+                if (committed.contains(write.statementId)) {
+                    if (write.type == TRUNCATE) {
+                        cut(write.file, write.offset);
+                    } else if (write.type == WRITE) {
+                        apply(write.file, write.offset, write.after, write.after.length);
+                    }
+                    files.add(write.file);
+                    redone++;
+                }
+            }
+            for (int i = writes.size() - 1; i >= 0; i--) {
+                var write = writes.get(i);
+                if (!committed.contains(write.statementId)) {
+                    undo(write);
+                    files.add(write.file);
+                    undone++;
+                }
+            }
+
+            for (String file : files) {
+                sync(file);
+                deleteDerivedFiles(new File(file).getParentFile());
+            }
+            log.info("WAL recovery: " + redone + " write(s) redone, " + undone + " write(s) undone");
+        }
+
+        // the marker is gone while the server runs, a crash leaves derived files that may be stale or torn
+        File marker = new File(Config.getWalCleanShutdownPath());
+        if (marker.exists()) {
+            Files.delete(marker.toPath());
+            syncDirectory(marker.getParentFile());
+        } else {
+            int deleted = 0;
+            for (File tableDirectory : tableDirectories()) {
+                deleted += deleteDerivedFiles(tableDirectory);
+            }
+            if (deleted > 0) {
+                log.info("WAL recovery: no clean shutdown, " + deleted + " free space map(s) / zone map(s) / index filter(s) deleted");
+            }
+        }
+
+        channel = FileChannel.open(Paths.get(Config.getWalPath()), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        channel.force(true);
+
+        if (policy == FsyncPolicy.GROUP) {
+            groupCommitter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-group-commit");
+                thread.setDaemon(true);
+                return thread;
+            });
+            groupCommitter.scheduleAtFixedRate(WriteAheadLog::forceCommits, Config.getWalGroupCommitMs(), Config.getWalGroupCommitMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // the records from the given position of the log on
+    private static void readLog(File walFile, long from, ArrayList<LoggedWrite> writes, HashSet<Long> committed) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(walFile)))) {
+            in.skipNBytes(from);
+            while (true) {
+                byte[] body;
+                long crc;
+                try {
+                    int length = in.readInt();
+                    if (length <= 0 || length > walFile.length()) {
+                        break;
+                    }
+                    body = new byte[length];
+                    in.readFully(body);
+                    crc = in.readLong();
+                } catch (EOFException e) {
+                    // torn record at the end of the log
+                    break;
+                }
+                if (crc(body) != crc) {
+                    log.info("WAL recovery: corrupt record, the rest of the log is ignored");
+                    break;
+                }
+
+                ByteBuffer buffer = ByteBuffer.wrap(body);
+                byte type = buffer.get();
+                long id = buffer.getLong();
+                if (type == COMMIT) {
+                    committed.add(id);
+                } else if (type == WRITE || type == TRUNCATE || type == CREATE) {
+                    byte[] path = new byte[buffer.getShort()];
+                    buffer.get(path);
+                    long offset = buffer.getLong();
+                    byte[] before = new byte[buffer.getInt()];
+                    buffer.get(before);
+                    byte[] after = new byte[buffer.getInt()];
+                    buffer.get(after);
+                    writes.add(new LoggedWrite(type, id, new String(path, StandardCharsets.UTF_8), offset, before, after));
+                }
+            }
+        }
+    }
+
+    // a cut has no before image, a created file is cut back to nothing
+    private static void undo(LoggedWrite write) throws IOException {
+        if (write.type == CREATE) {
+            cut(write.file, 0);
+        } else if (write.type == WRITE) {
+            apply(write.file, write.offset, write.before, write.after.length);
+        }
+    }
+
+    // the free space maps, zone maps and index filters of a table are not logged, they are rebuilt from the records /
+    // heap pages / trees when they are opened (the table's files are in a directory named after it)
+    private static ArrayList<File> derivedFiles(File tableDirectory) {
+        ArrayList<File> derived = new ArrayList<>();
+        String tableName = tableDirectory.getName();
+        File[] files = tableDirectory.listFiles();
+        if (files == null) {
+            return derived;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.equals(tableName + ".free.bin") || name.equals(tableName + ".zones.bin")
+                    || name.equals(tableName + ".heap.free.bin") || name.endsWith(".filter")) {
+                derived.add(file);
+            }
+        }
+        return derived;
+    }
+
+    // returns the number of deleted files
+    private static int deleteDerivedFiles(File tableDirectory) throws IOException {
+        ArrayList<File> derived = derivedFiles(tableDirectory);
+        for (File file : derived) {
+            Files.deleteIfExists(file.toPath());
+        }
+        return derived.size();
+    }
+
+    // records/<database>/<table>
+    private static ArrayList<File> tableDirectories() {
+        ArrayList<File> tableDirectories = new ArrayList<>();
+        File[] databaseDirectories = new File(Config.getDbRecordsPath()).listFiles(File::isDirectory);
+        if (databaseDirectories == null) {
+            return tableDirectories;
+        }
+        for (File databaseDirectory : databaseDirectories) {
+            File[] directories = databaseDirectory.listFiles(File::isDirectory);
+            if (directories != null) {
+                tableDirectories.addAll(Arrays.asList(directories));
+            }
+        }
+        return tableDirectories;
+    }
+
+    // writes the image, an image shorter than the logged write means the write extended the file -> cut it back
+    private static void apply(String file, long offset, byte[] image, int writtenLength) throws IOException {
+        if (!new File(file).exists()) {
+            // the file was dropped since
+            return;
+        }
+        try (RandomAccessFile io = new RandomAccessFile(file, "rw")) {
+            io.seek(offset);
+            io.write(image);
+            if (image.length < writtenLength && io.length() > offset + image.length) {
+                io.setLength(offset + image.length);
+            }
+        }
+    }
+    private static void cut(String file, long length) throws IOException {
+        if (!new File(file).exists()) {
+            return;
+        }
+        try (RandomAccessFile io = new RandomAccessFile(file, "rw")) {
+            if (io.length() > length) {
+                io.setLength(length);
+            }
+        }
+    }
+    /* ------------------------------------------------ / Recovery -------------------------------------------------- */
+
+    private static void open() throws IOException {
+        if (channel == null) {
+            recover();
+        }
+    }
+
+    // returns the LSN of the record
+    private static long append(byte type, long id, ByteBuffer payload) throws IOException {
+        byte[] body = new byte[1 + Long.BYTES + payload.remaining()];
+        ByteBuffer.wrap(body).put(type).putLong(id).put(payload);
+
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + body.length + Long.BYTES);
+        record.putInt(body.length);
+        record.put(body);
+        record.putLong(crc(body));
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        appendedBytes += record.limit();
+        return appendedBytes;
+    }
+
+    private static void force() throws IOException {
+        channel.force(false);
+        forcedBytes = appendedBytes;
+        unforcedCommits = false;
+    }
+
+    private static synchronized void forceCommits() {
+        if (!unforcedCommits) {
+            return;
+        }
+        try {
+            force();
+        } catch (IOException e) {
+            log.error("WAL group commit failed: " + e.getMessage());
+        }
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    // the marker must reach the disk with its directory, not every platform can sync a directory
+    private static void syncDirectory(File directory) {
+        try (FileChannel directoryChannel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        } catch (IOException e) {
+            log.debug("Could not sync " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private static void sync(String file) throws IOException {
+        if (!new File(file).exists()) {
+            return;
+        }
+        try (RandomAccessFile io = new RandomAccessFile(file, "rw")) {
+            io.getFD().sync();
+        }
+    }
+}
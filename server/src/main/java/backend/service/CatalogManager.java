@@ -1,10 +1,12 @@
 package backend.service;
 
 import backend.config.Config;
+import backend.databaseModels.ColumnStatisticsModel;
 import backend.databaseModels.ForeignKeyModel;
 import backend.databaseModels.IndexFileModel;
+import backend.databaseModels.TableModel;
+import backend.databaseModels.TableStatisticsModel;
 import backend.exceptions.NoIndexException;
-import backend.exceptions.recordHandlingExceptions.DeletedRecordLinesEmpty;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -16,9 +18,9 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Slf4j
 public class CatalogManager {
@@ -156,88 +158,132 @@ public class CatalogManager {
         return null;
     }
 
-    public static ArrayDeque<Integer> deletedRecordLinesQueue(String databaseName, String tableName) {
-        // Find table JSON node
+    /* ----------------------------------------------- / Utility -----------------------------------------------------*/
+
+    /* ----------------------------------------- Deleted Record Lines ----------------------------------------------- */
+    // deleted lines are tracked by the table's free space map, older catalogs may still hold them -> drop the array
+    public static void dropLegacyDeletedRecordLines(String databaseName, String tableName) {
         JsonNode tableNode = CatalogManager.findTableNode(databaseName, tableName);
         if(tableNode == null) {
             log.error("In database=" + databaseName + ", table=" + tableName + " JSON node not found!");
             throw new RuntimeException();
         }
 
-        // Build up the deque
-        ArrayDeque<Integer> recordLines = new ArrayDeque<>();
-        for(JsonNode recordLineNode : tableNode.get("deletedRecordLines")) {
-            recordLines.add(recordLineNode.asInt());
+        if(tableNode.has("deletedRecordLines")) {
+            ((ObjectNode) tableNode).remove("deletedRecordLines");
+            CatalogManager.updateCatalog();
         }
-        return recordLines;
     }
+    /* ---------------------------------------- / Deleted Record Lines ---------------------------------------------- */
 
-    private static void updateDeletedRecordLinesQueue(String databaseName, String tableName, ArrayDeque<Integer> queue) {
-        // Find table JSON node
-        JsonNode tableNode = CatalogManager.findTableNode(databaseName, tableName);
-        if(tableNode == null) {
-            log.error("In database=" + databaseName + ", table=" + tableName + " JSON node not found!");
-            throw new RuntimeException();
-        }
 
-        // Update node and update catalog
-        ArrayNode newDeletedRecordLinesArray = mapper.valueToTree(queue);
-        ((ObjectNode) tableNode).set("deletedRecordLines", newDeletedRecordLinesArray);
-        CatalogManager.updateCatalog();     // Write root to catalog
-    }
-    /* ----------------------------------------------- / Utility -----------------------------------------------------*/
+    /* ---------------------------------------------- Statistics -------------------------------------------------- */
+    // collected by ANALYZE (see TableAnalyzer) and kept up to date by the record handlers, stored beside the catalog
+    //      { "databases": { databaseName: { tableName: TableStatisticsModel } } }, tables never analyzed have no entry
+    // the file is read once, the handlers' changes are only kept in memory until flushStatistics (WAL checkpoint,
+    // shutdown), a crash loses them (row counts are estimates anyway, ANALYZE collects them again)
+    private static ObjectNode statistics;
+    private static boolean statisticsChanged;
 
-    /* ----------------------------------------- Deleted Record Lines ----------------------------------------------- */
-    public static Integer deletedRecordLinesPop(String databaseName, String tableName) throws DeletedRecordLinesEmpty {
-        ArrayDeque<Integer> deletedRecordLines = CatalogManager.deletedRecordLinesQueue(databaseName, tableName);
-        if(deletedRecordLines.isEmpty()) {
-            throw new DeletedRecordLinesEmpty();
+    private static ObjectNode readStatistics() {
+        if (statistics != null) {
+            return statistics;
         }
+        File file = Config.getStatisticsFile();
+        if (file.exists()) {
+            try {
+                JsonNode read = mapper.readTree(file);
+                if (read instanceof ObjectNode && read.get(Config.getDbCatalogRoot()) instanceof ObjectNode) {
+                    statistics = (ObjectNode) read;
+                    return statistics;
+                }
+            } catch (IOException e) {
+                log.error("CatalogManager -> Statistics could not be read, they are collected again by ANALYZE");
+            }
+        }
+        statistics = mapper.createObjectNode();
+        statistics.putObject(Config.getDbCatalogRoot());
+        return statistics;
+    }
 
-        // Remove first element
-        Integer first = deletedRecordLines.removeFirst();
-
-        // Update catalog with new deque
-        CatalogManager.updateDeletedRecordLinesQueue(databaseName, tableName, deletedRecordLines);
-        return first;
+    // writes the statistics if they changed since the last write
+    public static synchronized void flushStatistics() {
+        if (!statisticsChanged) {
+            return;
+        }
+        try {
+            mapper.writeValue(Config.getStatisticsFile(), statistics);
+        } catch (IOException e) {
+            log.error("CatalogManager -> Write statistics (mapper) failed");
+            throw new RuntimeException(e);
+        }
+        statisticsChanged = false;
     }
 
-    public static List<Integer> deletedRecordLinesPopN(String databaseName, String tableName, int n) {
-        // Returned value
-        List<Integer> recordLines = new ArrayList<>();
+    // null if the table was never analyzed
+    public static synchronized TableStatisticsModel getTableStatistics(String databaseName, String tableName) {
+        JsonNode tableNode = readStatistics().get(Config.getDbCatalogRoot()).path(databaseName).get(tableName);
+        if (tableNode == null) {
+            return null;
+        }
+        try {
+            return mapper.treeToValue(tableNode, TableStatisticsModel.class);
+        } catch (JsonProcessingException e) {
+            log.error("CatalogManager -> Statistics of table=" + tableName + " could not be read");
+            return null;
+        }
+    }
 
-        // Get current list
-        ArrayDeque<Integer> deletedRecordLines = CatalogManager.deletedRecordLinesQueue(databaseName, tableName);
+    // null if the table was never analyzed or has no such column
+    public static ColumnStatisticsModel getColumnStatistics(String databaseName, String tableName, String fieldName) {
+        TableStatisticsModel statistics = getTableStatistics(databaseName, tableName);
+        return statistics == null ? null : statistics.findColumn(fieldName);
+    }
 
-        // Try to add 'n' items
-        for(int i = 0; i < n; ++i) {
-            if(deletedRecordLines.isEmpty()) break;
+    // ANALYZE, written right away
+    public static synchronized void setTableStatistics(String databaseName, String tableName, TableStatisticsModel tableStatistics) {
+        putTableStatistics(databaseName, tableName, tableStatistics);
+        flushStatistics();
+    }
 
-            // If not empty pop first element and add it to list
-            recordLines.add(deletedRecordLines.removeFirst());
+    private static void putTableStatistics(String databaseName, String tableName, TableStatisticsModel tableStatistics) {
+        ObjectNode databasesNode = (ObjectNode) readStatistics().get(Config.getDbCatalogRoot());
+        JsonNode databaseNode = databasesNode.get(databaseName);
+        if (!(databaseNode instanceof ObjectNode)) {
+            databaseNode = databasesNode.putObject(databaseName);
         }
-
-        // Update catalog with new deque
-        CatalogManager.updateDeletedRecordLinesQueue(databaseName, tableName, deletedRecordLines);
-        return recordLines;
+        ((ObjectNode) databaseNode).set(tableName, mapper.valueToTree(tableStatistics));
+        statisticsChanged = true;
     }
 
-    public static void deletedRecordLinesEnqueue(String databaseName, String tableName, Integer recordLine) {
-        ArrayDeque<Integer> deletedRecordLines = CatalogManager.deletedRecordLinesQueue(databaseName, tableName);
-        deletedRecordLines.add(recordLine);
-
-        // Update catalog with new deque
-        CatalogManager.updateDeletedRecordLinesQueue(databaseName, tableName, deletedRecordLines);
+    // applies the change to the statistics of the table, nothing happens if it was never analyzed
+    // only in memory, see flushStatistics
+    public static synchronized void updateTableStatistics(String databaseName, String tableName, Consumer<TableStatisticsModel> change) {
+        TableStatisticsModel tableStatistics = getTableStatistics(databaseName, tableName);
+        if (tableStatistics != null) {
+            change.accept(tableStatistics);
+            putTableStatistics(databaseName, tableName, tableStatistics);
+        }
     }
 
-    public static void deletedRecordLinesEnqueueN(String databaseName, String tableName, List<Integer> recordLines) {
-        ArrayDeque<Integer> deletedRecordLines = CatalogManager.deletedRecordLinesQueue(databaseName, tableName);
-        deletedRecordLines.addAll(recordLines);
+    public static synchronized void dropTableStatistics(String databaseName, String tableName) {
+        JsonNode databaseNode = readStatistics().get(Config.getDbCatalogRoot()).get(databaseName);
+        if (databaseNode instanceof ObjectNode && databaseNode.has(tableName)) {
+            ((ObjectNode) databaseNode).remove(tableName);
+            statisticsChanged = true;
+            flushStatistics();
+        }
+    }
 
-        // Update catalog with new deque
-        CatalogManager.updateDeletedRecordLinesQueue(databaseName, tableName, deletedRecordLines);
+    public static synchronized void dropDatabaseStatistics(String databaseName) {
+        ObjectNode databasesNode = (ObjectNode) readStatistics().get(Config.getDbCatalogRoot());
+        if (databasesNode.has(databaseName)) {
+            databasesNode.remove(databaseName);
+            statisticsChanged = true;
+            flushStatistics();
+        }
     }
-    /* ---------------------------------------- / Deleted Record Lines ---------------------------------------------- */
+    /* --------------------------------------------- / Statistics ------------------------------------------------- */
 
 
     /* ------------------------------------------------ Getters ----------------------------------------------------- */
@@ -259,11 +305,75 @@ public class CatalogManager {
         return Config.getDbRecordsPath() + File.separator + databaseName + File.separator + tableName + File.separator + tableName + ".data.bin";
     }
 
+    public static String getTableFreeSpaceMapPath(String databaseName, String tableName) {
+        return Config.getDbRecordsPath() + File.separator + databaseName + File.separator + tableName + File.separator + tableName + ".free.bin";
+    }
+
+    // min / max of every block of record lines, see ZoneMap
+    public static String getTableZoneMapPath(String databaseName, String tableName) {
+        return Config.getDbRecordsPath() + File.separator + databaseName + File.separator + tableName + File.separator + tableName + ".zones.bin";
+    }
+
+    // one file per column of a columnar table
+    public static String getTableColumnPath(String databaseName, String tableName, String fieldName) {
+        return Config.getDbRecordsPath() + File.separator + databaseName + File.separator + tableName + File.separator + tableName + "." + fieldName + ".col.bin";
+    }
+
+    // values of a dictionary encoded column
+    public static String getTableDictionaryPath(String databaseName, String tableName, String fieldName) {
+        return Config.getDbRecordsPath() + File.separator + databaseName + File.separator + tableName + File.separator + tableName + "." + fieldName + ".dict.bin";
+    }
+
+    // varchar values of the table, in slotted pages
+    public static String getTableHeapPath(String databaseName, String tableName) {
+        return Config.getDbRecordsPath() + File.separator + databaseName + File.separator + tableName + File.separator + tableName + ".heap.bin";
+    }
+
+    public static String getTableHeapFreeSpacePath(String databaseName, String tableName) {
+        return Config.getDbRecordsPath() + File.separator + databaseName + File.separator + tableName + File.separator + tableName + ".heap.free.bin";
+    }
+
     public static String getTableIndexFilePath(String databaseName, String tableName, String indexName) {
         return Config.getDbRecordsPath() + File.separator + databaseName + File.separator + tableName + File.separator + getIndexFileName(tableName, indexName);
     }
+
+    // Bloom filter of a unique index, see KeyFilter
+    public static String getTableIndexFilterPath(String databaseName, String tableName, String indexName) {
+        return Config.getDbRecordsPath() + File.separator + databaseName + File.separator + tableName + File.separator + tableName + ".index." + indexName + ".filter";
+    }
     /* -------------------- / Paths ------------------ */
 
+    /* ------------------- Storage ------------------- */
+    // tables created before the storage option have no "storage" -> row
+    public static String getTableStorage(String databaseName, String tableName) {
+        JsonNode tableNode = findTableNode(databaseName, tableName);
+        JsonNode storageNode = tableNode.get("storage");
+        return storageNode == null ? TableModel.ROW_STORAGE : storageNode.asText();
+    }
+
+    public static boolean isColumnar(String databaseName, String tableName) {
+        return getTableStorage(databaseName, tableName).equals(TableModel.COLUMNAR_STORAGE);
+    }
+
+    // tables created before the null bitmap have no "recordFormat" -> legacy records
+    public static int getTableRecordFormat(String databaseName, String tableName) {
+        JsonNode tableNode = findTableNode(databaseName, tableName);
+        JsonNode formatNode = tableNode.get("recordFormat");
+        return formatNode == null ? TableModel.LEGACY_RECORD_FORMAT : formatNode.asInt();
+    }
+
+    public static void setTableRecordFormat(String databaseName, String tableName, int recordFormat) {
+        JsonNode tableNode = findTableNode(databaseName, tableName);
+        if(tableNode == null) {
+            log.error("In database=" + databaseName + ", table=" + tableName + " JSON node not found!");
+            throw new RuntimeException();
+        }
+
+        ((ObjectNode) tableNode).put("recordFormat", recordFormat);
+        CatalogManager.updateCatalog();
+    }
+    /* ------------------ / Storage ------------------ */
+
     /* -------------------- Fields ------------------- */
     public static List<String> getFieldNames(String databaseName, String tableName) {
         ArrayList<String> columnNames = new ArrayList<>();
@@ -468,6 +578,28 @@ public class CatalogManager {
         // Is unique, when it's not nullable
         return !fieldNode.get("nullable").asBoolean();
     }
+
+    public static boolean isFieldNullable(String databaseName, String tableName, String fieldName) {
+        JsonNode fieldNode = CatalogManager.findTableFieldNode(databaseName, tableName, fieldName);
+        if(fieldNode == null) {
+            log.error("Database=" + databaseName + ", table=" + tableName + ", field=" + fieldName + " not found!");
+            throw new RuntimeException();
+        }
+
+        return fieldNode.get("nullable").asBoolean();
+    }
+
+    // fields created before dictionary encoding have no "dictionary" -> not encoded
+    public static boolean isDictionaryEncoded(String databaseName, String tableName, String fieldName) {
+        JsonNode fieldNode = CatalogManager.findTableFieldNode(databaseName, tableName, fieldName);
+        if(fieldNode == null) {
+            log.error("Database=" + databaseName + ", table=" + tableName + ", field=" + fieldName + " not found!");
+            throw new RuntimeException();
+        }
+
+        JsonNode dictionaryNode = fieldNode.get("dictionary");
+        return dictionaryNode != null && dictionaryNode.asBoolean();
+    }
     /* ------------------- / Fields ------------------ */
 
     /* ----------------- Field types ----------------- */
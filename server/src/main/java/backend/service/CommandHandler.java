@@ -10,14 +10,19 @@ import backend.databaseActions.createActions.InsertIntoAction;
 import backend.databaseActions.dropActions.DeleteFromAction;
 import backend.databaseActions.dropActions.DropDatabaseAction;
 import backend.databaseActions.dropActions.DropTableAction;
+import backend.databaseActions.miscActions.AnalyzeAction;
 import backend.databaseActions.miscActions.NothingDatabaseAction;
 import backend.databaseActions.miscActions.UseDatabaseAction;
+import backend.databaseActions.miscActions.VacuumAction;
 import backend.databaseActions.themightySelectAction.SelectAction;
 import backend.exceptions.SQLParseException;
 import backend.parser.Parser;
+import backend.recordHandling.HandlerRegistry;
+import backend.recovery.WriteAheadLog;
 import backend.responseObjects.SQLResponseObject;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 @Slf4j
@@ -42,7 +47,29 @@ public class CommandHandler {
         }
 
         try {
-            Object returnValue = databaseAction.actionPerform();
+            // every file write of the statement is logged, a crash before the commit or a failure undoes all of them
+            WriteAheadLog.begin();
+            Object returnValue;
+            try {
+                returnValue = databaseAction.actionPerform();
+            } catch (Exception e) {
+                rollback(e);
+                throw e;
+            }
+            try {
+                WriteAheadLog.commit();
+            } finally {
+                // the handlers stay open for the next statement, their pages are written back once the log holds
+                // their writes (forced by the commit or by the write back)
+                HandlerRegistry.endStatement();
+            }
+
+            // the log must not redo writes into files that were dropped (and maybe created again)
+            if (databaseAction instanceof DropTableAction || databaseAction instanceof DropDatabaseAction) {
+                WriteAheadLog.checkpoint();
+            } else {
+                WriteAheadLog.checkpointIfFull();
+            }
             updateControllerNodes(databaseAction, returnValue);
             
         } catch (Exception e) {
@@ -52,6 +79,25 @@ public class CommandHandler {
         }
     }
 
+    // a failed statement leaves nothing behind: the handlers holding its pages are closed, then the log undoes its writes
+    // in the files (a statement that wrote nothing only hands its handlers back)
+    private static void rollback(Exception failure) {
+        try {
+            try {
+                if (WriteAheadLog.hasStatementWrites()) {
+                    HandlerRegistry.closeAll();
+                } else {
+                    HandlerRegistry.endStatement();
+                }
+            } finally {
+                WriteAheadLog.rollback();
+            }
+        } catch (IOException e) {
+            log.error("Rollback failed: " + e.getMessage());
+            failure.addSuppressed(e);
+        }
+    }
+
     private void updateControllerNodes(DatabaseAction databaseAction, Object returnValue) {
         if ( databaseAction instanceof NothingDatabaseAction) {
             serverController.setSqlResponseObject(new SQLResponseObject(true, NothingDatabaseAction.getRandomMessage()));
@@ -87,6 +133,14 @@ public class CommandHandler {
         if (databaseAction instanceof CreateIndexAction) {
             serverController.setSqlResponseObject(new SQLResponseObject(false, "Index created successfully"));
         }
+        if (databaseAction instanceof VacuumAction) {
+            int movedCount = (int) returnValue;
+            serverController.setSqlResponseObject(new SQLResponseObject(false, "Table vacuumed successfully, " + movedCount + " record(s) moved!"));
+        }
+        if (databaseAction instanceof AnalyzeAction) {
+            int tableCount = (int) returnValue;
+            serverController.setSqlResponseObject(new SQLResponseObject(false, "Statistics of " + tableCount + " table(s) collected!"));
+        }
         if (databaseAction instanceof SelectAction) {
             ArrayList<ArrayList<String>> rows = TableContentConverter.convert((Table) returnValue);
             ArrayList<String> headers = ((Table) returnValue).getColumnNames();
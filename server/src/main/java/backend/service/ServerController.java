@@ -6,6 +6,8 @@ import backend.databaseActions.DatabaseAction;
 import backend.databaseActions.createActions.CreateDatabaseAction;
 import backend.databaseModels.DatabaseModel;
 import backend.exceptions.databaseActionsExceptions.DatabaseNameAlreadyExists;
+import backend.recordHandling.HandlerRegistry;
+import backend.recovery.WriteAheadLog;
 import backend.responseObjects.SQLResponseObject;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -138,6 +140,7 @@ public class ServerController {
         setCurrentDatabaseName("master");       // By default, "master"
         initVariables();
         initRecordsFolder();
+        recoverFromWriteAheadLog();
         accessCatalog();
         updateRootNodeAndNamesList();
     }
@@ -195,6 +198,16 @@ public class ServerController {
         }
     }
 
+    private void recoverFromWriteAheadLog() {
+        // Redo the committed and undo the unfinished statements of the last run
+        try {
+            WriteAheadLog.recover();
+        } catch (IOException e) {
+            log.error("Could not recover from the write-ahead log -> IO exception!");
+            throw new RuntimeException(e);
+        }
+    }
+
     private void sendSQLResponseObjectToClient() throws IOException {
         // Establish socket connection
         Socket socket = new Socket("localhost", 4445);
@@ -233,6 +246,9 @@ public class ServerController {
                     serverConnection.send("SERVER DISCONNECTED");
                     serverConnection.stop();
                     log.info("Server Shutting Down");
+                    // the handlers write their files back, the log marks the shutdown as clean (and writes the statistics)
+                    HandlerRegistry.closeAll();
+                    WriteAheadLog.shutdown();
                     break;
                 }
 